@@ -0,0 +1,54 @@
+package kr.co.mes.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 초보자용 상세 주석:
+ * - 벤치마크에서 공통으로 쓰는 설비 이벤트 형태의 JSON 페이로드와 테스트 키 환경을 만듭니다.
+ * - 운영 키 대신 고정된 0 키를 시스템 프로퍼티로 넣으므로, 환경변수 없이 실행됩니다.
+ */
+public final class BenchPayloads {
+
+    private BenchPayloads() {}
+
+    /**
+     * CryptoKeyRegistry가 읽는 키 설정을 (없으면) 시스템 프로퍼티로 넣습니다.
+     */
+    public static void ensureCryptoEnv() {
+        if (System.getProperty("MES_CRYPTO_KEYS") == null && System.getenv("MES_CRYPTO_KEYS") == null) {
+            String key = Base64.getEncoder().encodeToString(new byte[32]);
+            System.setProperty("MES_CRYPTO_KEYS", "v1=" + key);
+            System.setProperty("MES_CRYPTO_ACTIVE_KEY_ID", "v1");
+        }
+    }
+
+    /**
+     * 대략 targetBytes 크기의 JSON 객체(설비 알람 + 측정값 배열).
+     */
+    public static String json(int targetBytes) {
+        StringBuilder sb = new StringBuilder(targetBytes + 64);
+        sb.append("{\"equipmentId\":\"EQ-0042\",\"alarmCode\":\"A17\",\"severity\":\"MAJOR\",\"line\":\"LINE-3\",\"values\":[");
+        int i = 0;
+        while (sb.length() < targetBytes - 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"t\":").append(1_700_000_000L + i).append(",\"v\":").append(20 + (i % 13)).append(".5}");
+            i++;
+        }
+        return sb.append("]}").toString();
+    }
+
+    public static byte[] jsonBytes(int targetBytes) {
+        return json(targetBytes).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * POST /api/ingest/raw 요청 본문 형태.
+     */
+    public static byte[] ingestBody(int payloadBytes) {
+        return ("{\"source\":\"plc-07\",\"eventType\":\"ALARM\",\"requestId\":\"req-0001\",\"payload\":"
+                + json(payloadBytes) + "}").getBytes(StandardCharsets.UTF_8);
+    }
+}
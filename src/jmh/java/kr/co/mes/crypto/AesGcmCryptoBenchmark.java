@@ -0,0 +1,66 @@
+package kr.co.mes.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import kr.co.mes.bench.BenchPayloads;
+
+/**
+ * 초보자용 상세 주석:
+ * - AES-GCM 암복호화 한 건의 평균 시간(페이로드 크기별)을 잽니다.
+ * - encrypt/decrypt는 바이트 배열 API(저장 경로), encryptIntoBuffer는 호출자 버퍼를 재사용하는 API입니다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AesGcmCryptoBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    public int payloadBytes;
+
+    private AesGcmCrypto crypto;
+    private String keyId;
+    private byte[] plain;
+    private CryptoKeyRegistry.EncryptedPayload encrypted;
+    private ByteBuffer plainBuffer;
+    private ByteBuffer cipherBuffer;
+    private final byte[] nonce = new byte[AesGcmCrypto.NONCE_LENGTH];
+
+    @Setup
+    public void setUp() {
+        BenchPayloads.ensureCryptoEnv();
+        CryptoKeyRegistry keyRegistry = new CryptoKeyRegistry();
+        crypto = new AesGcmCrypto(keyRegistry);
+        keyId = keyRegistry.getActiveKeyId();
+        plain = BenchPayloads.jsonBytes(payloadBytes);
+        encrypted = crypto.encrypt(plain, keyId);
+        plainBuffer = ByteBuffer.wrap(plain);
+        cipherBuffer = ByteBuffer.allocate(AesGcmCrypto.cipherTextLength(plain.length));
+    }
+
+    @Benchmark
+    public CryptoKeyRegistry.EncryptedPayload encrypt() {
+        return crypto.encrypt(plain, keyId);
+    }
+
+    @Benchmark
+    public byte[] decrypt() {
+        return crypto.decryptBytes(encrypted.cipherText(), encrypted.nonce(), keyId);
+    }
+
+    @Benchmark
+    public int encryptIntoBuffer() {
+        plainBuffer.clear();
+        cipherBuffer.clear();
+        return crypto.encrypt(plainBuffer, cipherBuffer, nonce, keyId);
+    }
+}
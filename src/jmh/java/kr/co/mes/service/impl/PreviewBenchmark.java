@@ -0,0 +1,39 @@
+package kr.co.mes.service.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import kr.co.mes.bench.BenchPayloads;
+
+/**
+ * 초보자용 상세 주석:
+ * - 목록/Export 행마다 호출되는 프리뷰 생성(RawLogServiceImpl.preview, 앞 200자)의 시간을 잽니다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreviewBenchmark {
+
+    @Param({"128", "4096", "65536"})
+    public int payloadChars;
+
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        payload = BenchPayloads.json(payloadChars);
+    }
+
+    @Benchmark
+    public String preview() {
+        return RawLogServiceImpl.preview(payload);
+    }
+}
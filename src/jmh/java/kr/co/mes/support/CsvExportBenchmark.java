@@ -0,0 +1,75 @@
+package kr.co.mes.support;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import kr.co.mes.bench.BenchPayloads;
+
+/**
+ * 초보자용 상세 주석:
+ * - Export 응답 CSV를 쓰는 시간(RawLogCsvWriter, 스트리밍 Export와 같은 64KB 버퍼)을 행 수별로 잽니다.
+ *   출력은 버리는 Writer로 보내 네트워크/디스크 시간은 빼고 CSV 인코딩만 잽니다.
+ * - 행 모양은 exportLogs 결과와 같게(프리뷰 200자, includeDecrypted면 전체 페이로드) 만듭니다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvExportBenchmark {
+
+    @Param({"1000", "5000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean includeDecrypted;
+
+    private List<Map<String, Object>> exportRows;
+
+    @Setup
+    public void setUp() {
+        String payload = BenchPayloads.json(1024);
+        exportRows = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+            row.put("id", (long) i);
+            row.put("tenant_id", "tenant_a");
+            row.put("source", "plc-07");
+            row.put("event_type", "ALARM");
+            row.put("received_at", new Timestamp(1_700_000_000_000L + i));
+            row.put("request_id", "req-" + i);
+            row.put("user_id", "user");
+            row.put("role", "USER");
+            row.put("payload_preview", payload.substring(0, 200));
+            if (includeDecrypted) {
+                row.put("decrypted_payload", payload);
+            }
+            exportRows.add(row);
+        }
+    }
+
+    @Benchmark
+    public void writeCsv() throws IOException {
+        try (Writer out = new BufferedWriter(Writer.nullWriter(), 64 * 1024)) {
+            RawLogCsvWriter csv = new RawLogCsvWriter(out, includeDecrypted);
+            csv.writeHeader();
+            for (Map<String, Object> row : exportRows) {
+                csv.writeRow(row);
+            }
+        }
+    }
+}
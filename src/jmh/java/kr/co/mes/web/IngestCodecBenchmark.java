@@ -0,0 +1,64 @@
+package kr.co.mes.web;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import kr.co.mes.bench.BenchPayloads;
+import kr.co.mes.support.RawIngestEnvelopeParser;
+import kr.co.mes.support.RawIngestEnvelopeParser.RawIngestEnvelope;
+
+/**
+ * 초보자용 상세 주석:
+ * - 수집 요청 한 건의 CPU 작업 중 파싱과 해시를 잽니다.
+ *   1) objectMapperRoundTrip: 기존 방식(RawIngestRequest로 바인딩 → payload 재직렬화, raw-payload=false)
+ *   2) envelopeParser: raw-payload 모드(스트리밍 파서로 payload 원본 바이트만 잘라 냄)
+ *   3) sha256Hex: payload_sha256 계산(DigestUtils.sha256Hex)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IngestCodecBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    public int payloadBytes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private RawIngestEnvelopeParser envelopeParser;
+    private byte[] body;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        envelopeParser = new RawIngestEnvelopeParser(objectMapper);
+        body = BenchPayloads.ingestBody(payloadBytes);
+        payload = BenchPayloads.jsonBytes(payloadBytes);
+    }
+
+    @Benchmark
+    public byte[] objectMapperRoundTrip() throws IOException {
+        RawIngestController.RawIngestRequest request = objectMapper.readValue(body, RawIngestController.RawIngestRequest.class);
+        return objectMapper.writeValueAsBytes(request.payload());
+    }
+
+    @Benchmark
+    public RawIngestEnvelope envelopeParser() throws IOException {
+        return envelopeParser.parse(body);
+    }
+
+    @Benchmark
+    public String sha256Hex() {
+        return DigestUtils.sha256Hex(payload);
+    }
+}
@@ -1,7 +1,11 @@
 package kr.co.mes.crypto;
 
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -12,20 +16,47 @@ import org.springframework.stereotype.Component;
 /**
  * 초보자용 상세 주석:
  * - AES-GCM(256bit) 암복호화를 수행하는 유틸입니다.
- * - nonce는 12바이트 랜덤, 암호문은 Base64로 반환합니다.
+ * - 암호문과 nonce는 원본 바이트로 반환합니다(Base64 변환은 필요한 곳에서만).
+ * - 처리량을 위해 다음을 지킵니다.
+ *   1) Cipher.getInstance는 비싸므로 한 번 만든 Cipher를 풀에 돌려놓고 재사용합니다
+ *      (스레드마다 두지 않고 풀을 쓰는 이유: 가상 스레드 모드에서는 스레드가 요청마다 새로 생기기 때문).
+ *   2) nonce(12바이트) = 인스턴스별 랜덤 prefix 4바이트 + 원자적 카운터 8바이트.
+ *      같은 인스턴스 안에서는 카운터가 2^64번 돌기 전까지 절대 겹치지 않고,
+ *      SecureRandom은 기동 시 prefix/카운터 시작값을 정할 때만 사용하므로 요청마다 잠금 경합이 없습니다.
+ *      (NIST SP 800-38D의 결정적 nonce 구성: 고정 필드 + 호출 카운터)
+ *   3) 호출자가 넘긴 ByteBuffer로 바로 암복호화하는 메서드를 제공해 중간 배열 할당을 줄일 수 있습니다.
  */
 @Component
 public class AesGcmCrypto {
 
     private static final String ALG = "AES/GCM/NoPadding";
     private static final int TAG_BIT_LENGTH = 128; // GCM 인증 태그 128bit
-    private static final int NONCE_LENGTH = 12;    // 12바이트 권장
+    /**
+     * nonce 길이(바이트). 12바이트 권장.
+     */
+    public static final int NONCE_LENGTH = 12;
+    /**
+     * 암호문 뒤에 붙는 인증 태그 길이(바이트).
+     */
+    public static final int TAG_LENGTH = TAG_BIT_LENGTH / 8;
 
-    private final SecureRandom secureRandom = new SecureRandom();
     private final CryptoKeyRegistry keyRegistry;
+    private final int noncePrefix;
+    private final AtomicLong nonceCounter;
+    private final ConcurrentLinkedQueue<Cipher> cipherPool = new ConcurrentLinkedQueue<>();
 
     public AesGcmCrypto(CryptoKeyRegistry keyRegistry) {
         this.keyRegistry = keyRegistry;
+        SecureRandom secureRandom = new SecureRandom();
+        this.noncePrefix = secureRandom.nextInt();
+        this.nonceCounter = new AtomicLong(secureRandom.nextLong());
+    }
+
+    /**
+     * 평문 길이에 대한 암호문(태그 포함) 길이.
+     */
+    public static int cipherTextLength(int plainLength) {
+        return plainLength + TAG_LENGTH;
     }
 
     /**
@@ -34,21 +65,39 @@ public class AesGcmCrypto {
      * @param keyId 사용할 키 ID
      */
     public CryptoKeyRegistry.EncryptedPayload encrypt(String plain, String keyId) {
+        return encrypt(plain.getBytes(java.nio.charset.StandardCharsets.UTF_8), keyId);
+    }
+
+    /**
+     * UTF-8 평문 바이트를 그대로 AES-GCM으로 암호화합니다.
+     * - 이미 바이트로 가진 페이로드를 String으로 바꿨다가 다시 인코딩하는 낭비를 피합니다.
+     * @param plainUtf8 평문 바이트
+     * @param keyId 사용할 키 ID
+     */
+    public CryptoKeyRegistry.EncryptedPayload encrypt(byte[] plainUtf8, String keyId) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        byte[] cipherBytes = new byte[cipherTextLength(plainUtf8.length)];
+        encrypt(ByteBuffer.wrap(plainUtf8), ByteBuffer.wrap(cipherBytes), nonce, keyId);
+        return new CryptoKeyRegistry.EncryptedPayload(cipherBytes, nonce, keyId, "AES-GCM");
+    }
+
+    /**
+     * plain의 남은 바이트를 암호화해 cipherOut에 씁니다(태그 포함, cipherTextLength만큼 필요).
+     * - 사용한 nonce는 nonceOut(12바이트)에 기록합니다. 저장할 때 암호문과 함께 보관해야 합니다.
+     * @return cipherOut에 쓴 바이트 수
+     */
+    public int encrypt(ByteBuffer plain, ByteBuffer cipherOut, byte[] nonceOut, String keyId) {
+        if (nonceOut.length != NONCE_LENGTH) {
+            throw new IllegalArgumentException("nonce 버퍼는 " + NONCE_LENGTH + "바이트여야 합니다.");
+        }
+        nextNonce(nonceOut);
         try {
             SecretKey key = keyRegistry.getKey(keyId);
-            byte[] nonce = new byte[NONCE_LENGTH];
-            secureRandom.nextBytes(nonce);
-
-            Cipher cipher = Cipher.getInstance(ALG);
-            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BIT_LENGTH, nonce));
-            byte[] cipherBytes = cipher.doFinal(plain.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-
-            return new CryptoKeyRegistry.EncryptedPayload(
-                    Base64.getEncoder().encodeToString(cipherBytes),
-                    Base64.getEncoder().encodeToString(nonce),
-                    keyId,
-                    "AES-GCM"
-            );
+            Cipher cipher = borrowCipher();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BIT_LENGTH, nonceOut));
+            int written = cipher.doFinal(plain, cipherOut);
+            cipherPool.offer(cipher);
+            return written;
         } catch (Exception e) {
             throw new IllegalStateException("AES-GCM 암호화 실패: " + e.getMessage(), e);
         }
@@ -58,17 +107,74 @@ public class AesGcmCrypto {
      * 암호문을 복호화합니다.
      */
     public String decrypt(String cipherB64, String nonceB64, String keyId) {
+        return new String(decryptBytes(cipherB64, nonceB64, keyId), java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Base64 암호문을 복호화해 바이트 그대로 반환합니다(압축된 페이로드는 이후 압축 해제가 필요).
+     */
+    public byte[] decryptBytes(String cipherB64, String nonceB64, String keyId) {
+        byte[] cipherBytes;
+        byte[] nonce;
         try {
-            SecretKey key = keyRegistry.getKey(keyId);
-            byte[] cipherBytes = Base64.getDecoder().decode(cipherB64);
-            byte[] nonce = Base64.getDecoder().decode(nonceB64);
+            cipherBytes = Base64.getDecoder().decode(cipherB64);
+            nonce = Base64.getDecoder().decode(nonceB64);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("AES-GCM 복호화 실패: " + e.getMessage(), e);
+        }
+        return decryptBytes(cipherBytes, nonce, keyId);
+    }
 
-            Cipher cipher = Cipher.getInstance(ALG);
+    /**
+     * 원본 바이트 암호문을 복호화합니다(저장 형식 v2: Base64 디코딩 없이 바로 복호화).
+     */
+    public byte[] decryptBytes(byte[] cipherBytes, byte[] nonce, String keyId) {
+        if (cipherBytes.length < TAG_LENGTH) {
+            throw new IllegalStateException("AES-GCM 복호화 실패: 암호문이 인증 태그보다 짧습니다.");
+        }
+        byte[] plain = new byte[cipherBytes.length - TAG_LENGTH];
+        decrypt(ByteBuffer.wrap(cipherBytes), nonce, keyId, ByteBuffer.wrap(plain));
+        return plain;
+    }
+
+    /**
+     * cipher의 남은 바이트(태그 포함)를 복호화해 plainOut에 씁니다(암호문 길이 - 16바이트만큼 필요).
+     * - 인증 태그가 맞지 않으면(위변조/키 불일치) 예외를 던지고 plainOut에는 아무것도 쓰지 않습니다.
+     * @return plainOut에 쓴 바이트 수
+     */
+    public int decrypt(ByteBuffer cipherIn, byte[] nonce, String keyId, ByteBuffer plainOut) {
+        try {
+            SecretKey key = keyRegistry.getKey(keyId);
+            Cipher cipher = borrowCipher();
             cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BIT_LENGTH, nonce));
-            byte[] plainBytes = cipher.doFinal(cipherBytes);
-            return new String(plainBytes, java.nio.charset.StandardCharsets.UTF_8);
+            int written = cipher.doFinal(cipherIn, plainOut);
+            cipherPool.offer(cipher);
+            return written;
         } catch (Exception e) {
             throw new IllegalStateException("AES-GCM 복호화 실패: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * nonce = prefix(4바이트, big-endian) + 카운터(8바이트, big-endian).
+     */
+    void nextNonce(byte[] out) {
+        long counter = nonceCounter.getAndIncrement();
+        out[0] = (byte) (noncePrefix >>> 24);
+        out[1] = (byte) (noncePrefix >>> 16);
+        out[2] = (byte) (noncePrefix >>> 8);
+        out[3] = (byte) noncePrefix;
+        for (int i = 0; i < 8; i++) {
+            out[4 + i] = (byte) (counter >>> (56 - 8 * i));
+        }
+    }
+
+    /**
+     * 풀에서 Cipher를 꺼내고, 없으면 새로 만듭니다.
+     * - 사용 중 예외가 난 Cipher는 상태를 알 수 없으므로 풀에 돌려놓지 않습니다.
+     */
+    private Cipher borrowCipher() throws GeneralSecurityException {
+        Cipher cipher = cipherPool.poll();
+        return cipher != null ? cipher : Cipher.getInstance(ALG);
+    }
 }
@@ -1,11 +1,17 @@
 package kr.co.mes.crypto;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Properties;
 import java.util.Set;
 
 import javax.crypto.SecretKey;
@@ -21,23 +27,75 @@ import org.springframework.stereotype.Component;
  * - 포맷: MES_CRYPTO_KEYS = "v1=BASE64;v2=BASE64"
  * - 활성 키 ID: MES_CRYPTO_ACTIVE_KEY_ID (없으면 첫 번째 키 사용)
  * - 평문 저장 허용: MES_CRYPTO_ALLOW_PLAINTEXT (기본 false)
+ * - 키 파일: MES_CRYPTO_KEYS_FILE에 경로를 주면 키 목록/활성 키를 그 파일(properties 형식)에서 읽습니다.
+ *     MES_CRYPTO_KEYS=v1=BASE64;v2=BASE64
+ *     MES_CRYPTO_ACTIVE_KEY_ID=v2
+ *   파일은 reload() 때마다 다시 읽으므로, 재기동 없는 키 교체는 파일을 바꾼 뒤 reload-keys를 호출하면 됩니다.
+ * - 키 파일이 없으면 환경변수(우선)/시스템 프로퍼티에서 읽습니다. 환경변수는 실행 중에 바뀌지 않으므로
+ *   이 방식에서는 reload()가 사실상 아무것도 바꾸지 못하고, 키 교체는 새 값으로 재기동해야 합니다.
+ * - 이전 키로 암호화된 행은 KeyRotationReencryptor가 백그라운드에서 새 활성 키로 다시 암호화합니다.
  */
 @Component
 public class CryptoKeyRegistry {
 
     private static final Logger log = LoggerFactory.getLogger(CryptoKeyRegistry.class);
 
-    private final Map<String, SecretKey> keyMap;
-    private final String activeKeyId;
+    // reload()로 통째로 바꾸므로 volatile로 두어 다른 스레드가 바로 새 값을 보게 합니다.
+    private volatile Map<String, SecretKey> keyMap;
+    private volatile String activeKeyId;
     private final boolean allowPlaintext;
 
+    private final Path keyFile;
+
     public CryptoKeyRegistry() {
-        this.keyMap = loadKeys();
-        this.activeKeyId = resolveActiveKeyId(keyMap.keySet());
+        String file = readEnvOrProp("MES_CRYPTO_KEYS_FILE");
+        this.keyFile = file == null ? null : Path.of(file);
+        Properties source = readKeySource();
+        this.keyMap = loadKeys(source);
+        this.activeKeyId = resolveActiveKeyId(source, keyMap.keySet());
         this.allowPlaintext = resolveAllowPlaintext();
 
-        log.info("CryptoKeyRegistry 초기화 - keyIds={}, activeKeyId={}, allowPlaintext={}",
-                keyMap.keySet(), activeKeyId, allowPlaintext);
+        log.info("CryptoKeyRegistry 초기화 - keyIds={}, activeKeyId={}, allowPlaintext={}, keySource={}",
+                keyMap.keySet(), activeKeyId, allowPlaintext, getKeySource());
+    }
+
+    /**
+     * 키 목록/활성 키 ID를 다시 읽습니다(키 파일이 있으면 파일, 없으면 환경변수·시스템 프로퍼티).
+     * - 파일이 없거나 형식이 잘못되면 예외를 던지고 기존 키를 그대로 유지합니다.
+     * - 기존 키가 목록에서 빠지면 그 키로 암호화된 행을 읽을 수 없게 되므로, 재암호화가 끝날 때까지 남겨 두어야 합니다.
+     * @return 활성 키 ID가 바뀌었으면 true
+     */
+    public synchronized boolean reload() {
+        if (keyFile == null && System.getenv("MES_CRYPTO_KEYS") != null) {
+            log.warn("키를 환경변수에서 읽고 있어 reload로 바뀌지 않습니다. 재기동 없이 교체하려면 MES_CRYPTO_KEYS_FILE을 사용하세요.");
+        }
+        Properties source = readKeySource();
+        Map<String, SecretKey> newKeys = loadKeys(source);
+        String newActive = resolveActiveKeyId(source, newKeys.keySet());
+        for (String old : keyMap.keySet()) {
+            if (!newKeys.containsKey(old)) {
+                log.warn("키 목록에서 빠진 keyId가 있습니다. 이 키로 암호화된 행은 복호화할 수 없습니다 - keyId={}", old);
+            }
+        }
+        String previous = activeKeyId;
+        keyMap = newKeys;
+        activeKeyId = newActive;
+        log.info("CryptoKeyRegistry 다시 읽음 - keyIds={}, activeKeyId={} (이전 {})", newKeys.keySet(), newActive, previous);
+        return !previous.equals(newActive);
+    }
+
+    /**
+     * 키를 읽는 곳: "file"(MES_CRYPTO_KEYS_FILE) 또는 "env"(환경변수/시스템 프로퍼티).
+     */
+    public String getKeySource() {
+        return keyFile == null ? "env" : "file";
+    }
+
+    /**
+     * 등록된 키 ID 목록.
+     */
+    public Set<String> getKeyIds() {
+        return keyMap.keySet();
     }
 
     /**
@@ -65,10 +123,34 @@ public class CryptoKeyRegistry {
         return key;
     }
 
-    private Map<String, SecretKey> loadKeys() {
-        String raw = readEnvOrProp("MES_CRYPTO_KEYS");
+    /**
+     * 키 파일을 읽습니다. 키 파일을 쓰지 않으면 null(환경변수/시스템 프로퍼티 사용).
+     */
+    private Properties readKeySource() {
+        if (keyFile == null) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(keyFile, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("키 파일을 읽을 수 없습니다: " + keyFile, e);
+        }
+        return props;
+    }
+
+    private String read(Properties source, String name) {
+        if (source == null) {
+            return readEnvOrProp(name);
+        }
+        String value = source.getProperty(name);
+        return (value == null || value.isBlank()) ? null : value.trim();
+    }
+
+    private Map<String, SecretKey> loadKeys(Properties source) {
+        String raw = read(source, "MES_CRYPTO_KEYS");
         if (raw == null || raw.isBlank()) {
-            throw new IllegalStateException("환경변수 MES_CRYPTO_KEYS가 없습니다. 예) v1=BASE64;v2=BASE64");
+            throw new IllegalStateException("MES_CRYPTO_KEYS가 없습니다(" + getKeySource() + "). 예) v1=BASE64;v2=BASE64");
         }
         Map<String, SecretKey> map = new HashMap<>();
         String[] pairs = raw.split(";");
@@ -93,8 +175,8 @@ public class CryptoKeyRegistry {
         return Collections.unmodifiableMap(map);
     }
 
-    private String resolveActiveKeyId(Set<String> keyIds) {
-        String active = readEnvOrProp("MES_CRYPTO_ACTIVE_KEY_ID");
+    private String resolveActiveKeyId(Properties source, Set<String> keyIds) {
+        String active = read(source, "MES_CRYPTO_ACTIVE_KEY_ID");
         if (active != null && keyIds.contains(active)) {
             return active;
         }
@@ -132,6 +214,35 @@ public class CryptoKeyRegistry {
 
     /**
      * 암호문/nonce/keyId/알고리즘을 함께 보관하기 위한 DTO.
+     * - 암호문과 nonce는 원본 바이트 그대로 보관합니다(저장 형식 v2는 BLOB 컬럼에 그대로 기록).
+     * - codec/dictId: 암호화 전에 적용한 압축 방식과 압축 사전 id (압축하지 않았으면 둘 다 null).
      */
-    public record EncryptedPayload(String cipherTextBase64, String nonceBase64, String keyId, String alg) {}
+    public record EncryptedPayload(byte[] cipherText, byte[] nonce, String keyId, String alg,
+                                   String codec, Long dictId) {
+
+        public EncryptedPayload(byte[] cipherText, byte[] nonce, String keyId, String alg) {
+            this(cipherText, nonce, keyId, alg, null, null);
+        }
+
+        /**
+         * 압축 정보를 붙인 사본을 반환합니다.
+         */
+        public EncryptedPayload withCompression(String codec, Long dictId) {
+            return new EncryptedPayload(cipherText, nonce, keyId, alg, codec, dictId);
+        }
+
+        /**
+         * 암호문의 Base64 문자열 (기존 텍스트 컬럼 형식/응답용, 호출할 때마다 새로 인코딩).
+         */
+        public String cipherTextBase64() {
+            return Base64.getEncoder().encodeToString(cipherText);
+        }
+
+        /**
+         * nonce의 Base64 문자열.
+         */
+        public String nonceBase64() {
+            return Base64.getEncoder().encodeToString(nonce);
+        }
+    }
 }
@@ -1,10 +1,17 @@
 package kr.co.mes.service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 
+import kr.co.mes.crypto.CryptoKeyRegistry;
+import kr.co.mes.support.RawLogRollup;
+
 /**
  * 원시 로그 저장/조회 서비스 인터페이스입니다.
  * - 멀티테넌트 라우팅된 DataSource를 사용합니다.
@@ -29,33 +36,96 @@ public interface RawLogService {
     long save(String tenantId, String source, String eventType, String payloadJson, String payloadSha256,
               OffsetDateTime receivedAt, String requestId, String userId, String role);
 
+    /**
+     * 원시 로그 한 건을 저장하고 생성된 PK를 반환합니다.
+     * - 페이로드를 이미 UTF-8 바이트로 가지고 있을 때 문자열 변환 없이 저장하는 경로입니다.
+     *
+     * @param tenantId 현재 테넌트
+     * @param entry    저장할 이벤트
+     * @return 생성된 id
+     */
+    long save(String tenantId, RawLogEntry entry);
+
+    /**
+     * 여러 건의 원시 로그를 한 트랜잭션 안에서 JDBC 배치로 저장합니다.
+     * - 건별 INSERT 왕복 대신 한 번의 배치 실행으로 처리합니다.
+     * - 반환 리스트의 순서는 입력 entries의 순서와 같습니다.
+     * - 이미 저장된 멱등 키(배치 안의 중복 포함)는 새로 저장하지 않고 원래 id가 그 자리에 들어갑니다.
+     *
+     * @param tenantId 현재 테넌트
+     * @param entries  저장할 이벤트 목록
+     * @return 입력 순서대로 생성된 id 목록
+     */
+    List<Long> saveAll(String tenantId, List<RawLogEntry> entries);
+
+    /**
+     * 이벤트 한 건의 페이로드를 활성 키로 암호화만 합니다(DB 접근 없음).
+     * - 요청 스레드에서 암호화하고 저장은 나중에 모아서 하는 write-behind 경로에서 사용합니다.
+     *
+     * @param entry 저장할 이벤트
+     * @return 암호문이 함께 담긴 이벤트
+     */
+    EncryptedRawLog encrypt(RawLogEntry entry);
+
+    /**
+     * 이미 암호화된 이벤트 목록을 한 트랜잭션 안에서 JDBC 배치로 저장합니다.
+     *
+     * @param tenantId 저장할 테넌트
+     * @param logs     encrypt()로 만든 이벤트 목록
+     * @return 입력 순서대로 생성된 id 목록
+     */
+    List<Long> saveEncrypted(String tenantId, List<EncryptedRawLog> logs);
+
     /**
      * 관리자 목록 조회.
+     * - cursor가 있으면 그 위치 다음 행부터 읽습니다(키셋 페이지네이션, 깊은 페이지도 건너뛴 행을 읽지 않음).
+     * - cursor가 없으면 offset을 사용합니다(호환용, 깊은 페이지일수록 느려짐).
+     * - 응답의 next_cursor를 다음 요청의 cursor로 넘기면 됩니다(마지막 페이지이면 null).
      *
      * @param from     조회 시작 시각 (nullable)
      * @param to       조회 종료 시각 (nullable)
      * @param eventType 이벤트 타입 필터 (nullable)
      * @param source    소스 필터 (nullable)
      * @param limit     최대 개수 (1~1000)
-     * @return items 리스트와 count를 담은 Map
+     * @param offset    건너뛸 행 수 (cursor가 없을 때만 사용)
+     * @param cursor    이전 페이지 마지막 행 위치 (nullable)
+     * @return items 리스트와 count, next_cursor를 담은 Map (항목에는 payload_preview, payload_size 포함)
      */
     Map<String, Object> findLogs(OffsetDateTime from, OffsetDateTime to, String eventType, String source,
-                                 String requestId, int limit, int offset);
+                                 String requestId, int limit, int offset, ListCursor cursor);
 
     /**
-     * 관리자 Export용 조회.
+     * 관리자 Export용 조회 (스트리밍).
+     * - 결과를 리스트로 모으지 않고, 앞으로만 읽는 ResultSet에서 fetch-size만큼씩 받아 행마다 sink로 넘깁니다.
+     *   복호화는 작은 묶음(batch-rows) 단위로 하므로 메모리 사용량은 내보내는 행 수와 관계없이 일정합니다.
+     * - sink가 IOException을 던지면(클라이언트 연결 끊김 등) 조회를 멈추고 그대로 던집니다.
      *
      * @param from       조회 시작 시각(필수)
      * @param to         조회 종료 시각(필수)
      * @param eventType  이벤트 타입 필터
      * @param source     소스 필터
      * @param requestId  request_id 필터
-     * @param limit      최대 건수
+     * @param limit      최대 건수 (0 이하이면 제한 없음)
      * @param includeDecrypted 복호화 포함 여부(local에서만 허용)
-     * @return export용 리스트
+     * @param sink       행을 받아 쓰는 곳(조회 순서대로 호출)
+     * @return 내보낸 행 수
+     */
+    long exportLogs(OffsetDateTime from, OffsetDateTime to, String eventType, String source,
+                    String requestId, long limit, boolean includeDecrypted, ExportSink sink) throws IOException;
+
+    /**
+     * 분/시간 단위 이벤트 통계 (집계 테이블만 읽음).
+     * - 원시 로그를 훑지 않으므로 비용은 기간 안의 버킷 수에 비례하고, 원시 로그가 정리된 기간도 그대로 조회됩니다.
+     *
+     * @param from        시작 시각(필수, 버킷 시작으로 내림)
+     * @param to          종료 시각(필수, 이 시각 이전 버킷까지)
+     * @param granularity 집계 단위(minute/hour)
+     * @param eventType   이벤트 타입 필터 (nullable)
+     * @param source      소스 필터 (nullable)
+     * @return buckets 리스트(bucket_start, event_type, source, event_count, payload_bytes)와 합계를 담은 Map
      */
-    List<Map<String, Object>> exportLogs(OffsetDateTime from, OffsetDateTime to, String eventType, String source,
-                                         String requestId, int limit, boolean includeDecrypted);
+    Map<String, Object> findStats(OffsetDateTime from, OffsetDateTime to, RawLogRollup.Granularity granularity,
+                                  String eventType, String source);
 
     /**
      * 단건 상세 조회.
@@ -64,4 +134,67 @@ public interface RawLogService {
      * @return row Map 또는 null
      */
     Map<String, Object> findById(long id);
+
+    /**
+     * Export 행을 받아 쓰는 곳(CSV 응답, 파일 등).
+     */
+    @FunctionalInterface
+    interface ExportSink {
+        void write(Map<String, Object> row) throws IOException;
+    }
+
+    /**
+     * 목록 페이지 위치(정렬 키 received_at DESC, id DESC의 마지막 행 값).
+     * - 클라이언트에는 내부 형식을 감춘 문자열(encode)로 주고, 다음 요청에서 decode로 되돌립니다.
+     */
+    record ListCursor(Instant receivedAt, long id) {
+
+        private static final String VERSION = "c1";
+
+        public String encode() {
+            String raw = VERSION + ":" + receivedAt.getEpochSecond() + ":" + receivedAt.getNano() + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * encode()로 만든 문자열을 되돌립니다. 형식이 맞지 않으면 IllegalArgumentException.
+         */
+        public static ListCursor decode(String value) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.US_ASCII).split(":");
+                if (parts.length != 4 || !VERSION.equals(parts[0])) {
+                    throw new IllegalArgumentException("invalid cursor");
+                }
+                return new ListCursor(Instant.ofEpochSecond(Long.parseLong(parts[1]), Long.parseLong(parts[2])),
+                        Long.parseLong(parts[3]));
+            } catch (IllegalArgumentException | java.time.DateTimeException e) {
+                throw new IllegalArgumentException("invalid cursor", e);
+            }
+        }
+    }
+
+    /**
+     * 저장용 이벤트 한 건을 담는 DTO.
+     * - payload는 원문 JSON의 UTF-8 바이트입니다. 해시/암호화가 이 버퍼 하나로 바로 수행됩니다.
+     * - 디스크 스풀에서 읽어 온 이벤트는 평문을 보관하지 않으므로 payload가 null입니다(암호문만 존재).
+     * - idempotencyKey: 클라이언트가 보낸 requestId(멱등 키). 같은 테넌트에서 같은 키는 한 번만 저장되고,
+     *   다시 저장하려 하면 새 행 대신 원래 id가 반환됩니다. null이면 멱등 처리 없이 항상 저장합니다.
+     * - 나머지 필드의 의미는 save()의 파라미터와 같습니다.
+     */
+    record RawLogEntry(String source, String eventType, byte[] payload, String payloadSha256,
+                       OffsetDateTime receivedAt, String requestId, String userId, String role,
+                       String idempotencyKey) {}
+
+    /**
+     * 암호화까지 끝난 이벤트 한 건 (원본 이벤트 + 암호문).
+     * - preview: 목록용 프리뷰(앞 200자)를 같은 키로 따로 암호화한 것. payloadSize: 압축 전 원본 바이트 수.
+     * - 스풀에서 재생한 이벤트처럼 평문이 없으면 둘 다 null이며, 목록 조회 때 뒤늦게 채워집니다.
+     */
+    record EncryptedRawLog(RawLogEntry entry, CryptoKeyRegistry.EncryptedPayload encrypted,
+                           CryptoKeyRegistry.EncryptedPayload preview, Integer payloadSize) {
+
+        public EncryptedRawLog(RawLogEntry entry, CryptoKeyRegistry.EncryptedPayload encrypted) {
+            this(entry, encrypted, null, null);
+        }
+    }
 }
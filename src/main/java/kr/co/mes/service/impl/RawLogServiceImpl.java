@@ -1,16 +1,31 @@
 package kr.co.mes.service.impl;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.LinkedCaseInsensitiveMap;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,6 +33,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import kr.co.mes.crypto.AesGcmCrypto;
 import kr.co.mes.crypto.CryptoKeyRegistry;
 import kr.co.mes.service.RawLogService;
+import kr.co.mes.support.IngestPhaseMetrics;
+import kr.co.mes.support.IngestPhaseMetrics.Phase;
+import kr.co.mes.support.PayloadBulkDecryptor;
+import kr.co.mes.support.PayloadBulkDecryptor.CipherColumns;
+import kr.co.mes.support.PayloadCompressor;
+import kr.co.mes.support.RawLogDetailCache;
+import kr.co.mes.support.RawLogRollup;
+import kr.co.mes.support.RawLogRollupAccumulator;
+import kr.co.mes.support.TenantContext;
 
 /**
  * 초보자용 상세 주석:
@@ -27,63 +51,237 @@ import kr.co.mes.service.RawLogService;
 @Service
 public class RawLogServiceImpl implements RawLogService {
 
+    /**
+     * raw_ingest_log INSERT 문 (단건/배치 공용).
+     * - 멱등 키가 이미 있으면 (tenant_id, idempotency_key) 유니크 인덱스에 걸리며,
+     *   ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id)로 새 행 대신 기존 id를 생성 키로 돌려받습니다.
+     *   (사전 조회 없이 한 번의 왕복으로 처리, 배치 안에서도 입력 순서대로 반환됨)
+     * - 저장 형식 v2는 암호문/nonce를 payload_enc_bin/payload_nonce_bin(BLOB)에 원본 바이트로,
+     *   v1은 payload_enc/payload_nonce(텍스트)에 Base64로 기록합니다(둘 중 한쪽만 채움).
+     * - 목록용 프리뷰(앞 200자)는 같은 키로 따로 암호화해 payload_preview_enc/payload_preview_nonce에,
+     *   압축 전 원본 크기는 payload_size에 기록합니다(저장 형식과 관계없이 바이트 컬럼).
+     * - 테넌트 DataSource는 useAffectedRows=true라, 새 행이면 영향 행 수 1, 멱등 키 중복이면 0입니다
+     *   (id 값이 그대로라 실제 변경이 없음). 이 값으로 새 행만 집계 테이블(RawLogRollup)에 더합니다
+     *   (배치는 같은 트랜잭션에서 upsert, 단건은 RawLogRollupAccumulator가 모아서 따로 반영).
+     */
+    private static final String INSERT_SQL = """
+            INSERT INTO raw_ingest_log
+              (tenant_id, source, event_type, payload_json, payload_sha256, received_at,
+               request_id, user_id, role, payload_enc, payload_nonce, payload_key_id, payload_alg, idempotency_key,
+               payload_codec, payload_dict_id, payload_enc_bin, payload_nonce_bin,
+               payload_preview_enc, payload_preview_nonce, payload_size)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id)
+            """;
+
+    /**
+     * 프리뷰 길이(문자 수). 프리뷰를 만들 때 UTF-8 한 문자가 최대 4바이트이므로 앞 4배 바이트만 문자열로 바꿉니다.
+     */
+    private static final int PREVIEW_CHARS = 200;
+    private static final int PREVIEW_MAX_BYTES = PREVIEW_CHARS * 4;
+
+    private static final Logger log = LoggerFactory.getLogger(RawLogServiceImpl.class);
+
     private final JdbcTemplate jdbcTemplate;
     private final CryptoKeyRegistry keyRegistry;
     private final AesGcmCrypto crypto;
     private final ObjectMapper objectMapper;
+    private final PayloadCompressor compressor;
+    private final IngestPhaseMetrics phaseMetrics;
+    private final PayloadBulkDecryptor bulkDecryptor;
+    private final RawLogDetailCache detailCache;
+    private final RawLogRollupAccumulator rollups;
+    private final boolean binaryColumns;
+    private final boolean previewBackfill;
+    private final int exportFetchSize;
+    private final int exportBatchRows;
 
-    public RawLogServiceImpl(JdbcTemplate jdbcTemplate, CryptoKeyRegistry keyRegistry, AesGcmCrypto crypto, ObjectMapper objectMapper) {
+    public RawLogServiceImpl(JdbcTemplate jdbcTemplate, CryptoKeyRegistry keyRegistry, AesGcmCrypto crypto, ObjectMapper objectMapper,
+                             PayloadCompressor compressor, IngestPhaseMetrics phaseMetrics, PayloadBulkDecryptor bulkDecryptor,
+                             RawLogDetailCache detailCache, RawLogRollupAccumulator rollups,
+                             @Value("${mes.payload.storage.binary-columns:true}") boolean binaryColumns,
+                             @Value("${mes.payload.preview.backfill-on-read:true}") boolean previewBackfill,
+                             @Value("${mes.export.fetch-size:500}") int exportFetchSize,
+                             @Value("${mes.export.batch-rows:256}") int exportBatchRows) {
         this.jdbcTemplate = jdbcTemplate;
         this.keyRegistry = keyRegistry;
         this.crypto = crypto;
         this.objectMapper = objectMapper;
+        this.compressor = compressor;
+        this.phaseMetrics = phaseMetrics;
+        this.bulkDecryptor = bulkDecryptor;
+        this.detailCache = detailCache;
+        this.rollups = rollups;
+        this.binaryColumns = binaryColumns;
+        this.previewBackfill = previewBackfill;
+        this.exportFetchSize = Math.max(exportFetchSize, 1);
+        this.exportBatchRows = Math.max(exportBatchRows, 1);
     }
 
     @Override
     public long save(String tenantId, String source, String eventType, String payloadJson, String payloadSha256,
                      OffsetDateTime receivedAt, String requestId, String userId, String role) {
-        // 1) 페이로드 암호화: AES-GCM 256bit, nonce 12바이트
-        CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt(payloadJson, keyRegistry.getActiveKeyId());
+        return save(tenantId, new RawLogEntry(source, eventType, payloadJson.getBytes(StandardCharsets.UTF_8),
+                payloadSha256, receivedAt, requestId, userId, role, null));
+    }
 
-        // 2) allowPlaintext=false이면 평문은 저장하지 않습니다.
-        String plainToStore = keyRegistry.isAllowPlaintext() ? payloadJson : null;
+    @Override
+    public long save(String tenantId, RawLogEntry entry) {
+        // 1) 페이로드 압축 후 암호화: zstd(event_type별 사전) → AES-GCM 256bit, nonce 12바이트
+        EncryptedRawLog enc = encrypt(tenantId, entry);
 
-        String sql = """
-                INSERT INTO raw_ingest_log
-                  (tenant_id, source, event_type, payload_json, payload_sha256, received_at,
-                   request_id, user_id, role, payload_enc, payload_nonce, payload_key_id, payload_alg)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """;
+        // 2) 커넥션 획득(콜백이 호출되기까지)과 INSERT 실행 시간을 나눠 기록합니다.
+        // 3) 새 행이면 집계 증가분을 RawLogRollupAccumulator에 넘깁니다. 집계 행은 주기마다 따로 반영하므로
+        //    수집 트랜잭션은 INSERT 한 문장(autocommit)으로 끝나고 집계 행 잠금을 기다리지 않습니다.
+        long acquireStart = System.nanoTime();
+        Long id = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            long insertStart = phaseMetrics.record(Phase.CONNECTION_ACQUIRE, tenantId, entry.eventType(), acquireStart);
+            Long savedId;
+            int inserted;
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                bindInsert(ps, tenantId, enc);
+                inserted = ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    savedId = keys.next() ? keys.getLong(1) : null;
+                }
+            } finally {
+                insertStart = phaseMetrics.record(Phase.INSERT, tenantId, entry.eventType(), insertStart);
+            }
+            if (inserted != 0) {
+                rollups.add(tenantId, entry.receivedAt().toInstant(), entry.eventType(), entry.source(), enc.payloadSize());
+                phaseMetrics.record(Phase.ROLLUP, tenantId, entry.eventType(), insertStart);
+            }
+            return savedId;
+        });
+        return id == null ? -1 : id;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> saveAll(String tenantId, List<RawLogEntry> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return List.of();
+        }
 
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            var ps = connection.prepareStatement(sql, new String[]{"id"});
-            ps.setString(1, tenantId);
-            ps.setString(2, source);
-            ps.setString(3, eventType);
-            ps.setString(4, plainToStore);
-            ps.setString(5, payloadSha256);
-            ps.setTimestamp(6, Timestamp.from(receivedAt.toInstant()));
-            ps.setString(7, requestId);
-            ps.setString(8, userId);
-            ps.setString(9, role);
+        // 1) DB 연결을 잡기 전에 모든 페이로드를 먼저 암호화합니다(커넥션 점유 시간 최소화).
+        List<EncryptedRawLog> logs = new ArrayList<>(entries.size());
+        for (RawLogEntry entry : entries) {
+            logs.add(encrypt(tenantId, entry));
+        }
+        return saveEncrypted(tenantId, logs);
+    }
+
+    @Override
+    public EncryptedRawLog encrypt(RawLogEntry entry) {
+        return encrypt(TenantContext.getTenantIdOrDefault(), entry);
+    }
+
+    /**
+     * 압축(PayloadCompressor) 후 암호화합니다. 압축 방식/사전 id는 암호문과 함께 기록됩니다.
+     * - 목록용 프리뷰는 원본 앞부분만 잘라 같은 활성 키로 따로 암호화합니다(payload_key_id 하나로 둘 다 복호화).
+     */
+    private EncryptedRawLog encrypt(String tenantId, RawLogEntry entry) {
+        long start = System.nanoTime();
+        PayloadCompressor.Compressed compressed = compressor.compress(tenantId, entry.eventType(), entry.payload());
+        start = phaseMetrics.record(Phase.COMPRESS, tenantId, entry.eventType(), start);
+        String keyId = keyRegistry.getActiveKeyId();
+        CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt(compressed.data(), keyId);
+        CryptoKeyRegistry.EncryptedPayload preview = crypto.encrypt(previewBytes(entry.payload()), keyId);
+        phaseMetrics.record(Phase.ENCRYPT, tenantId, entry.eventType(), start);
+        return new EncryptedRawLog(entry, enc.withCompression(compressed.codec(), compressed.dictId()),
+                preview, entry.payload().length);
+    }
+
+    @Override
+    @Transactional
+    public List<Long> saveEncrypted(String tenantId, List<EncryptedRawLog> logs) {
+        if (logs == null || logs.isEmpty()) {
+            return List.of();
+        }
+
+        // 한 PreparedStatement에 addBatch로 모아 한 번에 실행하고, 생성 키를 순서대로 읽습니다.
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (EncryptedRawLog log : logs) {
+                    bindInsert(ps, tenantId, log);
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+
+                List<Long> ids = new ArrayList<>(logs.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+                if (ids.size() != logs.size()) {
+                    throw new IllegalStateException("배치 INSERT 생성 키 개수 불일치: expected="
+                            + logs.size() + ", actual=" + ids.size());
+                }
+
+                // 새로 들어간 행(영향 행 수 0이 아닌 것)만 버킷별로 합쳐 집계 테이블에 배치 upsert합니다.
+                // 드라이버가 개수를 모르면 SUCCESS_NO_INFO(-2)를 주므로 새 행으로 셉니다.
+                RawLogRollup.Deltas deltas = new RawLogRollup.Deltas();
+                for (int i = 0; i < logs.size(); i++) {
+                    if (i >= counts.length || counts[i] != 0) {
+                        addDelta(deltas, logs.get(i));
+                    }
+                }
+                deltas.upsert(connection);
+                return ids;
+            }
+        });
+    }
+
+    private static void addDelta(RawLogRollup.Deltas deltas, EncryptedRawLog log) {
+        RawLogEntry entry = log.entry();
+        deltas.add(entry.receivedAt().toInstant(), entry.eventType(), entry.source(), log.payloadSize());
+    }
+
+    /**
+     * INSERT 파라미터 바인딩 (단건/배치 공용).
+     * - allowPlaintext=false이면 평문은 저장하지 않습니다.
+     * - 스풀에서 재생한 이벤트는 평문이 없으므로(payload=null) 암호문만 저장합니다(프리뷰/크기는 목록 조회 때 채움).
+     */
+    private void bindInsert(PreparedStatement ps, String tenantId, EncryptedRawLog log) throws SQLException {
+        RawLogEntry entry = log.entry();
+        CryptoKeyRegistry.EncryptedPayload enc = log.encrypted();
+        String plainToStore = keyRegistry.isAllowPlaintext() && entry.payload() != null
+                ? new String(entry.payload(), StandardCharsets.UTF_8) : null;
+        ps.setString(1, tenantId);
+        ps.setString(2, entry.source());
+        ps.setString(3, entry.eventType());
+        ps.setString(4, plainToStore);
+        ps.setString(5, entry.payloadSha256());
+        ps.setTimestamp(6, Timestamp.from(entry.receivedAt().toInstant()));
+        ps.setString(7, entry.requestId());
+        ps.setString(8, entry.userId());
+        ps.setString(9, entry.role());
+        if (binaryColumns) {
+            ps.setNull(10, Types.LONGVARCHAR);
+            ps.setNull(11, Types.VARCHAR);
+        } else {
             ps.setString(10, enc.cipherTextBase64());
             ps.setString(11, enc.nonceBase64());
-            ps.setString(12, enc.keyId());
-            ps.setString(13, "AES-GCM");
-            return ps;
-        }, keyHolder);
-
-        Number key = keyHolder.getKey();
-        return key == null ? -1 : key.longValue();
+        }
+        ps.setString(12, enc.keyId());
+        ps.setString(13, "AES-GCM");
+        ps.setString(14, entry.idempotencyKey());
+        ps.setString(15, enc.codec());
+        ps.setObject(16, enc.dictId(), Types.BIGINT);
+        ps.setBytes(17, binaryColumns ? enc.cipherText() : null);
+        ps.setBytes(18, binaryColumns ? enc.nonce() : null);
+        ps.setBytes(19, log.preview() != null ? log.preview().cipherText() : null);
+        ps.setBytes(20, log.preview() != null ? log.preview().nonce() : null);
+        ps.setObject(21, log.payloadSize(), Types.INTEGER);
     }
 
     @Override
     public Map<String, Object> findLogs(OffsetDateTime from, OffsetDateTime to, String eventType, String source,
-                                        String requestId, int limit, int offset) {
+                                        String requestId, int limit, int offset, ListCursor cursor) {
         StringBuilder sql = new StringBuilder("""
                 SELECT id, tenant_id, source, event_type, received_at, request_id, user_id, role,
-                       payload_json, payload_enc, payload_nonce, payload_key_id
+                       payload_key_id, payload_preview_enc, payload_preview_nonce, payload_size
                 FROM raw_ingest_log
                 WHERE 1=1
                 """);
@@ -109,33 +307,55 @@ public class RawLogServiceImpl implements RawLogService {
             sql.append(" AND request_id = ? ");
             params.add(requestId);
         }
+        if (cursor != null) {
+            // 키셋: 정렬 순서상 커서 다음 행부터. received_at <= ?를 따로 두어 received_at 인덱스 범위 탐색을 쓰게 하고,
+            // 같은 시각의 행은 id(보조 인덱스에 함께 저장된 PK)로 이어서 읽습니다.
+            Timestamp cursorAt = Timestamp.from(cursor.receivedAt());
+            sql.append(" AND received_at <= ? AND (received_at < ? OR id < ?) ");
+            params.add(cursorAt);
+            params.add(cursorAt);
+            params.add(cursor.id());
+        }
 
         sql.append(" ORDER BY received_at DESC, id DESC ");
         int safeLimit = Math.min(Math.max(limit, 1), 200);
-        int safeOffset = Math.max(offset, 0);
+        // 커서가 있으면 offset은 무시합니다(offset은 커서 이전 방식과의 호환용).
+        int safeOffset = cursor != null ? 0 : Math.max(offset, 0);
         sql.append(" LIMIT ? OFFSET ? ");
         params.add(safeLimit);
         params.add(safeOffset);
 
-        List<Map<String, Object>> rows = jdbcTemplate.query(sql.toString(), params.toArray(), (rs, rowNum) -> mapRowWithPreview(rs));
+        // 페이로드 본문(LONGTEXT/BLOB)은 읽지 않고, 행마다 따로 암호화해 둔 프리뷰만 모아서 복호화합니다.
+        List<PendingRow> pending = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> mapRowWithPreview(rs), params.toArray());
+        List<Map<String, Object>> rows = completeRows(pending, (row, payload) -> row.put("payload_preview",
+                payload.failed() || payload.plain() == null ? "[decrypt failed]" : payload.plain()));
+        // 프리뷰가 없는 행(이 기능 이전에 저장된 행, 스풀 재생 행)은 본문을 읽어 만들고 저장해 둡니다.
+        backfillPreviews(pending.stream().filter(p -> p.cipher() == null).map(PendingRow::row).toList());
 
         Map<String, Object> result = new HashMap<>();
         result.put("items", rows);
         result.put("count", rows.size());
         result.put("limit", safeLimit);
         result.put("offset", safeOffset);
+        result.put("next_cursor", rows.size() < safeLimit ? null : nextCursor(rows.get(rows.size() - 1)).encode());
         return result;
     }
 
     @Override
-    public List<Map<String, Object>> exportLogs(OffsetDateTime from, OffsetDateTime to, String eventType, String source,
-                                                String requestId, int limit, boolean includeDecrypted) {
+    public long exportLogs(OffsetDateTime from, OffsetDateTime to, String eventType, String source,
+                           String requestId, long limit, boolean includeDecrypted, ExportSink sink) throws IOException {
+        // 복호화하지 않는 export는 본문 암호문(LONGTEXT/BLOB)을 읽지 않습니다.
+        // 평문으로 저장된 예전 행의 프리뷰에 필요한 payload_json 앞부분만 잘라 받습니다.
+        String payloadColumns = includeDecrypted
+                ? "payload_json, payload_enc, payload_nonce, payload_key_id, payload_alg, "
+                        + "payload_codec, payload_dict_id, payload_enc_bin, payload_nonce_bin"
+                : "LEFT(payload_json, " + PREVIEW_CHARS + ") AS payload_json";
         StringBuilder sql = new StringBuilder("""
                 SELECT id, tenant_id, source, event_type, received_at, request_id, user_id, role,
-                       payload_json, payload_enc, payload_nonce, payload_key_id, payload_alg
+                       %s
                 FROM raw_ingest_log
                 WHERE 1=1
-                """);
+                """.formatted(payloadColumns));
         var params = new java.util.ArrayList<Object>();
 
         if (from != null) {
@@ -160,30 +380,129 @@ public class RawLogServiceImpl implements RawLogService {
         }
 
         sql.append(" ORDER BY received_at DESC, id DESC ");
-        int safeLimit = Math.min(Math.max(limit, 1), 5000);
-        sql.append(" LIMIT ").append(safeLimit);
+        if (limit > 0) {
+            sql.append(" LIMIT ").append(limit);
+        }
+
+        // 앞으로만 읽는 ResultSet + fetch size: 드라이버가 결과 전체를 메모리에 올리지 않고 조금씩 받아 옵니다.
+        // 행은 batch-rows개씩 모아 일괄 복호화한 뒤 바로 sink로 넘기고 버립니다.
+        List<PendingRow> batch = new ArrayList<>(exportBatchRows);
+        long[] written = {0};
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql.toString(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(exportFetchSize);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                batch.add(mapRowForExport(rs, includeDecrypted));
+                if (batch.size() >= exportBatchRows) {
+                    written[0] += writeExportBatch(batch, sink);
+                }
+            });
+            written[0] += writeExportBatch(batch, sink);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return written[0];
+    }
+
+    /**
+     * Export 묶음 하나를 복호화해 sink로 넘기고 비웁니다. sink의 IOException은 행 콜백 밖으로 전달하려고 감쌉니다.
+     */
+    private int writeExportBatch(List<PendingRow> batch, ExportSink sink) {
+        List<Map<String, Object>> rows = completeRows(batch, (row, payload) -> {
+            row.put("payload_preview", preview(payload.plain() != null ? payload.plain() : "[encrypted]"));
+            row.put("decrypted_payload", payload.plain());
+        });
+        batch.clear();
+        try {
+            for (Map<String, Object> row : rows) {
+                sink.write(row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows.size();
+    }
+
+    @Override
+    public Map<String, Object> findStats(OffsetDateTime from, OffsetDateTime to, RawLogRollup.Granularity granularity,
+                                         String eventType, String source) {
+        StringBuilder sql = new StringBuilder("SELECT bucket_start, event_type, source, event_count, payload_bytes FROM ")
+                .append(granularity.table())
+                .append(" WHERE bucket_start >= ? AND bucket_start < ? ");
+        List<Object> params = new ArrayList<>();
+        params.add(Timestamp.from(granularity.bucketOf(from.toInstant())));
+        params.add(Timestamp.from(to.toInstant()));
+        if (eventType != null && !eventType.isBlank()) {
+            sql.append(" AND event_type = ? ");
+            params.add(eventType);
+        }
+        if (source != null && !source.isBlank()) {
+            sql.append(" AND source = ? ");
+            params.add(source);
+        }
+        sql.append(" ORDER BY bucket_start, event_type, source");
+
+        long[] totals = new long[2];
+        List<Map<String, Object>> buckets = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+            row.put("bucket_start", rs.getTimestamp("bucket_start").toInstant().toString());
+            row.put("event_type", rs.getString("event_type"));
+            row.put("source", rs.getString("source"));
+            row.put("event_count", rs.getLong("event_count"));
+            row.put("payload_bytes", rs.getLong("payload_bytes"));
+            totals[0] += rs.getLong("event_count");
+            totals[1] += rs.getLong("payload_bytes");
+            return row;
+        }, params.toArray());
 
-        return jdbcTemplate.query(sql.toString(), params.toArray(),
-                (rs, rowNum) -> mapRowForExport(rs, includeDecrypted));
+        Map<String, Object> result = new HashMap<>();
+        result.put("granularity", granularity.name().toLowerCase());
+        result.put("buckets", buckets);
+        result.put("count", buckets.size());
+        result.put("total_events", totals[0]);
+        result.put("total_payload_bytes", totals[1]);
+        return result;
     }
 
     @Override
     public Map<String, Object> findById(long id) {
+        // 행은 저장 후 바뀌지 않으므로, 최근에 연 행은 DB 조회/복호화 없이 캐시에서 돌려줍니다.
+        String tenantId = TenantContext.getTenantIdOrDefault();
+        Map<String, Object> cached = detailCache.get(tenantId, id);
+        if (cached != null) {
+            return cached;
+        }
         String sql = """
                 SELECT id, tenant_id, source, event_type, payload_json, payload_sha256,
                        received_at, request_id, user_id, role,
-                       payload_enc, payload_nonce, payload_key_id, payload_alg
+                       payload_enc, payload_nonce, payload_key_id, payload_alg, payload_codec, payload_dict_id,
+                       payload_enc_bin, payload_nonce_bin
                 FROM raw_ingest_log
                 WHERE id = ?
                 """;
         List<Map<String, Object>> list = jdbcTemplate.query(sql, (rs, rowNum) -> mapRowFull(rs), id);
-        return list.isEmpty() ? null : list.get(0);
+        if (list.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> row = list.get(0);
+        // 복호화에 실패한 결과는 원인(키 누락 등)이 해결되면 달라질 수 있으므로 캐시하지 않습니다.
+        if (!row.containsKey("decrypt_error")) {
+            detailCache.put(tenantId, id, row);
+        }
+        return row;
     }
 
     /**
      * 목록 조회용: payload를 preview만 제공(앞 200자).
+     * - 프리뷰 암호문이 있으면 일괄 복호화 대상으로, 없으면 backfillPreviews 대상으로 돌려줍니다(cipher=null).
      */
-    private Map<String, Object> mapRowWithPreview(ResultSet rs) throws java.sql.SQLException {
+    private PendingRow mapRowWithPreview(ResultSet rs) throws java.sql.SQLException {
         Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
         row.put("id", rs.getLong("id"));
         row.put("tenant_id", rs.getString("tenant_id"));
@@ -193,22 +512,104 @@ public class RawLogServiceImpl implements RawLogService {
         row.put("request_id", rs.getString("request_id"));
         row.put("user_id", rs.getString("user_id"));
         row.put("role", rs.getString("role"));
-        String payload = rs.getString("payload_json");
-        if (payload == null) {
-            // 평문이 없으면 암호문을 복호화해 프리뷰를 만듭니다.
-            String cipher = rs.getString("payload_enc");
-            String nonce = rs.getString("payload_nonce");
-            String keyId = rs.getString("payload_key_id");
-            try {
-                payload = crypto.decrypt(cipher, nonce, keyId);
-            } catch (Exception e) {
-                payload = "[decrypt failed]";
+        row.put("payload_size", rs.getObject("payload_size", Integer.class));
+        row.put("payload_preview", null);
+        byte[] previewEnc = rs.getBytes("payload_preview_enc");
+        byte[] previewNonce = rs.getBytes("payload_preview_nonce");
+        if (previewEnc == null || previewNonce == null) {
+            return new PendingRow(row, null);
+        }
+        // 프리뷰는 압축하지 않고 암호화만 했으므로 codec/사전 없이 복호화합니다.
+        return new PendingRow(row, new CipherColumns(rs.getString("payload_key_id"), previewEnc, previewNonce,
+                null, null, null, null));
+    }
+
+    /**
+     * 프리뷰가 없는 목록 행을 채웁니다(지연 백필).
+     * - 해당 행들의 본문을 한 번에 읽어 일괄 복호화한 뒤 프리뷰/크기를 응답에 넣습니다.
+     * - backfill-on-read=true이면 프리뷰를 그 행의 키로 암호화해 저장하므로, 다음 조회부터는 본문을 읽지 않습니다.
+     *   (그 사이 키 교체 등으로 행이 바뀌었으면 조건에 맞지 않아 저장하지 않음)
+     */
+    private void backfillPreviews(List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Map<Long, Map<String, Object>> byId = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            byId.put((Long) row.get("id"), row);
+        }
+        String sql = """
+                SELECT id, payload_json, payload_enc, payload_nonce, payload_key_id, payload_codec, payload_dict_id,
+                       payload_enc_bin, payload_nonce_bin
+                FROM raw_ingest_log
+                WHERE id IN (%s)
+                """.formatted(String.join(",", Collections.nCopies(byId.size(), "?")));
+        List<BackfillRow> loaded = jdbcTemplate.query(sql, (rs, rowNum) ->
+                new BackfillRow(rs.getLong("id"), rs.getString("payload_json"), CipherColumns.from(rs)),
+                byId.keySet().toArray());
+
+        // 평문 컬럼이 있는 행은 그대로 쓰고, 나머지만 일괄 복호화합니다.
+        List<BackfillRow> encrypted = loaded.stream().filter(b -> b.plain() == null).toList();
+        List<PayloadBulkDecryptor.Decrypted> results = bulkDecryptor.decryptAll(TenantContext.getTenantIdOrDefault(),
+                encrypted.stream().map(BackfillRow::cipher).toList());
+        Map<Long, PayloadBulkDecryptor.Decrypted> decrypted = new HashMap<>();
+        for (int i = 0; i < encrypted.size(); i++) {
+            decrypted.put(encrypted.get(i).id(), results.get(i));
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        for (BackfillRow b : loaded) {
+            Map<String, Object> row = byId.get(b.id());
+            String plain = b.plain();
+            if (plain == null) {
+                PayloadBulkDecryptor.Decrypted result = decrypted.get(b.id());
+                if (result.failed()) {
+                    row.put("payload_preview", "[decrypt failed]");
+                    row.put("decrypt_error", result.error());
+                    continue;
+                }
+                plain = result.plain();
+            }
+            if (plain == null) {
+                continue;
+            }
+            byte[] payload = plain.getBytes(StandardCharsets.UTF_8);
+            byte[] preview = previewBytes(payload);
+            row.put("payload_preview", new String(preview, StandardCharsets.UTF_8));
+            row.put("payload_size", payload.length);
+            String keyId = b.cipher().keyId();
+            if (previewBackfill && keyId != null) {
+                CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt(preview, keyId);
+                updates.add(new Object[]{enc.cipherText(), enc.nonce(), payload.length, b.id(), keyId});
             }
         }
-        row.put("payload_preview", preview(payload));
-        return row;
+        if (updates.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate("""
+                    UPDATE raw_ingest_log
+                    SET payload_preview_enc = ?, payload_preview_nonce = ?, payload_size = ?
+                    WHERE id = ? AND payload_key_id = ? AND payload_preview_enc IS NULL
+                    """, updates);
+        } catch (DataAccessException e) {
+            // 저장에 실패해도 응답은 이미 채웠으므로, 다음 조회 때 다시 시도합니다.
+            log.warn("프리뷰 백필 저장 실패 - rows={}, 원인={}", updates.size(), e.getMessage());
+        }
     }
 
+    /**
+     * 페이지 마지막 행의 정렬 키로 다음 페이지 커서를 만듭니다.
+     */
+    private static ListCursor nextCursor(Map<String, Object> lastRow) {
+        return new ListCursor(((Timestamp) lastRow.get("received_at")).toInstant(), (Long) lastRow.get("id"));
+    }
+
+    /**
+     * 백필용으로 다시 읽은 행(평문 컬럼 또는 본문 암호문).
+     */
+    private record BackfillRow(long id, String plain, CipherColumns cipher) {}
+
     /**
      * 단건 조회용: payload 전체 반환.
      */
@@ -224,33 +625,36 @@ public class RawLogServiceImpl implements RawLogService {
         row.put("request_id", rs.getString("request_id"));
         row.put("user_id", rs.getString("user_id"));
         row.put("role", rs.getString("role"));
-        row.put("payload_enc", rs.getString("payload_enc"));
-        row.put("payload_nonce", rs.getString("payload_nonce"));
+        // 응답 형식은 저장 형식과 관계없이 Base64 문자열로 유지합니다.
+        byte[] cipherBin = rs.getBytes("payload_enc_bin");
+        byte[] nonceBin = rs.getBytes("payload_nonce_bin");
+        row.put("payload_enc", cipherBin != null ? Base64.getEncoder().encodeToString(cipherBin) : rs.getString("payload_enc"));
+        row.put("payload_nonce", nonceBin != null ? Base64.getEncoder().encodeToString(nonceBin) : rs.getString("payload_nonce"));
+        row.put("payload_storage_version", cipherBin != null ? 2 : 1);
         row.put("payload_key_id", rs.getString("payload_key_id"));
         row.put("payload_alg", rs.getString("payload_alg"));
+        row.put("payload_codec", rs.getString("payload_codec"));
+        row.put("payload_dict_id", rs.getObject("payload_dict_id", Long.class));
 
         // ADMIN 상세 조회 시 복호화된 페이로드를 함께 제공합니다.
-        String cipher = rs.getString("payload_enc");
-        String nonce = rs.getString("payload_nonce");
-        String keyId = rs.getString("payload_key_id");
-        if (cipher != null && nonce != null && keyId != null) {
-            try {
-                String plain = crypto.decrypt(cipher, nonce, keyId);
+        try {
+            String plain = decryptPayload(rs);
+            if (plain != null) {
                 row.put("decrypted_payload", plain);
-            } catch (Exception e) {
-                row.put("decrypted_payload", null);
-                row.put("decrypt_error", e.getMessage());
             }
+        } catch (Exception e) {
+            row.put("decrypted_payload", null);
+            row.put("decrypt_error", e.getMessage());
         }
         return row;
     }
 
     /**
      * Export용 행 매핑.
-     * - 기본은 payload_preview만 제공한다.
+     * - 기본은 payload_preview만 제공한다(이때 SELECT에는 잘린 payload_json만 있고 암호문 컬럼은 없다).
      * - includeDecrypted=true일 때만 decrypted_payload를 포함한다.
      */
-    private Map<String, Object> mapRowForExport(ResultSet rs, boolean includeDecrypted) throws java.sql.SQLException {
+    private PendingRow mapRowForExport(ResultSet rs, boolean includeDecrypted) throws java.sql.SQLException {
         Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
         row.put("id", rs.getLong("id"));
         row.put("tenant_id", rs.getString("tenant_id"));
@@ -262,40 +666,81 @@ public class RawLogServiceImpl implements RawLogService {
         row.put("role", rs.getString("role"));
 
         String payload = rs.getString("payload_json");
-        String decrypted = null;
         if (payload == null && includeDecrypted) {
-            String cipher = rs.getString("payload_enc");
-            String nonce = rs.getString("payload_nonce");
-            String keyId = rs.getString("payload_key_id");
-            if (cipher != null && nonce != null && keyId != null) {
-                try {
-                    decrypted = crypto.decrypt(cipher, nonce, keyId);
-                } catch (Exception e) {
-                    decrypted = null;
-                }
-            }
+            // 복호화는 행을 모두 읽은 뒤 일괄(병렬)로 하고, 프리뷰/decrypted_payload는 그때 채웁니다.
+            row.put("payload_preview", null);
+            row.put("decrypted_payload", null);
+            return new PendingRow(row, CipherColumns.from(rs));
         }
-
-        String previewSource;
-        if (payload != null) {
-            previewSource = payload;
-        } else if (includeDecrypted && decrypted != null) {
-            previewSource = decrypted;
-        } else {
-            previewSource = "[encrypted]";
+        row.put("payload_preview", preview(payload != null ? payload : "[encrypted]"));
+        if (includeDecrypted) {
+            row.put("decrypted_payload", null);
         }
-        row.put("payload_preview", preview(previewSource));
+        return new PendingRow(row, null);
+    }
 
-        if (includeDecrypted) {
-            row.put("decrypted_payload", decrypted);
+    /**
+     * 행 매핑 결과. cipher가 있으면 일괄 복호화 후 값을 채워야 하는 행입니다.
+     */
+    private record PendingRow(Map<String, Object> row, CipherColumns cipher) {}
+
+    /**
+     * 복호화가 필요한 행만 모아 PayloadBulkDecryptor로 병렬 복호화하고, 결과를 원래 행에 채웁니다.
+     * - 행 순서는 조회 순서 그대로 유지됩니다.
+     * - 복호화에 실패한 행에는 decrypt_error(원인 메시지)를 함께 넣습니다.
+     */
+    private List<Map<String, Object>> completeRows(List<PendingRow> pending,
+                                                   java.util.function.BiConsumer<Map<String, Object>, PayloadBulkDecryptor.Decrypted> fill) {
+        List<Map<String, Object>> rows = new ArrayList<>(pending.size());
+        List<PendingRow> toDecrypt = new ArrayList<>();
+        for (PendingRow p : pending) {
+            rows.add(p.row());
+            if (p.cipher() != null) {
+                toDecrypt.add(p);
+            }
         }
-        return row;
+        if (toDecrypt.isEmpty()) {
+            return rows;
+        }
+        List<PayloadBulkDecryptor.Decrypted> results = bulkDecryptor.decryptAll(TenantContext.getTenantIdOrDefault(),
+                toDecrypt.stream().map(PendingRow::cipher).toList());
+        for (int i = 0; i < toDecrypt.size(); i++) {
+            Map<String, Object> row = toDecrypt.get(i).row();
+            PayloadBulkDecryptor.Decrypted result = results.get(i);
+            fill.accept(row, result);
+            if (result.failed()) {
+                row.put("decrypt_error", result.error());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 단건 조회용 복호화(형식 판별/압축 해제는 PayloadBulkDecryptor와 공용). 암호문이 없는 행이면 null.
+     */
+    private String decryptPayload(ResultSet rs) throws SQLException {
+        return bulkDecryptor.decrypt(TenantContext.getTenantIdOrDefault(), CipherColumns.from(rs));
     }
 
-    private String preview(String payload) {
+    /**
+     * 목록/Export용 프리뷰(앞 200자). 벤치마크에서 직접 호출할 수 있도록 패키지 범위 static으로 둡니다.
+     */
+    static String preview(String payload) {
         if (payload == null) {
             return null;
         }
-        return payload.length() <= 200 ? payload : payload.substring(0, 200);
+        return payload.length() <= PREVIEW_CHARS ? payload : payload.substring(0, PREVIEW_CHARS);
+    }
+
+    /**
+     * 저장용 프리뷰(앞 200자)의 UTF-8 바이트. 큰 페이로드 전체를 문자열로 바꾸지 않도록 앞 800바이트만 디코딩합니다.
+     * (200자가 차기 전에 잘린 마지막 문자는 200자 안에 들어오지 않으므로 결과에 영향이 없음)
+     */
+    static byte[] previewBytes(byte[] payload) {
+        if (payload.length <= PREVIEW_CHARS) {
+            return payload;
+        }
+        String head = new String(payload, 0, Math.min(payload.length, PREVIEW_MAX_BYTES), StandardCharsets.UTF_8);
+        return preview(head).getBytes(StandardCharsets.UTF_8);
     }
 }
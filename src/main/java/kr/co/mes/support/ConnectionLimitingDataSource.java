@@ -0,0 +1,124 @@
+package kr.co.mes.support;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 테넌트 DataSource 앞에 두는 "동시 커넥션 입장 제한"(bulkhead)입니다.
+ * - 가상 스레드 모드에서는 요청 수천 개가 동시에 getConnection()으로 몰릴 수 있으므로,
+ *   커넥션 풀 크기만큼의 허가(permit)를 가진 Semaphore에서 먼저 순서를 기다리게 합니다.
+ * - Semaphore 대기는 가상 스레드를 캐리어 스레드에 고정(pinning)하지 않으므로, 기다리는 동안 메모리/스레드 비용이 거의 없습니다.
+ * - acquire-timeout 안에 자리가 나지 않으면 SQLTransientConnectionException을 던집니다
+ *   (스프링에서 DataAccessException으로 변환되어 스풀 전환 등 기존 장애 처리 경로를 그대로 탑니다).
+ * - 허가는 Connection.close() 시점에 한 번만 반납됩니다.
+ */
+public class ConnectionLimitingDataSource extends DelegatingDataSource {
+
+    private final String tenantId;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMs;
+    private final Counter timeoutCounter;
+
+    public ConnectionLimitingDataSource(String tenantId, DataSource target, int maxConcurrent, long acquireTimeoutMs,
+                                        MeterRegistry meterRegistry) {
+        super(target);
+        this.tenantId = tenantId;
+        this.maxConcurrent = Math.max(maxConcurrent, 1);
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        Gauge.builder("mes.datasource.connection_limit.waiting", permits, Semaphore::getQueueLength)
+                .description("DB 커넥션 입장을 기다리는 스레드 수")
+                .tag("tenant", tenantId)
+                .register(meterRegistry);
+        Gauge.builder("mes.datasource.connection_limit.in_use", permits, p -> this.maxConcurrent - p.availablePermits())
+                .description("입장 허가를 받아 사용 중인 커넥션 수")
+                .tag("tenant", tenantId)
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("mes.datasource.connection_limit.timeouts")
+                .description("입장 대기 시간이 초과되어 실패한 커넥션 요청 수")
+                .tag("tenant", tenantId)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return guard(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return guard(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeoutCounter.increment();
+                throw new SQLTransientConnectionException("connection limit wait timed out - tenant=" + tenantId
+                        + ", maxConcurrent=" + maxConcurrent + ", timeoutMs=" + acquireTimeoutMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("interrupted while waiting for connection - tenant=" + tenantId, e);
+        }
+    }
+
+    /**
+     * close()가 불리면 허가를 반납하도록 커넥션을 감쌉니다(중복 close에도 한 번만 반납).
+     */
+    private Connection guard(Connection target) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                        try {
+                            target.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                permits.release();
+                            }
+                        }
+                        return null;
+                    }
+                    if ("equals".equals(method.getName()) && method.getParameterCount() == 1) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(method.getName()) && method.getParameterCount() == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
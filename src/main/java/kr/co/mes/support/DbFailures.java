@@ -0,0 +1,36 @@
+package kr.co.mes.support;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+
+/**
+ * 초보자용 상세 주석:
+ * - DB 저장 실패가 "잠시 뒤 다시 하면 될 수 있는 실패"인지 가려냅니다.
+ * - 재시도/스풀 대상: 일시 오류(TransientDataAccessException: 락 대기 초과, 동시 입장 제한 대기 초과 등),
+ *   연결 실패(CannotGetJdbcConnectionException 등 DataAccessResourceFailureException), 복구 가능 오류(RecoverableDataAccessException).
+ * - 그 외(DataIntegrityViolationException: 컬럼 길이 초과/제약 위반, SQL 문법 오류 등)는 몇 번을 다시 해도 같은 결과이므로
+ *   스풀에 넣거나 무한 재시도하면 뒤따르는 이벤트까지 막습니다. 호출자는 즉시 실패로 처리하거나 격리해야 합니다.
+ */
+public final class DbFailures {
+
+    private DbFailures() {
+    }
+
+    /**
+     * 예외(또는 원인 체인)가 일시/연결 오류이면 true.
+     */
+    public static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+}
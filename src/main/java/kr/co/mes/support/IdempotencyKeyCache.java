@@ -0,0 +1,129 @@
+package kr.co.mes.support;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 클라이언트가 보낸 requestId(멱등 키)와 저장된 id를 최근 것만 기억하는 테넌트별 캐시입니다.
+ * - 같은 키로 재전송이 오면 DB 조회/암호화/INSERT 없이 원래 id를 바로 돌려줄 수 있습니다.
+ * - 캐시에 없더라도 DB의 (tenant_id, idempotency_key) 유니크 인덱스가 최종 보장을 하므로,
+ *   캐시는 "빠른 길"일 뿐이고 크기 제한으로 밀려나도 정확성에는 영향이 없습니다.
+ * - ttl이 지난 항목과, max-entries를 넘을 때의 오래된 항목은 정리합니다.
+ */
+@Component
+@Profile("local")
+public class IdempotencyKeyCache {
+
+    /**
+     * 멱등 키 최대 길이 (idempotency_key 컬럼 크기와 같음).
+     */
+    public static final int MAX_KEY_LENGTH = 128;
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Map<String, ConcurrentHashMap<String, Entry>> caches = new HashMap<>();
+    private final Map<String, Counter> hitCounters = new HashMap<>();
+
+    @Autowired
+    public IdempotencyKeyCache(MeterRegistry meterRegistry,
+                               @Value("${mes.ingest.idempotency.enabled:true}") boolean enabled,
+                               @Value("${mes.ingest.idempotency.cache-ttl-seconds:600}") long ttlSeconds,
+                               @Value("${mes.ingest.idempotency.cache-max-entries:100000}") int maxEntries) {
+        this(meterRegistry, enabled, TimeUnit.SECONDS.toMillis(ttlSeconds), maxEntries, System::currentTimeMillis);
+    }
+
+    /**
+     * 테스트에서 시계를 바꿔 끼울 수 있도록 열어 둔 생성자.
+     */
+    IdempotencyKeyCache(MeterRegistry meterRegistry, boolean enabled, long ttlMillis, int maxEntries, LongSupplier clock) {
+        this.enabled = enabled;
+        this.ttlMillis = Math.max(ttlMillis, 1);
+        this.maxEntries = Math.max(maxEntries, 1);
+        this.clock = clock;
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+            caches.put(tenant, cache);
+            Gauge.builder("mes.ingest.idempotency.cache.size", cache, Map::size)
+                    .description("멱등 키 캐시에 있는 키 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+            hitCounters.put(tenant, Counter.builder("mes.ingest.idempotency.hits")
+                    .description("멱등 키 캐시로 재저장 없이 원래 id를 돌려준 요청 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 멱등 키 사용 여부. 꺼져 있으면 클라이언트 requestId는 저장만 하지 않고 무시합니다.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 최근에 저장된 키라면 원래 id를, 아니면 null을 반환합니다.
+     */
+    public Long lookup(String tenantId, String key) {
+        ConcurrentHashMap<String, Entry> cache = enabled && key != null ? caches.get(tenantId) : null;
+        if (cache == null) {
+            return null;
+        }
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (clock.getAsLong() - entry.storedAt() >= ttlMillis) {
+            cache.remove(key, entry);
+            return null;
+        }
+        hitCounters.get(tenantId).increment();
+        return entry.id();
+    }
+
+    /**
+     * 저장이 끝난 키와 id를 기억합니다.
+     */
+    public void remember(String tenantId, String key, long id) {
+        ConcurrentHashMap<String, Entry> cache = enabled && key != null ? caches.get(tenantId) : null;
+        if (cache == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        if (cache.size() >= maxEntries) {
+            evict(cache, now);
+        }
+        cache.put(key, new Entry(id, now));
+    }
+
+    /**
+     * 만료 항목을 먼저 지우고, 그래도 가득 차 있으면 남은 ttl의 앞쪽 절반(오래된 항목)을 지웁니다.
+     */
+    private void evict(ConcurrentHashMap<String, Entry> cache, long now) {
+        cache.values().removeIf(e -> now - e.storedAt() >= ttlMillis);
+        if (cache.size() >= maxEntries) {
+            long cutoff = now - ttlMillis / 2;
+            cache.values().removeIf(e -> e.storedAt() <= cutoff);
+        }
+        if (cache.size() >= maxEntries) {
+            cache.clear();
+        }
+    }
+
+    private record Entry(long id, long storedAt) {}
+}
@@ -0,0 +1,313 @@
+package kr.co.mes.support;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 초보자용 상세 주석:
+ * - 수집 API(/api/ingest/**)의 압축 요청 본문(Content-Encoding: gzip / deflate)을 스트리밍으로 풀어 줍니다.
+ * - 요청 스트림만 감싸서 바꾸므로 컨트롤러는 평소처럼 본문을 읽으면 됩니다(NDJSON은 줄 단위로 읽으며 풀림).
+ * - 압축 폭탄 방지: 풀린 크기가 상한을 넘는 순간 InflatedBodyTooLargeException을 던집니다(413 응답).
+ *   상한은 엔드포인트마다 다릅니다. /raw, /raw/batch는 본문 전체를 byte[]로 메모리에 올리므로
+ *   max-buffered-inflated-bytes(기본 4MB, 배치 최대 건수 기준)를 쓰고,
+ *   줄 단위로 흘려 읽는 NDJSON(/raw/ndjson)만 큰 상한 max-inflated-bytes(기본 64MB)를 씁니다.
+ * - deflate는 zlib 헤더가 있는 형식(RFC 1950)과 헤더 없는 raw deflate를 모두 받습니다.
+ * - 지원하지 않는 Content-Encoding(br 등)은 415로 거절합니다.
+ * - 지표: 압축률(풀린 크기/압축 크기), 압축 해제에 쓴 시간, 크기 초과 거절 수.
+ */
+@Component
+@Profile("local")
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+public class IngestDecompressionFilter extends OncePerRequestFilter {
+
+    private static final String INGEST_PATH_PREFIX = "/api/ingest/";
+
+    /**
+     * 본문을 스트리밍으로 읽어 큰 상한을 허용하는 경로.
+     */
+    private static final String STREAMING_PATH = "/api/ingest/raw/ndjson";
+
+    private final long maxInflatedBytes;
+    private final long maxBufferedInflatedBytes;
+    private final MeterRegistry meterRegistry;
+    private final Counter tooLargeCounter;
+
+    public IngestDecompressionFilter(MeterRegistry meterRegistry,
+                                     @Value("${mes.ingest.decompression.max-inflated-bytes:67108864}") long maxInflatedBytes,
+                                     @Value("${mes.ingest.decompression.max-buffered-inflated-bytes:4194304}") long maxBufferedInflatedBytes) {
+        this.meterRegistry = meterRegistry;
+        this.maxInflatedBytes = maxInflatedBytes;
+        this.maxBufferedInflatedBytes = Math.min(maxBufferedInflatedBytes, maxInflatedBytes);
+        this.tooLargeCounter = Counter.builder("mes.ingest.decompress.rejected")
+                .description("풀린 크기 상한을 넘어 거절된 압축 요청 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 풀린 본문이 상한을 넘었을 때 던지는 예외.
+     */
+    public static class InflatedBodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public InflatedBodyTooLargeException(long limit) {
+            super("decompressed request body exceeds " + limit + " bytes");
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return request.getHeader(HttpHeaders.CONTENT_ENCODING) == null || !path.startsWith(INGEST_PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING).trim().toLowerCase(Locale.ROOT);
+        if (encoding.isEmpty() || encoding.equals("identity")) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!encoding.equals("gzip") && !encoding.equals("x-gzip") && !encoding.equals("deflate")) {
+            response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().write("{\"ok\":false,\"error\":\"unsupported content-encoding\",\"supported\":[\"gzip\",\"deflate\"]}");
+            return;
+        }
+
+        String tag = encoding.equals("deflate") ? "deflate" : "gzip";
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        long limit = path.equals(STREAMING_PATH) ? maxInflatedBytes : maxBufferedInflatedBytes;
+        DecompressingRequest wrapped = new DecompressingRequest(request, tag, limit);
+        try {
+            filterChain.doFilter(wrapped, response);
+        } finally {
+            wrapped.recordMetrics();
+        }
+    }
+
+    /**
+     * Content-Encoding/Content-Length 헤더를 숨기고, 본문 스트림을 압축 해제 스트림으로 바꾼 요청.
+     */
+    private final class DecompressingRequest extends HttpServletRequestWrapper {
+        private final String encoding;
+        private final long limit;
+        private CountingInputStream compressed;
+        private InflatingServletInputStream inflated;
+        private BufferedReader reader;
+
+        DecompressingRequest(HttpServletRequest request, String encoding, long limit) {
+            super(request);
+            this.encoding = encoding;
+            this.limit = limit;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inflated == null) {
+                compressed = new CountingInputStream(super.getInputStream());
+                InputStream decoder = encoding.equals("gzip") ? new GZIPInputStream(compressed, 8192) : openDeflate(compressed);
+                inflated = new InflatingServletInputStream(decoder, limit);
+            }
+            return inflated;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                String charset = getCharacterEncoding();
+                reader = new BufferedReader(new InputStreamReader(getInputStream(),
+                        charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset)));
+            }
+            return reader;
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isHidden(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = Collections.list(super.getHeaderNames());
+            names.removeIf(this::isHidden);
+            return Collections.enumeration(names);
+        }
+
+        private boolean isHidden(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+
+        void recordMetrics() {
+            if (inflated == null || compressed.count == 0) {
+                return;
+            }
+            DistributionSummary.builder("mes.ingest.decompress.ratio")
+                    .description("압축 해제 후 크기 / 압축 크기")
+                    .tag("encoding", encoding)
+                    .register(meterRegistry)
+                    .record((double) inflated.count / compressed.count);
+            Timer.builder("mes.ingest.decompress.latency")
+                    .description("요청 본문 압축 해제에 쓴 시간")
+                    .tag("encoding", encoding)
+                    .register(meterRegistry)
+                    .record(inflated.inflateNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * zlib 헤더(RFC 1950) 유무를 첫 2바이트로 판별해 알맞은 Inflater를 고릅니다.
+     */
+    private static InputStream openDeflate(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        int b0 = pushback.read();
+        int b1 = b0 < 0 ? -1 : pushback.read();
+        if (b1 >= 0) {
+            pushback.unread(b1);
+        }
+        if (b0 >= 0) {
+            pushback.unread(b0);
+        }
+        boolean zlibWrapped = b1 >= 0 && (b0 & 0x0F) == 8 && ((b0 << 8) | b1) % 31 == 0;
+        return new InflaterInputStream(pushback, new Inflater(!zlibWrapped), 8192);
+    }
+
+    /**
+     * 압축된(네트워크) 바이트 수를 셉니다.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * 압축 해제 스트림. 풀린 바이트 수를 세다가 상한을 넘으면 즉시 중단합니다.
+     */
+    private final class InflatingServletInputStream extends ServletInputStream {
+        private final InputStream decoder;
+        private final long limit;
+        private long count;
+        private long inflateNanos;
+        private boolean finished;
+
+        InflatingServletInputStream(InputStream decoder, long limit) {
+            this.decoder = decoder;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = decoder.read(b, off, len);
+            inflateNanos += System.nanoTime() - start;
+            if (n < 0) {
+                finished = true;
+                return n;
+            }
+            count += n;
+            if (count > limit) {
+                tooLargeCounter.increment();
+                throw new InflatedBodyTooLargeException(limit);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("async read is not supported for compressed ingest bodies");
+        }
+
+        @Override
+        public void close() throws IOException {
+            decoder.close();
+        }
+    }
+}
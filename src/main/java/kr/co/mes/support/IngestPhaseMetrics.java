@@ -0,0 +1,100 @@
+package kr.co.mes.support;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 초보자용 상세 주석:
+ * - 단건 수집(POST /api/ingest/raw) 한 건이 어느 단계에서 시간을 쓰는지 단계별 타이머로 기록합니다.
+ * - 지표 이름: mes.ingest.phase.latency (태그: phase, tenant, event_type)
+ *   /actuator/metrics/mes.ingest.phase.latency?tag=phase:encrypt 처럼 조회하고,
+ *   p50/p95/p99는 mes.ingest.phase.latency.percentile(태그 phi)로 확인합니다(docs/perf-thresholds의 p95/p99와 비교).
+ * - event_type은 클라이언트가 정하는 값이라 종류가 무한히 늘 수 있으므로,
+ *   테넌트별로 max-event-types개까지만 그대로 쓰고 나머지는 "OTHER"로 묶습니다.
+ */
+@Component
+public class IngestPhaseMetrics {
+
+    /**
+     * 수집 단계.
+     */
+    public enum Phase {
+        /** 요청 본문 파싱 (raw-payload 모드를 끄면 payload 재직렬화 포함) */
+        PARSE,
+        /** payload SHA-256 계산 */
+        HASH,
+        /** 암호화 전 압축 */
+        COMPRESS,
+        /** AES-GCM 암호화 */
+        ENCRYPT,
+        /** 라우팅 DataSource에서 커넥션 획득 (동시 입장 제한 대기 포함) */
+        CONNECTION_ACQUIRE,
+        /** INSERT 실행과 생성 키 읽기 */
+        INSERT,
+        /** 집계 증가분 누적 (새 행일 때만, DB 반영은 RawLogRollupAccumulator가 주기마다 따로) */
+        ROLLUP;
+
+        private final String tag = name().toLowerCase();
+    }
+
+    private static final String OTHER_EVENT_TYPE = "OTHER";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxEventTypes;
+    private final Map<String, Set<String>> eventTypes = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public IngestPhaseMetrics(MeterRegistry meterRegistry,
+                              @Value("${mes.ingest.metrics.max-event-types:50}") int maxEventTypes) {
+        this.meterRegistry = meterRegistry;
+        this.maxEventTypes = Math.max(maxEventTypes, 0);
+    }
+
+    /**
+     * startNanos(System.nanoTime())부터 지금까지를 해당 단계 시간으로 기록하고, 지금 시각을 반환합니다.
+     * - 반환값을 다음 단계의 시작 시각으로 그대로 넘길 수 있습니다.
+     */
+    public long record(Phase phase, String tenantId, String eventType, long startNanos) {
+        long now = System.nanoTime();
+        timer(phase, tenantId, eventType).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    private Timer timer(Phase phase, String tenantId, String eventType) {
+        String tenant = tenantId == null ? "unknown" : tenantId;
+        String type = boundedEventType(tenant, eventType == null ? "UNKNOWN" : eventType);
+        return timers.computeIfAbsent(phase.tag + '|' + tenant + '|' + type, k -> Timer.builder("mes.ingest.phase.latency")
+                .description("단건 수집의 단계별 처리 시간")
+                .tag("phase", phase.tag)
+                .tag("tenant", tenant)
+                .tag("event_type", type)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(meterRegistry));
+    }
+
+    private String boundedEventType(String tenant, String eventType) {
+        Set<String> known = eventTypes.computeIfAbsent(tenant, t -> ConcurrentHashMap.newKeySet());
+        if (known.contains(eventType)) {
+            return eventType;
+        }
+        synchronized (known) {
+            if (known.size() < maxEventTypes) {
+                known.add(eventType);
+                return eventType;
+            }
+        }
+        return OTHER_EVENT_TYPE;
+    }
+}
@@ -0,0 +1,64 @@
+package kr.co.mes.support;
+
+import java.io.IOException;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * 초보자용 상세 주석:
+ * - TenantFilter 바로 뒤에서 수집 API(/api/ingest/**) 요청에 테넌트별 속도 제한을 적용합니다.
+ * - 한도를 넘으면 본문을 읽기 전에 429 Too Many Requests + Retry-After로 즉시 응답하므로,
+ *   시끄러운 테넌트가 요청 스레드와 DB를 다른 테넌트 몫까지 쓰지 못하게 됩니다.
+ * - source별 제한은 본문을 파싱해야 알 수 있으므로 RawIngestController에서 적용합니다.
+ */
+@Component
+@Profile("local")
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class IngestRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestRateLimitFilter.class);
+    private static final String INGEST_PATH_PREFIX = "/api/ingest/";
+
+    private final IngestRateLimiter rateLimiter;
+
+    public IngestRateLimitFilter(IngestRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !rateLimiter.isEnabled() || !path.startsWith(INGEST_PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        // TenantFilter가 이미 테넌트를 확정해 두었으므로 그대로 사용합니다.
+        String tenantId = TenantContext.getTenantIdOrDefault();
+        long waitNanos = rateLimiter.tryAcquireTenant(tenantId);
+        if (waitNanos > 0) {
+            response.setStatus(429);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(IngestRateLimiter.retryAfterSeconds(waitNanos)));
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().write("{\"ok\":false,\"error\":\"rate limited\",\"scope\":\"tenant\",\"tenant\":\""
+                    + tenantId + "\"}");
+            log.debug("수집 요청 속도 제한 - tenant={}, waitMs={}", tenantId, waitNanos / 1_000_000);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
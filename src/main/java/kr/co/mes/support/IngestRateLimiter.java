@@ -0,0 +1,207 @@
+package kr.co.mes.support;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 수집 API의 테넌트별/소스별 토큰 버킷 속도 제한기입니다. (mes.ingest.rate-limit.enabled=true 일 때만 동작)
+ * - 테넌트 버킷: 요청 수 기준. IngestRateLimitFilter가 요청마다 1개씩 소비합니다.
+ * - 소스 버킷: 이벤트 수 기준. 컨트롤러가 본문을 파싱한 뒤 (테넌트, source)마다 이벤트 건수만큼 소비합니다.
+ * - 버킷은 "다음 토큰이 생기는 시각" 하나(AtomicLong)로 표현하고 CAS로만 갱신하므로 락이 없습니다.
+ *   (GCRA 방식: 상태가 숫자 하나라서 경합이 있어도 재시도 한 번이면 끝납니다.)
+ * - 반환값은 "기다려야 하는 시간(ns)"이며, 0이면 통과입니다. 거절된 요청은 토큰을 소비하지 않습니다.
+ */
+@Component
+@Profile("local")
+public class IngestRateLimiter {
+
+    private static final String OVERFLOW_SOURCE = "*";
+
+    private final boolean enabled;
+    private final Limit sourceLimit;
+    private final int maxSources;
+    private final LongSupplier nanoClock;
+    private final Map<String, TokenBucket> tenantBuckets = new HashMap<>();
+    private final Map<String, ConcurrentHashMap<String, TokenBucket>> sourceBuckets = new HashMap<>();
+    private final Map<String, Counter> tenantThrottled = new HashMap<>();
+    private final Map<String, Counter> sourceThrottled = new HashMap<>();
+
+    /**
+     * 초당 허용량과 버스트(한 번에 몰아서 쓸 수 있는 최대 토큰 수). perSecond가 0 이하이면 제한 없음.
+     */
+    public record Limit(double perSecond, int burst) {}
+
+    /**
+     * 테넌트별 값은 mes.ingest.rate-limit.tenants.<테넌트>.requests-per-second / burst 로 덮어쓸 수 있습니다.
+     */
+    @Autowired
+    public IngestRateLimiter(MeterRegistry meterRegistry, Environment env,
+                             @Value("${mes.ingest.rate-limit.enabled:false}") boolean enabled,
+                             @Value("${mes.ingest.rate-limit.tenant.requests-per-second:200}") double tenantRps,
+                             @Value("${mes.ingest.rate-limit.tenant.burst:400}") int tenantBurst,
+                             @Value("${mes.ingest.rate-limit.source.events-per-second:2000}") double sourceEps,
+                             @Value("${mes.ingest.rate-limit.source.burst:4000}") int sourceBurst,
+                             @Value("${mes.ingest.rate-limit.source.max-sources:10000}") int maxSources) {
+        this(meterRegistry, enabled, tenantLimits(env, new Limit(tenantRps, tenantBurst)),
+                new Limit(sourceEps, sourceBurst), maxSources, System::nanoTime);
+    }
+
+    /**
+     * 테스트에서 시계와 한도를 직접 넣을 수 있도록 열어 둔 생성자.
+     */
+    IngestRateLimiter(MeterRegistry meterRegistry, boolean enabled, Map<String, Limit> tenantLimits,
+                      Limit sourceLimit, int maxSources, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.sourceLimit = sourceLimit;
+        this.maxSources = Math.max(maxSources, 1);
+        this.nanoClock = nanoClock;
+
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            Limit limit = tenantLimits.get(tenant);
+            if (limit != null && limit.perSecond() > 0) {
+                tenantBuckets.put(tenant, new TokenBucket(limit, nanoClock.getAsLong()));
+            }
+            sourceBuckets.put(tenant, new ConcurrentHashMap<>());
+            tenantThrottled.put(tenant, Counter.builder("mes.ingest.rate_limit.throttled")
+                    .description("속도 제한으로 거절된 수집 요청/이벤트 수")
+                    .tag("tenant", tenant)
+                    .tag("scope", "tenant")
+                    .register(meterRegistry));
+            sourceThrottled.put(tenant, Counter.builder("mes.ingest.rate_limit.throttled")
+                    .description("속도 제한으로 거절된 수집 요청/이벤트 수")
+                    .tag("tenant", tenant)
+                    .tag("scope", "source")
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 속도 제한 사용 여부.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 테넌트 요청 버킷에서 토큰 1개를 소비합니다.
+     *
+     * @return 0이면 통과, 아니면 다시 시도할 때까지 기다려야 하는 시간(ns)
+     */
+    public long tryAcquireTenant(String tenantId) {
+        TokenBucket bucket = enabled ? tenantBuckets.get(tenantId) : null;
+        if (bucket == null) {
+            return 0;
+        }
+        long waitNanos = bucket.tryAcquire(1, nanoClock.getAsLong());
+        if (waitNanos > 0) {
+            tenantThrottled.get(tenantId).increment();
+        }
+        return waitNanos;
+    }
+
+    /**
+     * (테넌트, source) 이벤트 버킷에서 events개를 소비합니다.
+     *
+     * @return 0이면 통과, 아니면 다시 시도할 때까지 기다려야 하는 시간(ns)
+     */
+    public long tryAcquireSource(String tenantId, String source, int events) {
+        ConcurrentHashMap<String, TokenBucket> buckets = enabled ? sourceBuckets.get(tenantId) : null;
+        if (buckets == null || sourceLimit.perSecond() <= 0 || events <= 0) {
+            return 0;
+        }
+        long now = nanoClock.getAsLong();
+        long waitNanos = sourceBucket(buckets, source, now).tryAcquire(events, now);
+        if (waitNanos > 0) {
+            sourceThrottled.get(tenantId).increment(events);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * 대기 시간(ns)을 Retry-After 헤더 값(초, 최소 1)으로 바꿉니다.
+     */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * source 버킷을 찾거나 만듭니다.
+     * - 소스 수가 max-sources에 닿으면 가득 찬(쉬고 있는) 버킷을 먼저 정리하고,
+     *   그래도 자리가 없으면 테넌트 공용 overflow 버킷을 함께 사용합니다(메모리 상한 보장).
+     */
+    private TokenBucket sourceBucket(ConcurrentHashMap<String, TokenBucket> buckets, String source, long now) {
+        TokenBucket bucket = buckets.get(source);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxSources) {
+            buckets.values().removeIf(b -> b.isIdle(now));
+            if (buckets.size() >= maxSources) {
+                return buckets.computeIfAbsent(OVERFLOW_SOURCE, k -> new TokenBucket(sourceLimit, now));
+            }
+        }
+        return buckets.computeIfAbsent(source, k -> new TokenBucket(sourceLimit, now));
+    }
+
+    private static Map<String, Limit> tenantLimits(Environment env, Limit defaults) {
+        Map<String, Limit> limits = new HashMap<>();
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            String prefix = "mes.ingest.rate-limit.tenants." + tenant + ".";
+            double rps = env.getProperty(prefix + "requests-per-second", Double.class, defaults.perSecond());
+            int burst = env.getProperty(prefix + "burst", Integer.class, defaults.burst());
+            limits.put(tenant, new Limit(rps, burst));
+        }
+        return limits;
+    }
+
+    /**
+     * 락 없는 토큰 버킷(GCRA).
+     * - tat(theoretical arrival time): 버킷이 다시 가득 차는 시각. 토큰 n개 소비 = tat를 n * interval 만큼 뒤로 미는 것.
+     * - tat - now 가 버스트 허용 폭을 넘으면 거절합니다.
+     * - 버스트보다 큰 요청(대형 배치)은 버킷이 가득 찼을 때만 통과시키고, 초과분은 빚으로 남겨 이후 요청이 기다리게 합니다.
+     */
+    static final class TokenBucket {
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final AtomicLong tat;
+
+        TokenBucket(Limit limit, long now) {
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limit.perSecond()));
+            this.burstNanos = intervalNanos * Math.max(limit.burst(), 1);
+            this.tat = new AtomicLong(now);
+        }
+
+        long tryAcquire(int permits, long now) {
+            long cost = intervalNanos * permits;
+            while (true) {
+                long current = tat.get();
+                long base = Math.max(current, now);
+                long waitNanos = base + Math.min(cost, burstNanos) - now - burstNanos;
+                if (waitNanos > 0) {
+                    return waitNanos;
+                }
+                if (tat.compareAndSet(current, base + cost)) {
+                    return 0;
+                }
+            }
+        }
+
+        boolean isIdle(long now) {
+            return tat.get() <= now;
+        }
+    }
+}
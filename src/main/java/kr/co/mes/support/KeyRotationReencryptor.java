@@ -0,0 +1,372 @@
+package kr.co.mes.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import kr.co.mes.crypto.AesGcmCrypto;
+import kr.co.mes.crypto.CryptoKeyRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 키 교체 후, 활성 키가 아닌 키(payload_key_id)로 암호화된 행을 백그라운드에서 새 활성 키로 다시 암호화합니다.
+ *   테이블 전체를 잠그는 일괄 UPDATE 대신, PK(id) 순서로 chunk-size개 id 구간씩 나눠 처리합니다.
+ * - 압축된 페이로드는 압축을 풀지 않고 "복호화 → 같은 바이트를 새 키로 암호화"만 하므로 codec/사전은 그대로입니다.
+ *   목록용 프리뷰 암호문(payload_preview_enc)도 같은 키로 묶여 있으므로 함께 다시 암호화합니다.
+ *   새 암호문은 저장 형식 설정(binary-columns)에 맞춰 쓰고, UPDATE는 "아직 이전 키인 행"만 바꿔 두 번 처리해도 안전합니다.
+ * - 부하 제한(테넌트별):
+ *   1) rows-per-second: 초당 다시 암호화하는 행 수 상한
+ *   2) max-db-utilization: 이 작업이 DB 작업에 쓰는 시간 비율 상한(예 0.2면 20ms 일하고 80ms 쉼)
+ * - 진행 상황은 테넌트 DB의 raw_key_rotation_checkpoint(활성 키별 한 행)에 구간마다 저장하므로 재기동 후 이어서 진행합니다.
+ *   시작 시점의 MAX(id)까지가 대상이며(이후 행은 이미 활성 키로 저장됨), 끝난 뒤에도 스풀 재생 등으로
+ *   늦게 들어온 이전 키 행을 따라잡도록 마지막 id 이후를 가볍게 계속 확인합니다.
+ * - 다시 암호화한 행은 상세 조회 캐시에서 지우고, 활성 키가 바뀌면 캐시를 모두 비웁니다.
+ * - 진행률/ETA는 status()로 조회합니다(GET /api/admin/key-rotation).
+ * - 체크포인트 테이블은 RawLogTableInitializer가 만들므로, 테이블 준비가 끝나기 전 주기는 건너뜁니다.
+ */
+@Component
+@Profile("local")
+public class KeyRotationReencryptor {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyRotationReencryptor.class);
+
+    private final Map<String, JdbcTemplate> jdbcTemplates = new LinkedHashMap<>();
+    private final Map<String, TenantProgress> progress = new ConcurrentHashMap<>();
+    private final Map<String, Counter> reencryptedCounters = new HashMap<>();
+    private final Map<String, Counter> failedCounters = new HashMap<>();
+    private final AesGcmCrypto crypto;
+    private final CryptoKeyRegistry keyRegistry;
+    private final RawLogDetailCache detailCache;
+    private final RawLogTableInitializer tableInitializer;
+    /**
+     * 한 번에 하나만 실행하기 위한 잠금. synchronized는 가상 스레드에서 DB 대기 동안 캐리어 스레드를 붙잡으므로 ReentrantLock을 씁니다.
+     */
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final boolean enabled;
+    private final boolean binaryColumns;
+    private final int chunkSize;
+    private final int rowsPerSecond;
+    private final double maxDbUtilization;
+
+    public KeyRotationReencryptor(
+            @Qualifier("tenantAJdbcTemplate") JdbcTemplate tenantAJdbcTemplate,
+            @Qualifier("tenantBJdbcTemplate") JdbcTemplate tenantBJdbcTemplate,
+            AesGcmCrypto crypto,
+            CryptoKeyRegistry keyRegistry,
+            RawLogDetailCache detailCache,
+            RawLogTableInitializer tableInitializer,
+            MeterRegistry meterRegistry,
+            @Value("${mes.payload.key-rotation.enabled:true}") boolean enabled,
+            @Value("${mes.payload.storage.binary-columns:true}") boolean binaryColumns,
+            @Value("${mes.payload.key-rotation.chunk-size:1000}") int chunkSize,
+            @Value("${mes.payload.key-rotation.rows-per-second:500}") int rowsPerSecond,
+            @Value("${mes.payload.key-rotation.max-db-utilization:0.2}") double maxDbUtilization) {
+        jdbcTemplates.put("tenant_a", tenantAJdbcTemplate);
+        jdbcTemplates.put("tenant_b", tenantBJdbcTemplate);
+        this.crypto = crypto;
+        this.keyRegistry = keyRegistry;
+        this.detailCache = detailCache;
+        this.tableInitializer = tableInitializer;
+        this.enabled = enabled;
+        this.binaryColumns = binaryColumns;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.rowsPerSecond = rowsPerSecond;
+        this.maxDbUtilization = Math.min(Math.max(maxDbUtilization, 0.01), 1.0);
+        for (String tenant : jdbcTemplates.keySet()) {
+            reencryptedCounters.put(tenant, Counter.builder("mes.crypto.rotation.rows")
+                    .description("키 교체로 새 활성 키로 다시 암호화한 행 수")
+                    .tag("tenant", tenant).tag("result", "reencrypted")
+                    .register(meterRegistry));
+            failedCounters.put(tenant, Counter.builder("mes.crypto.rotation.rows")
+                    .description("키 교체로 새 활성 키로 다시 암호화한 행 수")
+                    .tag("tenant", tenant).tag("result", "failed")
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * interval-ms마다 테넌트별로 (쉬는 시간이 지났으면) 한 구간씩 처리합니다.
+     * - 스케줄러 외에 직접 호출(테스트 등)해도 구간이 겹쳐 처리되지 않도록 한 번에 하나만 실행합니다.
+     *   이미 실행 중이면 기다리지 않고 이번 호출을 건너뜁니다.
+     */
+    @Scheduled(fixedDelayString = "${mes.payload.key-rotation.interval-ms:100}")
+    public void reencryptBatch() {
+        if (!enabled || !tableInitializer.isReady() || !runLock.tryLock()) {
+            return;
+        }
+        try {
+            String activeKeyId = keyRegistry.getActiveKeyId();
+            for (Map.Entry<String, JdbcTemplate> e : jdbcTemplates.entrySet()) {
+                String tenant = e.getKey();
+                try {
+                    TenantProgress p = progressFor(tenant, e.getValue(), activeKeyId);
+                    if (System.currentTimeMillis() >= p.nextRunAt) {
+                        reencryptChunk(tenant, e.getValue(), p);
+                    }
+                } catch (Exception ex) {
+                    log.warn("키 교체 재암호화 보류, 다음 주기에 재시도 - tenant={}, 원인={}", tenant, ex.getMessage());
+                }
+            }
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * 테넌트별 진행 상황(진행률, 처리 속도, 남은 예상 시간).
+     */
+    public List<Map<String, Object>> status() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (String tenant : jdbcTemplates.keySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("tenant", tenant);
+            TenantProgress p = progress.get(tenant);
+            if (p == null) {
+                row.put("state", "not_started");
+                result.add(row);
+                continue;
+            }
+            long done = Math.min(p.lastId, p.targetMaxId);
+            double elapsedSeconds = Math.max(now - p.sessionStartedAt, 1) / 1000.0;
+            double idsPerSecond = (p.lastId - p.sessionStartId) / elapsedSeconds;
+            row.put("state", p.caughtUp ? "completed" : "running");
+            row.put("target_key_id", p.targetKeyId);
+            row.put("last_id", p.lastId);
+            row.put("target_max_id", p.targetMaxId);
+            row.put("rows_reencrypted", p.rowsReencrypted);
+            row.put("rows_failed", p.rowsFailed);
+            row.put("progress_percent", p.targetMaxId <= 0 ? 100.0
+                    : Math.round(done * 1000.0 / p.targetMaxId) / 10.0);
+            row.put("ids_per_second", Math.round(idsPerSecond));
+            row.put("eta_seconds", p.caughtUp ? Long.valueOf(0)
+                    : idsPerSecond > 0 ? Long.valueOf(Math.round((p.targetMaxId - done) / idsPerSecond)) : null);
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * 활성 키별 진행 상황을 가져옵니다. 활성 키가 바뀌었으면 체크포인트를 새로 읽거나 만듭니다.
+     */
+    private TenantProgress progressFor(String tenant, JdbcTemplate jdbcTemplate, String activeKeyId) {
+        TenantProgress p = progress.get(tenant);
+        if (p != null && p.targetKeyId.equals(activeKeyId)) {
+            return p;
+        }
+        if (p != null) {
+            // 실행 중 키가 바뀌었으면 이전 키 기준으로 캐시해 둔 평문을 지우고, 새 활성 키는 처음부터 훑습니다.
+            // (예전에 같은 키로 끝낸 체크포인트가 남아 있어도, 그 사이 다른 키로 바뀐 행이 있을 수 있기 때문)
+            detailCache.purgeAll();
+            jdbcTemplate.update("DELETE FROM raw_key_rotation_checkpoint WHERE target_key_id = ?", activeKeyId);
+        }
+        List<TenantProgress> saved = jdbcTemplate.query("""
+                SELECT last_id, target_max_id, rows_reencrypted, rows_failed, completed_at
+                FROM raw_key_rotation_checkpoint WHERE target_key_id = ?
+                """, (rs, rowNum) -> new TenantProgress(activeKeyId, rs.getLong("last_id"), rs.getLong("target_max_id"),
+                rs.getLong("rows_reencrypted"), rs.getLong("rows_failed"), rs.getTimestamp("completed_at") != null),
+                activeKeyId);
+        if (saved.isEmpty()) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM raw_ingest_log", Long.class);
+            p = new TenantProgress(activeKeyId, 0L, maxId == null ? 0L : maxId, 0L, 0L, false);
+            jdbcTemplate.update("""
+                    INSERT IGNORE INTO raw_key_rotation_checkpoint
+                      (target_key_id, last_id, target_max_id, rows_reencrypted, rows_failed, started_at, updated_at)
+                    VALUES (?, 0, ?, 0, 0, NOW(6), NOW(6))
+                    """, activeKeyId, p.targetMaxId);
+            log.info("키 교체 재암호화 시작 - tenant={}, activeKeyId={}, 대상 max_id={}", tenant, activeKeyId, p.targetMaxId);
+        } else {
+            p = saved.get(0);
+            log.info("키 교체 재암호화 이어서 진행 - tenant={}, activeKeyId={}, last_id={}", tenant, activeKeyId, p.lastId);
+        }
+        progress.put(tenant, p);
+        return p;
+    }
+
+    private void reencryptChunk(String tenant, JdbcTemplate jdbcTemplate, TenantProgress p) {
+        long started = System.nanoTime();
+
+        // 1) 이번 구간의 끝 id: 마지막 처리 id 이후 chunk-size번째 id (PK만 읽음)
+        List<Long> ends = jdbcTemplate.queryForList(
+                "SELECT id FROM raw_ingest_log WHERE id > ? ORDER BY id LIMIT 1 OFFSET ?", Long.class,
+                p.lastId, chunkSize - 1);
+        long upper;
+        if (!ends.isEmpty()) {
+            upper = ends.get(0);
+        } else {
+            Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM raw_ingest_log WHERE id > ?", Long.class, p.lastId);
+            if (max == null) {
+                markCaughtUp(tenant, jdbcTemplate, p);
+                throttle(p, started, 0);
+                return;
+            }
+            upper = max;
+        }
+
+        // 2) 구간 안에서 활성 키가 아닌 행만, 초당 상한을 넘지 않는 만큼 읽습니다.
+        int maxRows = rowsPerSecond > 0 ? Math.min(chunkSize, rowsPerSecond) : chunkSize;
+        List<Object[]> candidates = jdbcTemplate.query("""
+                SELECT id, payload_key_id, payload_enc_bin, payload_nonce_bin, payload_enc, payload_nonce,
+                       payload_preview_enc, payload_preview_nonce
+                FROM raw_ingest_log
+                WHERE id > ? AND id <= ? AND payload_key_id IS NOT NULL AND payload_key_id <> ?
+                ORDER BY id
+                LIMIT ?
+                """, (rs, rowNum) -> new Object[]{rs.getLong("id"), rs.getString("payload_key_id"),
+                        rs.getBytes("payload_enc_bin"), rs.getBytes("payload_nonce_bin"),
+                        rs.getString("payload_enc"), rs.getString("payload_nonce"),
+                        rs.getBytes("payload_preview_enc"), rs.getBytes("payload_preview_nonce")},
+                p.lastId, upper, p.targetKeyId, maxRows);
+        long cursor = candidates.size() == maxRows ? (Long) candidates.get(candidates.size() - 1)[0] : upper;
+
+        // 3) 이전 키로 복호화 → 활성 키로 암호화. 복호화할 수 없는 행은 건너뛰고 실패로 셉니다.
+        List<Object[]> updates = new ArrayList<>(candidates.size());
+        List<Long> ids = new ArrayList<>(candidates.size());
+        int failed = 0;
+        for (Object[] row : candidates) {
+            Object[] update = reencrypt(row, p.targetKeyId);
+            if (update == null) {
+                failed++;
+            } else {
+                updates.add(update);
+                ids.add((Long) row[0]);
+            }
+        }
+        int reencrypted = 0;
+        if (!updates.isEmpty()) {
+            int[] counts = jdbcTemplate.batchUpdate("""
+                    UPDATE raw_ingest_log
+                    SET payload_enc_bin = ?, payload_nonce_bin = ?, payload_enc = ?, payload_nonce = ?,
+                        payload_preview_enc = ?, payload_preview_nonce = ?, payload_key_id = ?
+                    WHERE id = ? AND payload_key_id = ?
+                    """, updates);
+            for (int c : counts) {
+                // 드라이버가 개수를 모르면 SUCCESS_NO_INFO(-2)를 주므로 성공으로 셉니다.
+                reencrypted += c == 0 ? 0 : 1;
+            }
+            detailCache.invalidate(tenant, ids);
+        }
+        reencryptedCounters.get(tenant).increment(reencrypted);
+        failedCounters.get(tenant).increment(failed);
+
+        // 4) 체크포인트 저장 후, 속도/부하 상한에 맞춰 다음 실행 시각을 정합니다.
+        p.lastId = cursor;
+        p.rowsReencrypted += reencrypted;
+        p.rowsFailed += failed;
+        jdbcTemplate.update("""
+                UPDATE raw_key_rotation_checkpoint
+                SET last_id = ?, rows_reencrypted = ?, rows_failed = ?, updated_at = NOW(6)
+                WHERE target_key_id = ?
+                """, p.lastId, p.rowsReencrypted, p.rowsFailed, p.targetKeyId);
+        throttle(p, started, reencrypted);
+    }
+
+    /**
+     * UPDATE 파라미터(암호문 바이트, nonce 바이트, 암호문 Base64, nonce Base64, 프리뷰 암호문, 프리뷰 nonce,
+     * 새 keyId, id, 이전 keyId). 복호화할 수 없으면 null.
+     * - 프리뷰가 없거나 복호화할 수 없으면 비워 두고, 목록 조회 때 본문으로 다시 만들게 합니다.
+     */
+    private Object[] reencrypt(Object[] row, String activeKeyId) {
+        long id = (Long) row[0];
+        String oldKeyId = (String) row[1];
+        try {
+            byte[] plain;
+            if (row[2] != null && row[3] != null) {
+                plain = crypto.decryptBytes((byte[]) row[2], (byte[]) row[3], oldKeyId);
+            } else if (row[4] != null && row[5] != null) {
+                plain = crypto.decryptBytes((String) row[4], (String) row[5], oldKeyId);
+            } else {
+                return null;
+            }
+            CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt(plain, activeKeyId);
+            CryptoKeyRegistry.EncryptedPayload preview = reencryptPreview(row, oldKeyId, activeKeyId);
+            byte[] previewEnc = preview != null ? preview.cipherText() : null;
+            byte[] previewNonce = preview != null ? preview.nonce() : null;
+            if (binaryColumns) {
+                return new Object[]{enc.cipherText(), enc.nonce(), null, null, previewEnc, previewNonce,
+                        activeKeyId, id, oldKeyId};
+            }
+            return new Object[]{null, null, enc.cipherTextBase64(), enc.nonceBase64(), previewEnc, previewNonce,
+                    activeKeyId, id, oldKeyId};
+        } catch (Exception e) {
+            log.warn("키 교체 재암호화 실패로 건너뜀 - id={}, keyId={}, 원인={}", id, oldKeyId, e.getMessage());
+            return null;
+        }
+    }
+
+    private CryptoKeyRegistry.EncryptedPayload reencryptPreview(Object[] row, String oldKeyId, String activeKeyId) {
+        if (row[6] == null || row[7] == null) {
+            return null;
+        }
+        try {
+            return crypto.encrypt(crypto.decryptBytes((byte[]) row[6], (byte[]) row[7], oldKeyId), activeKeyId);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void markCaughtUp(String tenant, JdbcTemplate jdbcTemplate, TenantProgress p) {
+        if (p.caughtUp) {
+            return;
+        }
+        p.caughtUp = true;
+        jdbcTemplate.update("""
+                UPDATE raw_key_rotation_checkpoint SET completed_at = NOW(6), updated_at = NOW(6)
+                WHERE target_key_id = ? AND completed_at IS NULL
+                """, p.targetKeyId);
+        log.info("키 교체 재암호화 완료 - tenant={}, activeKeyId={}, 재암호화={}건, 실패={}건",
+                tenant, p.targetKeyId, p.rowsReencrypted, p.rowsFailed);
+    }
+
+    /**
+     * 다음 실행 시각 = 지금 + max(초당 행 수 상한에 맞춘 대기, DB 사용 비율 상한에 맞춘 대기).
+     */
+    private void throttle(TenantProgress p, long startedNanos, int rows) {
+        long elapsedMillis = (System.nanoTime() - startedNanos) / 1_000_000;
+        long rateWait = rowsPerSecond > 0 ? rows * 1000L / rowsPerSecond - elapsedMillis : 0;
+        long loadWait = Math.round(elapsedMillis * (1 / maxDbUtilization - 1));
+        p.nextRunAt = System.currentTimeMillis() + Math.max(0, Math.max(rateWait, loadWait));
+    }
+
+    /**
+     * 테넌트 하나의 진행 상황(스케줄러 스레드만 고치고, status()는 읽기만 함).
+     */
+    private static final class TenantProgress {
+        private final String targetKeyId;
+        private final long targetMaxId;
+        private final long sessionStartId;
+        private final long sessionStartedAt = System.currentTimeMillis();
+        private volatile long lastId;
+        private volatile long rowsReencrypted;
+        private volatile long rowsFailed;
+        private volatile boolean caughtUp;
+        private volatile long nextRunAt;
+
+        private TenantProgress(String targetKeyId, long lastId, long targetMaxId, long rowsReencrypted, long rowsFailed,
+                               boolean caughtUp) {
+            this.targetKeyId = targetKeyId;
+            this.lastId = lastId;
+            this.sessionStartId = lastId;
+            this.targetMaxId = targetMaxId;
+            this.rowsReencrypted = rowsReencrypted;
+            this.rowsFailed = rowsFailed;
+            this.caughtUp = caughtUp;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package kr.co.mes.support;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import kr.co.mes.crypto.AesGcmCrypto;
+
+/**
+ * 초보자용 상세 주석:
+ * - 목록/Export 조회에서 여러 행의 암호문을 한꺼번에 복호화(+압축 해제)하는 단계입니다.
+ * - 행 매퍼 안에서 한 줄씩 복호화하면 요청 스레드 하나(코어 하나)만 쓰게 되므로,
+ *   먼저 행을 모두 읽은 뒤 이 클래스에 넘겨 전용 풀(크기 제한)에서 나눠 처리합니다.
+ * - 결과는 입력 순서 그대로이며, 행마다 성공(평문)/실패(오류 메시지)를 따로 돌려줍니다.
+ *   한 행이 실패해도 나머지 행은 정상 처리됩니다.
+ * - 행 수가 min-rows보다 적으면 작업을 나누는 비용이 더 크므로 호출 스레드에서 바로 처리합니다.
+ */
+@Component
+public class PayloadBulkDecryptor {
+
+    private final AesGcmCrypto crypto;
+    private final PayloadCompressor compressor;
+    private final ForkJoinPool pool;
+    private final int minRows;
+
+    public PayloadBulkDecryptor(AesGcmCrypto crypto, PayloadCompressor compressor,
+                                @Value("${mes.payload.bulk-decrypt.parallelism:0}") int parallelism,
+                                @Value("${mes.payload.bulk-decrypt.min-rows:64}") int minRows) {
+        this.crypto = crypto;
+        this.compressor = compressor;
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads);
+        this.minRows = Math.max(minRows, 1);
+    }
+
+    /**
+     * 한 행의 암호문 관련 컬럼.
+     * - 저장 형식 v2는 cipherBin/nonceBin(원본 바이트), v1은 cipherB64/nonceB64(Base64 텍스트)가 채워집니다.
+     */
+    public record CipherColumns(String keyId, byte[] cipherBin, byte[] nonceBin, String cipherB64, String nonceB64,
+                                String codec, Long dictId) {
+
+        /**
+         * 현재 행에서 암호문 관련 컬럼을 읽습니다(SELECT에 해당 컬럼이 모두 있어야 함).
+         */
+        public static CipherColumns from(ResultSet rs) throws SQLException {
+            return new CipherColumns(rs.getString("payload_key_id"), rs.getBytes("payload_enc_bin"),
+                    rs.getBytes("payload_nonce_bin"), rs.getString("payload_enc"), rs.getString("payload_nonce"),
+                    rs.getString("payload_codec"), rs.getObject("payload_dict_id", Long.class));
+        }
+    }
+
+    /**
+     * 한 행의 복호화 결과. plain이 null이고 error도 null이면 암호문이 없는 행입니다.
+     */
+    public record Decrypted(String plain, String error) {
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    /**
+     * 암호문을 복호화하고, 압축해서 저장한 행이면 압축을 풀어 UTF-8 문자열로 반환합니다.
+     * - 저장 형식 v2(BLOB 컬럼)를 먼저 읽고, 없으면 v1(Base64 텍스트 컬럼)을 읽습니다(마이그레이션 중 혼재 가능).
+     * - payload_codec이 없는 기존 행은 복호화 결과가 곧 평문입니다.
+     * - 암호문이 없는 행이면 null을 반환합니다.
+     * - 사전이 메모리에 없으면 라우팅된 DB에서 읽으므로, 호출 스레드의 TenantContext가 tenantId와 같아야 합니다.
+     */
+    public String decrypt(String tenantId, CipherColumns columns) {
+        if (columns.keyId() == null) {
+            return null;
+        }
+        byte[] plain;
+        if (columns.cipherBin() != null && columns.nonceBin() != null) {
+            plain = crypto.decryptBytes(columns.cipherBin(), columns.nonceBin(), columns.keyId());
+        } else {
+            if (columns.cipherB64() == null || columns.nonceB64() == null) {
+                return null;
+            }
+            plain = crypto.decryptBytes(columns.cipherB64(), columns.nonceB64(), columns.keyId());
+        }
+        plain = compressor.decompress(tenantId, plain, columns.codec(), columns.dictId());
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 여러 행을 병렬로 복호화합니다. 결과 목록의 i번째는 입력 목록의 i번째 행의 결과입니다.
+     * - 풀의 작업 스레드에는 요청의 TenantContext가 없으므로, 조각마다 tenantId를 설정했다가 지웁니다.
+     */
+    public List<Decrypted> decryptAll(String tenantId, List<CipherColumns> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        Decrypted[] results = new Decrypted[rows.size()];
+        if (rows.size() < minRows || pool.getParallelism() == 1) {
+            decryptRange(tenantId, rows, results, 0, rows.size());
+            return Arrays.asList(results);
+        }
+
+        // 풀 크기의 몇 배로 나눠, 오래 걸리는 행이 한 조각에 몰려도 다른 스레드가 남은 조각을 가져가게 합니다.
+        int chunks = Math.min(rows.size(), pool.getParallelism() * 4);
+        int chunkSize = (rows.size() + chunks - 1) / chunks;
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int start = 0; start < rows.size(); start += chunkSize) {
+            int from = start;
+            int to = Math.min(start + chunkSize, rows.size());
+            tasks.add(() -> {
+                TenantContext.setTenant(tenantId, "bulk-decrypt");
+                try {
+                    decryptRange(tenantId, rows, results, from, to);
+                } finally {
+                    TenantContext.clear();
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("일괄 복호화가 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("일괄 복호화 실패: " + e.getCause().getMessage(), e.getCause());
+        }
+        return Arrays.asList(results);
+    }
+
+    private void decryptRange(String tenantId, List<CipherColumns> rows, Decrypted[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            try {
+                results[i] = new Decrypted(decrypt(tenantId, rows.get(i)), null);
+            } catch (Exception e) {
+                results[i] = new Decrypted(null, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,273 @@
+package kr.co.mes.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 페이로드를 암호화하기 "전에" zstd로 압축합니다(암호문은 무작위 바이트라 압축되지 않으므로 순서가 중요).
+ * - MES 페이로드는 event_type마다 키 이름/구조가 거의 같아서, event_type별로 학습한 사전(dictionary)을 쓰면
+ *   수백 바이트짜리 작은 JSON도 크게 줄어듭니다.
+ * - 사전이 아직 없으면 사전 없이 압축하면서 샘플을 모으고, 학습/저장은 PayloadDictionaryTrainer가 백그라운드에서 합니다.
+ * - 사전은 테넌트 DB의 raw_payload_dict 테이블에 저장되고, 각 행에는 payload_codec/payload_dict_id가 기록됩니다.
+ *   복호화할 때는 dict id로 사전을 찾고, 메모리에 없으면 현재 테넌트 DB에서 한 번 읽어 캐시합니다.
+ * - min-bytes보다 작거나 압축해도 줄지 않는 페이로드는 압축하지 않습니다(codec=null, 기존 형식과 같음).
+ */
+@Component
+public class PayloadCompressor {
+
+    /**
+     * payload_codec 컬럼 값: zstd 프레임 (payload_dict_id가 있으면 그 사전으로 압축됨).
+     */
+    public static final String CODEC_ZSTD = "zstd";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int level;
+    private final int minBytes;
+    private final int minSamples;
+    private final long maxSampleBytes;
+    private final int maxEventTypes;
+    private final long retrainMillis;
+    private final long maxDecompressedBytes;
+    private final LongSupplier clock;
+    private final Map<String, ConcurrentHashMap<String, ActiveDictionary>> activeDictionaries = new HashMap<>();
+    private final Map<String, ConcurrentHashMap<String, SampleBuffer>> sampleBuffers = new HashMap<>();
+    private final Map<String, ConcurrentHashMap<Long, ZstdDictDecompress>> decompressDictionaries = new HashMap<>();
+    private final Map<String, DistributionSummary> ratios = new HashMap<>();
+
+    @Autowired
+    public PayloadCompressor(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                             @Value("${mes.payload.compression.enabled:true}") boolean enabled,
+                             @Value("${mes.payload.compression.level:3}") int level,
+                             @Value("${mes.payload.compression.min-bytes:64}") int minBytes,
+                             @Value("${mes.payload.compression.dictionary.min-samples:500}") int minSamples,
+                             @Value("${mes.payload.compression.dictionary.max-sample-bytes:1048576}") long maxSampleBytes,
+                             @Value("${mes.payload.compression.dictionary.max-event-types:200}") int maxEventTypes,
+                             @Value("${mes.payload.compression.dictionary.retrain-hours:24}") long retrainHours,
+                             @Value("${mes.payload.compression.max-decompressed-bytes:67108864}") long maxDecompressedBytes) {
+        this(jdbcTemplate, meterRegistry, enabled, level, minBytes, minSamples, maxSampleBytes, maxEventTypes,
+                TimeUnit.HOURS.toMillis(retrainHours), maxDecompressedBytes, System::currentTimeMillis);
+    }
+
+    /**
+     * 테스트에서 시계를 바꿔 끼울 수 있도록 열어 둔 생성자.
+     */
+    PayloadCompressor(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry, boolean enabled, int level, int minBytes,
+                      int minSamples, long maxSampleBytes, int maxEventTypes, long retrainMillis,
+                      long maxDecompressedBytes, LongSupplier clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.level = level;
+        this.minBytes = Math.max(minBytes, 1);
+        this.minSamples = Math.max(minSamples, 1);
+        this.maxSampleBytes = Math.max(maxSampleBytes, 1);
+        this.maxEventTypes = Math.max(maxEventTypes, 1);
+        this.retrainMillis = retrainMillis;
+        this.maxDecompressedBytes = maxDecompressedBytes;
+        this.clock = clock;
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            ConcurrentHashMap<String, ActiveDictionary> active = new ConcurrentHashMap<>();
+            activeDictionaries.put(tenant, active);
+            sampleBuffers.put(tenant, new ConcurrentHashMap<>());
+            decompressDictionaries.put(tenant, new ConcurrentHashMap<>());
+            Gauge.builder("mes.payload.compress.dictionaries", active, Map::size)
+                    .description("사용 중인 event_type별 압축 사전 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+            ratios.put(tenant, DistributionSummary.builder("mes.payload.compress.ratio")
+                    .description("압축 후 크기 / 원본 크기 (1이면 압축하지 않음)")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 압축 결과: 암호화할 바이트와, 행에 기록할 codec/dict id (압축하지 않았으면 원본 그대로 + null).
+     */
+    public record Compressed(byte[] data, String codec, Long dictId) {}
+
+    /**
+     * 사전 학습에 쓸 샘플 묶음.
+     */
+    public record TrainingSet(String tenantId, String eventType, List<byte[]> samples) {}
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 페이로드를 압축합니다. event_type의 사전이 있으면 사전으로, 없으면 사전 없이 압축하며 학습 샘플을 모읍니다.
+     */
+    public Compressed compress(String tenantId, String eventType, byte[] payload) {
+        ConcurrentHashMap<String, ActiveDictionary> active = activeDictionaries.get(tenantId);
+        if (!enabled || payload == null || active == null || payload.length < minBytes) {
+            return new Compressed(payload, null, null);
+        }
+        String type = eventType == null ? "UNKNOWN" : eventType;
+        ActiveDictionary dictionary = active.get(type);
+        if (dictionary == null || clock.getAsLong() - dictionary.installedAt() >= retrainMillis) {
+            sample(tenantId, type, payload);
+        }
+
+        byte[] compressed = dictionary == null ? Zstd.compress(payload, level) : Zstd.compress(payload, dictionary.compress());
+        if (compressed.length >= payload.length) {
+            ratios.get(tenantId).record(1.0);
+            return new Compressed(payload, null, null);
+        }
+        ratios.get(tenantId).record((double) compressed.length / payload.length);
+        return new Compressed(compressed, CODEC_ZSTD, dictionary == null ? null : dictionary.id());
+    }
+
+    /**
+     * 복호화한 바이트의 압축을 풉니다. codec이 없으면 그대로 반환합니다.
+     * - 사전이 메모리에 없으면 현재 테넌트(라우팅된 DB)의 raw_payload_dict에서 읽으므로,
+     *   tenantId는 TenantContext에 설정된 테넌트와 같아야 합니다.
+     */
+    public byte[] decompress(String tenantId, byte[] data, String codec, Long dictId) {
+        if (codec == null) {
+            return data;
+        }
+        if (!CODEC_ZSTD.equals(codec)) {
+            throw new IllegalStateException("지원하지 않는 payload_codec: " + codec);
+        }
+        long size = Zstd.getFrameContentSize(data);
+        if (size < 0 || size > maxDecompressedBytes) {
+            throw new IllegalStateException("zstd 프레임 원본 크기를 확인할 수 없거나 상한 초과: " + size);
+        }
+        if (dictId == null) {
+            return Zstd.decompress(data, (int) size);
+        }
+        return Zstd.decompress(data, decompressDictionary(tenantId, dictId), (int) size);
+    }
+
+    /**
+     * 학습할 만큼 샘플이 모인 event_type을 꺼냅니다(꺼낸 샘플 버퍼는 비워짐).
+     */
+    public List<TrainingSet> drainTrainingSets() {
+        List<TrainingSet> ready = new ArrayList<>();
+        sampleBuffers.forEach((tenant, buffers) -> buffers.forEach((type, buffer) -> {
+            List<byte[]> samples = buffer.drainIfReady(minSamples);
+            if (samples != null) {
+                buffers.remove(type, buffer);
+                ready.add(new TrainingSet(tenant, type, samples));
+            }
+        }));
+        return ready;
+    }
+
+    /**
+     * 샘플로 사전을 학습합니다. 샘플이 부족하거나 너무 비슷하지 않아 학습이 안 되면 null을 반환합니다.
+     */
+    public static byte[] train(List<byte[]> samples, int dictionaryBytes) {
+        long total = 0;
+        for (byte[] sample : samples) {
+            total += sample.length;
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(total, Integer.MAX_VALUE), dictionaryBytes);
+        for (byte[] sample : samples) {
+            trainer.addSample(sample);
+        }
+        try {
+            return trainer.trainSamples();
+        } catch (ZstdException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 저장된 사전을 event_type의 현재 사전으로 등록합니다(이후 압축부터 사용).
+     * - 이전 사전은 복호화용 캐시에 남아 있으므로 기존 행도 그대로 읽힙니다.
+     */
+    public void install(String tenantId, String eventType, long dictId, byte[] dictionary, long createdAtMillis) {
+        ConcurrentHashMap<String, ActiveDictionary> active = activeDictionaries.get(tenantId);
+        if (active == null) {
+            return;
+        }
+        decompressDictionaries.get(tenantId).computeIfAbsent(dictId, id -> new ZstdDictDecompress(dictionary));
+        active.merge(eventType, new ActiveDictionary(dictId, new ZstdDictCompress(dictionary, level), createdAtMillis),
+                (current, candidate) -> candidate.id() > current.id() ? candidate : current);
+    }
+
+    private ZstdDictDecompress decompressDictionary(String tenantId, long dictId) {
+        ConcurrentHashMap<Long, ZstdDictDecompress> cache = decompressDictionaries.get(tenantId);
+        if (cache == null) {
+            throw new IllegalStateException("허용되지 않은 테넌트: " + tenantId);
+        }
+        return cache.computeIfAbsent(dictId, id -> {
+            List<byte[]> rows = jdbcTemplate.query("SELECT dict_bytes FROM raw_payload_dict WHERE id = ?",
+                    (rs, rowNum) -> rs.getBytes(1), id);
+            if (rows.isEmpty()) {
+                throw new IllegalStateException("압축 사전을 찾을 수 없습니다: dict_id=" + id);
+            }
+            return new ZstdDictDecompress(rows.get(0));
+        });
+    }
+
+    private void sample(String tenantId, String eventType, byte[] payload) {
+        ConcurrentHashMap<String, SampleBuffer> buffers = sampleBuffers.get(tenantId);
+        SampleBuffer buffer = buffers.get(eventType);
+        if (buffer == null) {
+            if (buffers.size() >= maxEventTypes) {
+                return;
+            }
+            buffer = buffers.computeIfAbsent(eventType, t -> new SampleBuffer(maxSampleBytes));
+        }
+        buffer.add(payload);
+    }
+
+    private record ActiveDictionary(long id, ZstdDictCompress compress, long installedAt) {}
+
+    /**
+     * event_type 하나의 학습 샘플 모음. 총 바이트가 상한에 닿으면 더 모으지 않습니다.
+     */
+    private static final class SampleBuffer {
+        private final long maxBytes;
+        private final List<byte[]> samples = new ArrayList<>();
+        private long bytes;
+
+        SampleBuffer(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized void add(byte[] sample) {
+            if (bytes + sample.length <= maxBytes) {
+                samples.add(sample);
+                bytes += sample.length;
+            }
+        }
+
+        synchronized List<byte[]> drainIfReady(int minSamples) {
+            if (samples.size() < minSamples && bytes + 1024 < maxBytes) {
+                return null;
+            }
+            if (samples.isEmpty()) {
+                return null;
+            }
+            List<byte[]> drained = new ArrayList<>(samples);
+            samples.clear();
+            bytes = 0;
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package kr.co.mes.support;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 초보자용 상세 주석:
+ * - PayloadCompressor가 모은 event_type별 샘플로 zstd 사전을 학습해 테넌트 DB(raw_payload_dict)에 저장하고,
+ *   이후 압축에 쓰도록 등록하는 스케줄러입니다. 학습은 요청 스레드가 아니라 여기서만 수행합니다.
+ * - 처음 실행될 때 테넌트마다 event_type별 최신 사전을 읽어 재시작 후에도 같은 사전으로 이어서 압축합니다.
+ * - 저장된 사전은 지우지 않습니다(그 사전으로 압축된 행을 복호화할 때 필요).
+ * - raw_payload_dict는 RawLogTableInitializer가 만들므로, 테이블 준비가 끝나기 전 주기는 건너뜁니다.
+ */
+@Component
+@Profile("local")
+public class PayloadDictionaryTrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(PayloadDictionaryTrainer.class);
+
+    private final PayloadCompressor compressor;
+    private final JdbcTemplate jdbcTemplate;
+    private final RawLogTableInitializer tableInitializer;
+    private final int dictionaryBytes;
+    private final Set<String> loadedTenants = new HashSet<>();
+
+    public PayloadDictionaryTrainer(PayloadCompressor compressor, JdbcTemplate jdbcTemplate,
+                                    RawLogTableInitializer tableInitializer,
+                                    @Value("${mes.payload.compression.dictionary.size-bytes:16384}") int dictionaryBytes) {
+        this.compressor = compressor;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableInitializer = tableInitializer;
+        this.dictionaryBytes = dictionaryBytes;
+    }
+
+    /**
+     * train-interval-ms마다 실행 (이전 실행이 끝난 뒤부터 계산).
+     */
+    @Scheduled(fixedDelayString = "${mes.payload.compression.dictionary.train-interval-ms:60000}")
+    public void trainPending() {
+        if (!compressor.isEnabled() || !tableInitializer.isReady()) {
+            return;
+        }
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            if (!loadedTenants.contains(tenant) && loadDictionaries(tenant)) {
+                loadedTenants.add(tenant);
+            }
+        }
+        for (PayloadCompressor.TrainingSet set : compressor.drainTrainingSets()) {
+            train(set);
+        }
+    }
+
+    /**
+     * event_type별 최신 사전을 읽어 등록합니다. 테이블이 아직 없는 등 실패하면 다음 주기에 다시 시도합니다.
+     */
+    private boolean loadDictionaries(String tenant) {
+        TenantContext.setTenant(tenant, "payload-dict-load");
+        try {
+            jdbcTemplate.query("""
+                    SELECT d.id, d.event_type, d.dict_bytes, d.created_at
+                    FROM raw_payload_dict d
+                    JOIN (SELECT event_type, MAX(id) AS id FROM raw_payload_dict GROUP BY event_type) latest
+                      ON d.id = latest.id
+                    """, rs -> {
+                compressor.install(tenant, rs.getString("event_type"), rs.getLong("id"), rs.getBytes("dict_bytes"),
+                        rs.getTimestamp("created_at").getTime());
+            });
+            return true;
+        } catch (Exception e) {
+            log.warn("압축 사전 로드 보류, 다음 주기에 재시도 - tenant={}, 원인={}", tenant, e.getMessage());
+            return false;
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    private void train(PayloadCompressor.TrainingSet set) {
+        long start = System.nanoTime();
+        byte[] dictionary = PayloadCompressor.train(set.samples(), dictionaryBytes);
+        if (dictionary == null) {
+            log.info("압축 사전 학습 실패(샘플 부족/다양성 부족), 샘플을 다시 모읍니다 - tenant={}, event_type={}, samples={}",
+                    set.tenantId(), set.eventType(), set.samples().size());
+            return;
+        }
+
+        // 백그라운드 스레드이므로 라우팅 DataSource가 올바른 테넌트 DB를 고르도록 컨텍스트를 직접 설정합니다.
+        TenantContext.setTenant(set.tenantId(), "payload-dict-train");
+        try {
+            Instant createdAt = Instant.now();
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO raw_payload_dict (event_type, dict_bytes, sample_count, created_at) VALUES (?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS);
+                ps.setString(1, set.eventType());
+                ps.setBytes(2, dictionary);
+                ps.setInt(3, set.samples().size());
+                ps.setTimestamp(4, Timestamp.from(createdAt));
+                return ps;
+            }, keyHolder);
+            long dictId = keyHolder.getKey().longValue();
+            compressor.install(set.tenantId(), set.eventType(), dictId, dictionary, createdAt.toEpochMilli());
+            log.info("압축 사전 등록 - tenant={}, event_type={}, dict_id={}, samples={}, dict_bytes={}, took_ms={}",
+                    set.tenantId(), set.eventType(), dictId, set.samples().size(), dictionary.length,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("압축 사전 저장 실패 - tenant={}, event_type={}, 원인={}", set.tenantId(), set.eventType(), e.getMessage());
+        } finally {
+            TenantContext.clear();
+        }
+    }
+}
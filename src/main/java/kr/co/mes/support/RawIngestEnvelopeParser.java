@@ -0,0 +1,250 @@
+package kr.co.mes.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * 초보자용 상세 주석:
+ * - 수집 요청 본문(JSON 바이트)에서 source/eventType/requestId만 읽고,
+ *   payload 값은 객체로 만들지 않고 "원본 바이트 구간" 그대로 잘라 냅니다.
+ * - 스트리밍 파서로 payload 구간을 끝까지 훑기 때문에 문법 오류(잘못된 JSON)는 여기서 걸러집니다.
+ * - 이렇게 얻은 바이트 하나로 SHA-256과 AES-GCM을 바로 수행하므로,
+ *   "객체 트리 생성 → 문자열 재직렬화 → 다시 UTF-8 인코딩" 과정이 사라집니다.
+ * - 해시/저장 기준은 인코딩과 무관하게 "공백 없는 JSON"입니다.
+ *   JSON 본문은 잘라 낸 구간에서 문자열 밖의 공백만 뺍니다(공백이 없으면 복사 없이 그대로, 그 밖의 바이트는 보낸 그대로).
+ *   CBOR/Smile 본문은 payload를 토큰 단위로 복사해 공백 없는 JSON으로 만듭니다(객체 트리 없음).
+ *   그래서 같은 데이터를 들여쓰기한 JSON, 공백 없는 JSON, CBOR/Smile로 보내도 payload_sha256과 중복 판정이 같습니다.
+ */
+@Component
+public class RawIngestEnvelopeParser {
+
+    private static final byte[] JSON_NULL = {'n', 'u', 'l', 'l'};
+
+    private final JsonFactory jsonFactory;
+    private final JsonFactory cborFactory = new CBORFactory();
+    private final JsonFactory smileFactory = new SmileFactory();
+
+    public RawIngestEnvelopeParser(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * 수집 본문 인코딩. Content-Type으로 결정합니다.
+     */
+    public enum Encoding {
+        JSON("application/json"),
+        CBOR("application/cbor"),
+        SMILE("application/x-jackson-smile");
+
+        private final String mediaType;
+
+        Encoding(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public String mediaType() {
+            return mediaType;
+        }
+
+        /**
+         * Content-Type 헤더 값으로 인코딩을 고릅니다. 모르는 값이나 없으면 JSON.
+         */
+        public static Encoding fromContentType(String contentType) {
+            if (contentType != null) {
+                String lower = contentType.toLowerCase();
+                if (lower.startsWith(CBOR.mediaType)) {
+                    return CBOR;
+                }
+                if (lower.startsWith(SMILE.mediaType)) {
+                    return SMILE;
+                }
+            }
+            return JSON;
+        }
+    }
+
+    /**
+     * 수집 요청 한 건을 파싱한 결과.
+     * - payload: 원본 JSON 바이트(UTF-8). payload 필드가 없으면 "null".
+     */
+    public record RawIngestEnvelope(String source, String eventType, String requestId, byte[] payload) {}
+
+    /**
+     * 단건 요청 본문 {"source":..,"eventType":..,"payload":{..},"requestId":..} 을 파싱합니다.
+     *
+     * @throws IOException JSON 문법 오류이거나 최상위가 객체가 아닐 때
+     */
+    public RawIngestEnvelope parse(byte[] body) throws IOException {
+        return parse(body, Encoding.JSON);
+    }
+
+    /**
+     * 지정한 인코딩(JSON/CBOR/Smile)의 단건 요청 본문을 파싱합니다.
+     */
+    public RawIngestEnvelope parse(byte[] body, Encoding encoding) throws IOException {
+        try (JsonParser p = factory(encoding).createParser(body)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(p, "request body must be a JSON object");
+            }
+            RawIngestEnvelope envelope = readEnvelope(p, body, encoding);
+            ensureEnd(p);
+            return envelope;
+        }
+    }
+
+    /**
+     * 배치 요청 본문 [{..},{..}] 을 파싱합니다. JSON null 원소는 null로 돌려줍니다.
+     *
+     * @throws IOException JSON 문법 오류이거나 최상위가 배열이 아닐 때
+     */
+    public List<RawIngestEnvelope> parseArray(byte[] body) throws IOException {
+        return parseArray(body, Encoding.JSON);
+    }
+
+    /**
+     * 지정한 인코딩(JSON/CBOR/Smile)의 배치 요청 본문을 파싱합니다.
+     */
+    public List<RawIngestEnvelope> parseArray(byte[] body, Encoding encoding) throws IOException {
+        try (JsonParser p = factory(encoding).createParser(body)) {
+            if (p.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(p, "request body must be a JSON array");
+            }
+            List<RawIngestEnvelope> result = new ArrayList<>();
+            JsonToken t;
+            while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (t == JsonToken.VALUE_NULL) {
+                    result.add(null);
+                } else if (t == JsonToken.START_OBJECT) {
+                    result.add(readEnvelope(p, body, encoding));
+                } else {
+                    throw new JsonParseException(p, "array element must be a JSON object");
+                }
+            }
+            ensureEnd(p);
+            return result;
+        }
+    }
+
+    /**
+     * 현재 토큰이 START_OBJECT인 상태에서 객체 하나를 끝까지 읽습니다.
+     */
+    private RawIngestEnvelope readEnvelope(JsonParser p, byte[] body, Encoding encoding) throws IOException {
+        String source = null;
+        String eventType = null;
+        String requestId = null;
+        byte[] payload = JSON_NULL;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (name) {
+                case "source" -> source = scalarText(p, value);
+                case "eventType" -> eventType = scalarText(p, value);
+                case "requestId" -> requestId = scalarText(p, value);
+                case "payload" -> payload = encoding == Encoding.JSON ? sliceJson(p, body) : toCanonicalJson(p);
+                default -> {
+                    p.skipChildren();
+                    p.finishToken();
+                }
+            }
+        }
+        return new RawIngestEnvelope(source, eventType, requestId, payload);
+    }
+
+    /**
+     * JSON 본문: payload 값의 원본 바이트 구간을 잘라 내고 공백 없는 형태로 맞춥니다.
+     */
+    private byte[] sliceJson(JsonParser p, byte[] body) throws IOException {
+        // 값의 시작 위치 → 값 전체를 건너뛴(검증한) 뒤의 위치 = 원본 바이트 구간
+        int start = (int) p.currentTokenLocation().getByteOffset();
+        p.skipChildren();
+        p.finishToken();
+        int end = (int) p.currentLocation().getByteOffset();
+        return compact(body, start, end);
+    }
+
+    /**
+     * 이미 파서로 검증한 JSON 구간에서 문자열 밖의 공백(스페이스/탭/줄바꿈)을 뺀 바이트를 돌려줍니다.
+     * - 문자열 안의 공백과 이스케이프는 건드리지 않습니다.
+     */
+    static byte[] compact(byte[] json, int start, int end) {
+        byte[] out = null;
+        int w = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        for (int i = start; i < end; i++) {
+            byte b = json[i];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                if (out == null) {
+                    out = new byte[end - start];
+                    w = i - start;
+                    System.arraycopy(json, start, out, 0, w);
+                }
+                continue;
+            }
+            if (out != null) {
+                out[w++] = b;
+            }
+        }
+        return out == null ? Arrays.copyOfRange(json, start, end) : Arrays.copyOf(out, w);
+    }
+
+    /**
+     * 바이너리 본문: payload 값을 토큰 단위로 복사해 공백 없는 JSON 바이트로 만듭니다.
+     */
+    private byte[] toCanonicalJson(JsonParser p) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator g = jsonFactory.createGenerator(out)) {
+            g.copyCurrentStructure(p);
+        }
+        return out.toByteArray();
+    }
+
+    private JsonFactory factory(Encoding encoding) {
+        return switch (encoding) {
+            case JSON -> jsonFactory;
+            case CBOR -> cborFactory;
+            case SMILE -> smileFactory;
+        };
+    }
+
+    private String scalarText(JsonParser p, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value.isStructStart()) {
+            throw new JsonParseException(p, "field '" + p.currentName() + "' must be a scalar");
+        }
+        return p.getValueAsString();
+    }
+
+    private void ensureEnd(JsonParser p) throws IOException {
+        if (p.nextToken() != null) {
+            throw new JsonParseException(p, "unexpected trailing content");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package kr.co.mes.support;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 기존 행(저장 형식 v1: payload_enc/payload_nonce에 Base64 텍스트)을 v2(payload_enc_bin/payload_nonce_bin에 원본 바이트)로
+ *   서비스 중단 없이 조금씩 옮기는 스케줄러입니다.
+ * - 주기마다 테넌트별로 id 순서대로 batch-size건만 읽어 변환하고 UPDATE합니다(테이블 잠금/긴 트랜잭션 없음).
+ * - UPDATE는 "아직 v1인 행"만 바꾸므로 같은 행을 두 번 처리해도 안전하며, 읽기는 v1/v2를 모두 지원하므로 도중에도 조회가 가능합니다.
+ * - 끝까지 옮긴 뒤에도 마지막 id 이후만 가볍게 확인하므로, 롤링 배포 중 이전 버전 인스턴스가 v1로 쓴 행도 따라잡습니다.
+ *   (텍스트 컬럼이 비워진 만큼의 디스크 공간은 OPTIMIZE TABLE 등으로 회수합니다)
+ * - raw_ingest_log(바이너리 컬럼 포함)는 RawLogTableInitializer가 준비하므로, 준비가 끝나기 전 주기는 건너뜁니다.
+ */
+@Component
+@Profile("local")
+public class RawLogBinaryMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(RawLogBinaryMigrator.class);
+
+    private final Map<String, JdbcTemplate> jdbcTemplates = new HashMap<>();
+    private final Map<String, Long> cursors = new HashMap<>();
+    private final Map<String, Boolean> caughtUp = new HashMap<>();
+    private final Map<String, Counter> migratedCounters = new HashMap<>();
+    private final RawLogDetailCache detailCache;
+    private final RawLogTableInitializer tableInitializer;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public RawLogBinaryMigrator(
+            @Qualifier("tenantAJdbcTemplate") JdbcTemplate tenantAJdbcTemplate,
+            @Qualifier("tenantBJdbcTemplate") JdbcTemplate tenantBJdbcTemplate,
+            MeterRegistry meterRegistry,
+            RawLogDetailCache detailCache,
+            RawLogTableInitializer tableInitializer,
+            @Value("${mes.payload.storage.binary-columns:true}") boolean binaryColumns,
+            @Value("${mes.payload.storage.migration.enabled:true}") boolean migrationEnabled,
+            @Value("${mes.payload.storage.migration.batch-size:500}") int batchSize) {
+        jdbcTemplates.put("tenant_a", tenantAJdbcTemplate);
+        jdbcTemplates.put("tenant_b", tenantBJdbcTemplate);
+        this.detailCache = detailCache;
+        this.tableInitializer = tableInitializer;
+        // v1 형식으로 쓰는 설정(binary-columns=false)이면 옮겨도 새 행이 계속 v1로 들어오므로 실행하지 않습니다.
+        this.enabled = binaryColumns && migrationEnabled;
+        this.batchSize = Math.max(batchSize, 1);
+        for (String tenant : jdbcTemplates.keySet()) {
+            cursors.put(tenant, 0L);
+            caughtUp.put(tenant, false);
+            migratedCounters.put(tenant, Counter.builder("mes.raw_log.storage_migration.rows")
+                    .description("Base64 텍스트 컬럼에서 바이너리 컬럼으로 옮긴 행 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * interval-ms마다 테넌트별로 한 배치씩 옮깁니다 (이전 실행이 끝난 뒤부터 계산).
+     */
+    @Scheduled(fixedDelayString = "${mes.payload.storage.migration.interval-ms:1000}")
+    public void migrateBatch() {
+        if (!enabled || !tableInitializer.isReady()) {
+            return;
+        }
+        for (Map.Entry<String, JdbcTemplate> e : jdbcTemplates.entrySet()) {
+            String tenant = e.getKey();
+            long cursor = cursors.get(tenant);
+            try {
+                migrateTenant(tenant, e.getValue(), cursor);
+            } catch (Exception ex) {
+                log.warn("저장 형식 마이그레이션 보류, 다음 주기에 재시도 - tenant={}, last_id={}, 원인={}",
+                        tenant, cursor, ex.getMessage());
+            }
+        }
+    }
+
+    private void migrateTenant(String tenant, JdbcTemplate jdbcTemplate, long cursor) {
+        List<Object[]> rows = jdbcTemplate.query("""
+                SELECT id, payload_enc, payload_nonce
+                FROM raw_ingest_log
+                WHERE id > ? AND payload_enc IS NOT NULL AND payload_enc_bin IS NULL
+                ORDER BY id
+                LIMIT ?
+                """, (rs, rowNum) -> toBinaryRow(rs.getLong("id"), rs.getString("payload_enc"), rs.getString("payload_nonce")),
+                cursor, batchSize);
+        if (rows.isEmpty()) {
+            if (!caughtUp.put(tenant, true)) {
+                log.info("저장 형식 마이그레이션 완료 - tenant={}, last_id={}", tenant, cursor);
+            }
+            return;
+        }
+        caughtUp.put(tenant, false);
+
+        // Base64가 깨진 행은 건드리지 않고 건너뜁니다(기존처럼 조회 시 복호화 실패로 표시됨).
+        List<Object[]> convertible = rows.stream().filter(row -> row[0] != null).toList();
+        if (!convertible.isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                    UPDATE raw_ingest_log
+                    SET payload_enc_bin = ?, payload_nonce_bin = ?, payload_enc = NULL, payload_nonce = NULL
+                    WHERE id = ? AND payload_enc_bin IS NULL
+                    """, convertible);
+            migratedCounters.get(tenant).increment(convertible.size());
+            // 상세 조회 캐시에 남은 v1 응답(payload_storage_version=1)을 지웁니다.
+            detailCache.invalidate(tenant, convertible.stream().map(row -> (Long) row[2]).toList());
+        }
+        cursors.put(tenant, (Long) rows.get(rows.size() - 1)[2]);
+    }
+
+    /**
+     * UPDATE 파라미터(암호문 바이트, nonce 바이트, id). 디코딩할 수 없으면 암호문/nonce 자리에 null을 둡니다.
+     */
+    private static Object[] toBinaryRow(long id, String cipherB64, String nonceB64) {
+        try {
+            if (nonceB64 != null) {
+                return new Object[]{Base64.getDecoder().decode(cipherB64), Base64.getDecoder().decode(nonceB64), id};
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Base64 디코딩 실패로 마이그레이션에서 제외 - id={}", id);
+        }
+        return new Object[]{null, null, id};
+    }
+}
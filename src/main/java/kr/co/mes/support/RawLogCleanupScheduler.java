@@ -6,6 +6,7 @@ import java.time.ZoneOffset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -15,6 +16,8 @@ import org.springframework.stereotype.Component;
  * 초보자용 상세 주석:
  * - 매일 새벽 02:10에 30일 지난 원시 로그를 삭제합니다.
  * - tenant_a, tenant_b 두 DB에 대해 각각 수행합니다.
+ * - 분/시간 집계 테이블은 원시 로그와 따로 보관 기간(mes.rollup.*-retention-days)을 적용합니다.
+ *   집계는 수집 시점에 이미 더해졌으므로 원시 로그를 지워도 통계 값은 바뀌지 않습니다.
  */
 @Component
 @Profile("local")
@@ -24,12 +27,18 @@ public class RawLogCleanupScheduler {
 
     private final JdbcTemplate tenantAJdbcTemplate;
     private final JdbcTemplate tenantBJdbcTemplate;
+    private final int minuteRetentionDays;
+    private final int hourRetentionDays;
 
     public RawLogCleanupScheduler(
             @Qualifier("tenantAJdbcTemplate") JdbcTemplate tenantAJdbcTemplate,
-            @Qualifier("tenantBJdbcTemplate") JdbcTemplate tenantBJdbcTemplate) {
+            @Qualifier("tenantBJdbcTemplate") JdbcTemplate tenantBJdbcTemplate,
+            @Value("${mes.rollup.minute-retention-days:35}") int minuteRetentionDays,
+            @Value("${mes.rollup.hour-retention-days:400}") int hourRetentionDays) {
         this.tenantAJdbcTemplate = tenantAJdbcTemplate;
         this.tenantBJdbcTemplate = tenantBJdbcTemplate;
+        this.minuteRetentionDays = Math.max(minuteRetentionDays, 1);
+        this.hourRetentionDays = Math.max(hourRetentionDays, 1);
     }
 
     /**
@@ -41,9 +50,23 @@ public class RawLogCleanupScheduler {
         int deletedA = deleteOld(tenantAJdbcTemplate, "tenant_a", cutoff);
         int deletedB = deleteOld(tenantBJdbcTemplate, "tenant_b", cutoff);
         log.info("원시 로그 정리 완료 - cutoff={}, tenant_a deleted={}, tenant_b deleted={}", cutoff, deletedA, deletedB);
+
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        int rollupA = deleteOldRollups(tenantAJdbcTemplate, now);
+        int rollupB = deleteOldRollups(tenantBJdbcTemplate, now);
+        log.info("집계 테이블 정리 완료 - minuteRetentionDays={}, hourRetentionDays={}, tenant_a deleted={}, tenant_b deleted={}",
+                minuteRetentionDays, hourRetentionDays, rollupA, rollupB);
     }
 
     private int deleteOld(JdbcTemplate jdbcTemplate, String tenantName, OffsetDateTime cutoff) {
         return jdbcTemplate.update("DELETE FROM raw_ingest_log WHERE received_at < ?", java.sql.Timestamp.from(cutoff.toInstant()));
     }
+
+    private int deleteOldRollups(JdbcTemplate jdbcTemplate, OffsetDateTime now) {
+        int deleted = jdbcTemplate.update("DELETE FROM " + RawLogRollup.Granularity.MINUTE.table() + " WHERE bucket_start < ?",
+                java.sql.Timestamp.from(now.minusDays(minuteRetentionDays).toInstant()));
+        deleted += jdbcTemplate.update("DELETE FROM " + RawLogRollup.Granularity.HOUR.table() + " WHERE bucket_start < ?",
+                java.sql.Timestamp.from(now.minusDays(hourRetentionDays).toInstant()));
+        return deleted;
+    }
 }
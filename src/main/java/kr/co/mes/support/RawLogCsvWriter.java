@@ -0,0 +1,60 @@
+package kr.co.mes.support;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * 초보자용 상세 주석:
+ * - 관리자 Export 행을 CSV로 한 줄씩 씁니다(전체를 문자열로 만들지 않음).
+ * - 모든 값은 큰따옴표로 감싸고, 값 안의 큰따옴표는 두 번 써서 이스케이프합니다. null은 빈 값("")입니다.
+ * - 버퍼링은 호출자가 넘긴 Writer(BufferedWriter 등)에 맡깁니다.
+ */
+public final class RawLogCsvWriter {
+
+    private static final String[] COLUMNS = {
+            "id", "tenant_id", "source", "event_type", "received_at", "request_id", "user_id", "role", "payload_preview"
+    };
+
+    private final Writer out;
+    private final boolean includeDecrypted;
+
+    public RawLogCsvWriter(Writer out, boolean includeDecrypted) {
+        this.out = out;
+        this.includeDecrypted = includeDecrypted;
+    }
+
+    public void writeHeader() throws IOException {
+        out.write(String.join(",", COLUMNS));
+        if (includeDecrypted) {
+            out.write(",decrypted_payload");
+        }
+        out.write('\n');
+    }
+
+    public void writeRow(Map<String, Object> row) throws IOException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeValue(row.get(COLUMNS[i]));
+        }
+        if (includeDecrypted) {
+            out.write(',');
+            writeValue(row.get("decrypted_payload"));
+        }
+        out.write('\n');
+    }
+
+    private void writeValue(Object value) throws IOException {
+        out.write('"');
+        if (value != null) {
+            String s = String.valueOf(value);
+            if (s.indexOf('"') >= 0) {
+                s = s.replace("\"", "\"\"");
+            }
+            out.write(s);
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,302 @@
+package kr.co.mes.support;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import kr.co.mes.service.RawLogService.EncryptedRawLog;
+
+/**
+ * 초보자용 상세 주석:
+ * - 재전송으로 같은 이벤트가 여러 번 들어오는 것을 막는 중복 제거 창(window)입니다.
+ * - 키는 테넌트별 (source, payload_sha256)이며, window 시간 안에 같은 키가 다시 오면 중복으로 판단합니다.
+ * - 구조는 2단계입니다.
+ *   1) 비트 필터(블룸 필터 방식): "처음 보는 키"를 아주 싸게 걸러내는 1차 검사. 오탐(있다고 착각)은 있어도 누락은 없습니다.
+ *   2) 정확 캐시(ConcurrentHashMap): 필터가 "있을 수도"라고 할 때 실제 중복인지 확정하고, 원본 id를 돌려줍니다.
+ * - 비트 필터는 현재/이전 두 세대를 두고 window마다 교체하므로 메모리가 고정입니다.
+ * - 정확 캐시는 max-entries로 크기를 제한하며, 가득 차면 새 키는 추적하지 않고 그냥 저장을 허용합니다(중복을 놓칠 수는 있어도 정상 이벤트를 버리지는 않음).
+ * - 사용 순서: claim() → (저장 성공) complete() / (저장 실패) release()
+ * - write-behind/스풀처럼 202로 먼저 응답하는 경로는 선점이 PENDING_ID로 남습니다. 이벤트에 source/payload_sha256이
+ *   함께 실려 가므로, 실제 저장(group commit, 스풀 재생)이 끝나면 completeAll()로 id를 확정하고,
+ *   dead-letter/격리로 버려지면 release()로 풀어 장치 재전송이 "저장된 적 없는 중복"으로 막히지 않게 합니다.
+ */
+@Component
+@Profile("local")
+public class RawLogDeduplicator {
+
+    /**
+     * 저장이 아직 끝나지 않아 id를 모르는 상태(write-behind 등).
+     */
+    public static final long PENDING_ID = -1;
+
+    private static final int HASH_COUNT = 3;
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Map<String, TenantWindow> windows = new HashMap<>();
+    private final Map<String, Counter> suppressedCounters = new HashMap<>();
+    private final Map<String, Counter> untrackedCounters = new HashMap<>();
+
+    @Autowired
+    public RawLogDeduplicator(MeterRegistry meterRegistry,
+                              @Value("${mes.ingest.dedup.enabled:false}") boolean enabled,
+                              @Value("${mes.ingest.dedup.window-seconds:60}") long windowSeconds,
+                              @Value("${mes.ingest.dedup.max-entries:100000}") int maxEntries) {
+        this(meterRegistry, enabled, TimeUnit.SECONDS.toMillis(windowSeconds), maxEntries, System::currentTimeMillis);
+    }
+
+    /**
+     * 테스트에서 시계를 바꿔 끼울 수 있도록 열어 둔 생성자.
+     */
+    RawLogDeduplicator(MeterRegistry meterRegistry, boolean enabled, long windowMillis, int maxEntries, LongSupplier clock) {
+        this.enabled = enabled;
+        this.windowMillis = Math.max(windowMillis, 1);
+        this.maxEntries = Math.max(maxEntries, 1);
+        this.clock = clock;
+
+        // 항목당 약 16비트 → HASH_COUNT=3 기준 오탐률 1% 미만
+        int bits = Integer.highestOneBit(Math.max(this.maxEntries * 16, 64) - 1) << 1;
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            TenantWindow window = new TenantWindow(bits, clock.getAsLong());
+            windows.put(tenant, window);
+            Gauge.builder("mes.ingest.dedup.cache.size", window.seen, Map::size)
+                    .description("중복 제거 정확 캐시에 있는 키 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+            suppressedCounters.put(tenant, Counter.builder("mes.ingest.dedup.suppressed")
+                    .description("중복으로 판단되어 저장을 생략한 이벤트 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+            untrackedCounters.put(tenant, Counter.builder("mes.ingest.dedup.untracked")
+                    .description("캐시가 가득 차 중복 추적 없이 저장한 이벤트 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 중복 제거 사용 여부.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 이 이벤트를 저장해도 되는지 확인하고, 처음 보는 키라면 선점합니다.
+     *
+     * @return null이면 처음 보는 이벤트(저장 진행), 아니면 window 안의 원본 id(PENDING_ID일 수 있음)
+     */
+    public Long claim(String tenantId, String source, String payloadSha256) {
+        TenantWindow window = enabled ? windows.get(tenantId) : null;
+        if (window == null || payloadSha256 == null) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        window.rotateIfNeeded(now);
+
+        String key = key(source, payloadSha256);
+        long h1 = hash1(source, payloadSha256);
+        long h2 = hash2(payloadSha256);
+        Seen fresh = new Seen(PENDING_ID, now);
+
+        // 1) 필터가 "처음 본다"고 하면 맵 조회 없이 바로 선점합니다(대부분의 정상 이벤트 경로).
+        if (!window.mightContain(h1, h2)) {
+            if (!reserveCapacity(tenantId, window, now)) {
+                return null;
+            }
+            Seen prev = window.seen.putIfAbsent(key, fresh);
+            if (prev == null) {
+                window.add(h1, h2);
+                return null;
+            }
+        }
+
+        // 2) "있을 수도" → 정확 캐시로 확정합니다. window가 지난 항목은 새 이벤트로 덮어씁니다.
+        Seen[] duplicate = new Seen[1];
+        window.seen.compute(key, (k, old) -> {
+            if (old != null && now - old.seenAt() < windowMillis) {
+                duplicate[0] = old;
+                return old;
+            }
+            return fresh;
+        });
+        if (duplicate[0] != null) {
+            suppressedCounters.get(tenantId).increment();
+            return duplicate[0].id();
+        }
+        window.add(h1, h2);
+        return null;
+    }
+
+    /**
+     * 저장이 끝나 id가 확정되면 기록합니다(이후 중복 요청에 원본 id를 돌려주기 위함).
+     */
+    public void complete(String tenantId, String source, String payloadSha256, long id) {
+        TenantWindow window = enabled ? windows.get(tenantId) : null;
+        if (window == null || payloadSha256 == null) {
+            return;
+        }
+        window.seen.computeIfPresent(key(source, payloadSha256), (k, old) -> new Seen(id, old.seenAt()));
+    }
+
+    /**
+     * 저장에 실패했을 때 선점을 풀어 재시도가 중복으로 막히지 않게 합니다.
+     */
+    public void release(String tenantId, String source, String payloadSha256) {
+        TenantWindow window = enabled ? windows.get(tenantId) : null;
+        if (window == null || payloadSha256 == null) {
+            return;
+        }
+        window.seen.computeIfPresent(key(source, payloadSha256), (k, old) -> old.id() == PENDING_ID ? null : old);
+    }
+
+    /**
+     * 비동기 저장(write-behind, 스풀 재생)이 끝난 이벤트들의 선점을 정리합니다.
+     * - ids는 logs와 같은 순서이며, id가 있으면 complete(), null이면 release()와 같습니다.
+     */
+    public void completeAll(String tenantId, List<EncryptedRawLog> logs, List<Long> ids) {
+        if (!enabled || ids == null) {
+            return;
+        }
+        for (int i = 0; i < logs.size() && i < ids.size(); i++) {
+            String source = logs.get(i).entry().source();
+            String payloadSha256 = logs.get(i).entry().payloadSha256();
+            Long id = ids.get(i);
+            if (id != null) {
+                complete(tenantId, source, payloadSha256, id);
+            } else {
+                release(tenantId, source, payloadSha256);
+            }
+        }
+    }
+
+    /**
+     * 정확 캐시에 자리가 있는지 확인합니다. 가득 차면 만료 항목을 먼저 정리합니다.
+     */
+    private boolean reserveCapacity(String tenantId, TenantWindow window, long now) {
+        if (window.seen.size() < maxEntries) {
+            return true;
+        }
+        window.purgeExpired(now, windowMillis);
+        if (window.seen.size() < maxEntries) {
+            return true;
+        }
+        untrackedCounters.get(tenantId).increment();
+        return false;
+    }
+
+    private static String key(String source, String payloadSha256) {
+        return source + '\n' + payloadSha256;
+    }
+
+    /**
+     * SHA-256 hex는 이미 균등 분포이므로 앞/뒤 일부를 그대로 해시로 사용합니다(추가 해시 계산 없음).
+     */
+    private static long hash1(String source, String payloadSha256) {
+        return parseHex(payloadSha256, 0) ^ (source == null ? 0 : source.hashCode() * 0x9E3779B97F4A7C15L);
+    }
+
+    private static long hash2(String payloadSha256) {
+        return parseHex(payloadSha256, 16) | 1L;
+    }
+
+    private static long parseHex(String hex, int offset) {
+        long value = 0;
+        int end = Math.min(offset + 16, hex.length());
+        for (int i = offset; i < end; i++) {
+            value = (value << 4) | (Character.digit(hex.charAt(i), 16) & 0xF);
+        }
+        return value;
+    }
+
+    /**
+     * 정확 캐시 항목: 원본 id와 최초 수신 시각(ms).
+     */
+    private record Seen(long id, long seenAt) {}
+
+    /**
+     * 테넌트 하나의 중복 제거 상태(비트 필터 2세대 + 정확 캐시).
+     */
+    private final class TenantWindow {
+        private final int bitMask;
+        private final ConcurrentHashMap<String, Seen> seen = new ConcurrentHashMap<>();
+        private final ReentrantLock rotateLock = new ReentrantLock();
+        private volatile AtomicLongArray current;
+        private volatile AtomicLongArray previous;
+        private volatile long rotatedAt;
+
+        TenantWindow(int bits, long now) {
+            this.bitMask = bits - 1;
+            this.current = new AtomicLongArray(bits / 64);
+            this.previous = new AtomicLongArray(bits / 64);
+            this.rotatedAt = now;
+        }
+
+        /**
+         * window가 지나면 필터 세대를 교체하고 만료된 캐시 항목을 정리합니다.
+         * - 다른 스레드가 이미 교체 중이면 기다리지 않고 넘어갑니다.
+         */
+        void rotateIfNeeded(long now) {
+            if (now - rotatedAt < windowMillis || !rotateLock.tryLock()) {
+                return;
+            }
+            try {
+                if (now - rotatedAt >= windowMillis) {
+                    previous = current;
+                    current = new AtomicLongArray(previous.length());
+                    rotatedAt = now;
+                    purgeExpired(now, windowMillis);
+                }
+            } finally {
+                rotateLock.unlock();
+            }
+        }
+
+        boolean mightContain(long h1, long h2) {
+            return contains(current, h1, h2) || contains(previous, h1, h2);
+        }
+
+        void add(long h1, long h2) {
+            AtomicLongArray bits = current;
+            for (int i = 0; i < HASH_COUNT; i++) {
+                int bit = (int) ((h1 + i * h2) & bitMask);
+                long mask = 1L << (bit & 63);
+                int slot = bit >>> 6;
+                long old;
+                do {
+                    old = bits.get(slot);
+                } while ((old & mask) == 0 && !bits.compareAndSet(slot, old, old | mask));
+            }
+        }
+
+        void purgeExpired(long now, long window) {
+            seen.values().removeIf(s -> now - s.seenAt() >= window);
+        }
+
+        private boolean contains(AtomicLongArray bits, long h1, long h2) {
+            for (int i = 0; i < HASH_COUNT; i++) {
+                int bit = (int) ((h1 + i * h2) & bitMask);
+                if ((bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package kr.co.mes.support;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - ADMIN 상세 조회(GET /api/admin/raw-logs/{id}) 결과(복호화된 페이로드 포함)를 잠깐 기억하는 테넌트별 캐시입니다.
+ * - raw_ingest_log 행은 저장 후 바뀌지 않으므로, 같은 id를 다시 열면 DB 조회/복호화 없이 바로 돌려줄 수 있습니다.
+ * - 크기 제한은 항목 수가 아니라 "추정 메모리 바이트"로 합니다(페이로드 크기가 행마다 크게 다르기 때문).
+ *   넘으면 가장 오래 조회되지 않은 항목(LRU)부터 지웁니다.
+ * - 평문이 메모리에 머무는 시간을 줄이기 위해 ttl이 지나면 조회 시/주기적으로 지우고,
+ *   키 교체(재암호화) 시에는 purgeKey/purgeAll로 바로 비웁니다.
+ *   (저장 형식 마이그레이션처럼 행의 암호문 컬럼을 고치는 작업은 invalidate로 해당 id를 지웁니다)
+ * - 지표: mes.raw_log.detail_cache.requests(result=hit|miss), .bytes, .entries, .evictions (태그: tenant)
+ */
+@Component
+public class RawLogDetailCache {
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, TenantCache> caches = new HashMap<>();
+
+    @Autowired
+    public RawLogDetailCache(MeterRegistry meterRegistry,
+                             @Value("${mes.payload.detail-cache.enabled:true}") boolean enabled,
+                             @Value("${mes.payload.detail-cache.max-bytes-per-tenant:16777216}") long maxBytes,
+                             @Value("${mes.payload.detail-cache.ttl-seconds:300}") long ttlSeconds) {
+        this(meterRegistry, enabled, maxBytes, TimeUnit.SECONDS.toMillis(ttlSeconds), System::currentTimeMillis);
+    }
+
+    /**
+     * 테스트에서 시계를 바꿔 끼울 수 있도록 열어 둔 생성자.
+     */
+    RawLogDetailCache(MeterRegistry meterRegistry, boolean enabled, long maxBytes, long ttlMillis, LongSupplier clock) {
+        this.enabled = enabled && maxBytes > 0;
+        this.maxBytes = Math.max(maxBytes, 0);
+        this.ttlMillis = Math.max(ttlMillis, 1);
+        this.clock = clock;
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            caches.put(tenant, new TenantCache(meterRegistry, tenant));
+        }
+    }
+
+    /**
+     * 캐시에 있으면 상세 조회 결과의 복사본을, 없으면 null을 반환합니다.
+     */
+    public Map<String, Object> get(String tenantId, long id) {
+        TenantCache cache = enabled ? caches.get(tenantId) : null;
+        if (cache == null) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        synchronized (cache) {
+            Entry entry = cache.entries.get(id);
+            if (entry != null && now - entry.storedAt() >= ttlMillis) {
+                cache.remove(id);
+                entry = null;
+            }
+            if (entry == null) {
+                cache.misses.increment();
+                return null;
+            }
+            cache.hits.increment();
+            // 호출자가 응답 맵을 고쳐도 캐시 내용이 바뀌지 않도록 복사해서 돌려줍니다.
+            return copy(entry.row());
+        }
+    }
+
+    /**
+     * 상세 조회 결과를 기억합니다. 한 항목이 테넌트 상한보다 크면 기억하지 않습니다.
+     */
+    public void put(String tenantId, long id, Map<String, Object> row) {
+        TenantCache cache = enabled && row != null ? caches.get(tenantId) : null;
+        if (cache == null) {
+            return;
+        }
+        long bytes = estimateBytes(row);
+        if (bytes > maxBytes) {
+            return;
+        }
+        Entry entry = new Entry(copy(row), (String) row.get("payload_key_id"), bytes, clock.getAsLong());
+        synchronized (cache) {
+            cache.remove(id);
+            cache.entries.put(id, entry);
+            cache.bytes.addAndGet(bytes);
+            Iterator<Entry> eldest = cache.entries.values().iterator();
+            while (cache.bytes.get() > maxBytes && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                eldest.remove();
+                cache.bytes.addAndGet(-evicted.bytes());
+                cache.evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 저장 형식이 바뀐 행(마이그레이션 등)을 캐시에서 지웁니다. 다음 조회 때 DB에서 새로 읽습니다.
+     */
+    public void invalidate(String tenantId, Collection<Long> ids) {
+        TenantCache cache = caches.get(tenantId);
+        if (cache == null || ids.isEmpty()) {
+            return;
+        }
+        synchronized (cache) {
+            for (Long id : ids) {
+                cache.remove(id);
+            }
+        }
+    }
+
+    /**
+     * 해당 키로 암호화돼 있던 행을 모든 테넌트 캐시에서 지웁니다(키 교체/재암호화 시).
+     */
+    public void purgeKey(String keyId) {
+        for (TenantCache cache : caches.values()) {
+            synchronized (cache) {
+                cache.entries.entrySet().removeIf(e -> {
+                    boolean match = keyId == null || keyId.equals(e.getValue().keyId());
+                    if (match) {
+                        cache.bytes.addAndGet(-e.getValue().bytes());
+                    }
+                    return match;
+                });
+            }
+        }
+    }
+
+    /**
+     * 모든 테넌트 캐시를 비웁니다.
+     */
+    public void purgeAll() {
+        purgeKey(null);
+    }
+
+    /**
+     * ttl이 지난 항목을 주기적으로 지웁니다(다시 조회되지 않는 평문도 오래 남지 않도록).
+     */
+    @Scheduled(fixedDelayString = "${mes.payload.detail-cache.purge-interval-ms:30000}")
+    public void purgeExpired() {
+        long now = clock.getAsLong();
+        for (TenantCache cache : caches.values()) {
+            synchronized (cache) {
+                cache.entries.entrySet().removeIf(e -> {
+                    boolean expired = now - e.getValue().storedAt() >= ttlMillis;
+                    if (expired) {
+                        cache.bytes.addAndGet(-e.getValue().bytes());
+                    }
+                    return expired;
+                });
+            }
+        }
+    }
+
+    /**
+     * 응답 맵이 힙에서 차지하는 크기를 대략 추정합니다(문자열은 UTF-16 기준으로 넉넉하게 계산).
+     */
+    static long estimateBytes(Map<String, Object> row) {
+        long bytes = 64;
+        for (Map.Entry<String, Object> e : row.entrySet()) {
+            bytes += 48 + 40 + 2L * e.getKey().length();
+            Object v = e.getValue();
+            if (v instanceof String s) {
+                bytes += 40 + 2L * s.length();
+            } else if (v != null) {
+                bytes += 32;
+            }
+        }
+        return bytes;
+    }
+
+    private static Map<String, Object> copy(Map<String, Object> row) {
+        Map<String, Object> copy = new LinkedCaseInsensitiveMap<>(row.size());
+        copy.putAll(row);
+        return copy;
+    }
+
+    private record Entry(Map<String, Object> row, String keyId, long bytes, long storedAt) {}
+
+    /**
+     * 테넌트 하나의 캐시. 접근 순서 LinkedHashMap이라 맨 앞이 가장 오래 조회되지 않은 항목입니다.
+     */
+    private static final class TenantCache {
+        private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+        private final AtomicLong bytes = new AtomicLong();
+        private final Counter hits;
+        private final Counter misses;
+        private final Counter evictions;
+
+        private TenantCache(MeterRegistry meterRegistry, String tenant) {
+            hits = Counter.builder("mes.raw_log.detail_cache.requests")
+                    .description("상세 조회 캐시 조회 수")
+                    .tag("tenant", tenant).tag("result", "hit")
+                    .register(meterRegistry);
+            misses = Counter.builder("mes.raw_log.detail_cache.requests")
+                    .description("상세 조회 캐시 조회 수")
+                    .tag("tenant", tenant).tag("result", "miss")
+                    .register(meterRegistry);
+            evictions = Counter.builder("mes.raw_log.detail_cache.evictions")
+                    .description("메모리 상한 때문에 밀려난 상세 조회 캐시 항목 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+            Gauge.builder("mes.raw_log.detail_cache.bytes", bytes, AtomicLong::get)
+                    .description("상세 조회 캐시가 차지하는 추정 메모리(바이트)")
+                    .tag("tenant", tenant)
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            Gauge.builder("mes.raw_log.detail_cache.entries", this, c -> c.size())
+                    .description("상세 조회 캐시에 있는 행 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        private void remove(long id) {
+            Entry old = entries.remove(id);
+            if (old != null) {
+                bytes.addAndGet(-old.bytes());
+            }
+        }
+    }
+}
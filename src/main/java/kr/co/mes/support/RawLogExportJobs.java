@@ -0,0 +1,328 @@
+package kr.co.mes.support;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import kr.co.mes.service.RawLogService;
+
+/**
+ * 초보자용 상세 주석:
+ * - 큰 Export를 HTTP 요청 밖에서 처리하는 비동기 작업 관리자입니다(제출 → 상태/진행 행 수 조회 → 다운로드).
+ *   요청 스레드와 DB 커넥션을 Export 내내 붙잡지 않고, 클라이언트가 끊겨도 작업 결과가 남습니다.
+ * - 작업은 크기가 정해진 전용 스레드 풀(threads, 대기열 queue-capacity)에서 돌고,
+ *   테넌트별 동시 작업 수(대기 포함)를 max-per-tenant로 제한해 Export가 수집용 커넥션을 다 쓰지 못하게 합니다.
+ * - 작업 스레드에는 요청의 TenantContext가 없으므로 제출한 테넌트를 작업 안에서 설정했다가 지웁니다.
+ * - 결과는 테넌트별 디렉터리에 gzip 압축 CSV 파일로 쓰고(쓰는 중에는 .part), ttl-minutes가 지나면 파일과 작업을 지웁니다.
+ *   파일이 디스크에 남으므로 복호화한 평문은 쓰지 않습니다(암호문/메타데이터만, 복호화 포함은 동기 /export만 지원).
+ * - 작업 목록은 메모리에만 있으므로, 재기동하면 이전 결과 파일은 기동 시 정리됩니다.
+ */
+@Component
+@Profile("local")
+public class RawLogExportJobs {
+
+    private static final Logger log = LoggerFactory.getLogger(RawLogExportJobs.class);
+
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    /**
+     * 제출 결과. job이 null이면 거절된 것이고 rejectReason에 이유가 있습니다.
+     */
+    public record Submission(ExportJob job, String rejectReason) {}
+
+    private final RawLogService rawLogService;
+    private final MeterRegistry meterRegistry;
+    private final Path baseDir;
+    private final int maxPerTenant;
+    private final long ttlMillis;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Counter> resultCounters = new ConcurrentHashMap<>();
+
+    public RawLogExportJobs(RawLogService rawLogService,
+                            MeterRegistry meterRegistry,
+                            @Value("${mes.export.jobs.dir:${java.io.tmpdir}/mes-export}") String dir,
+                            @Value("${mes.export.jobs.threads:2}") int threads,
+                            @Value("${mes.export.jobs.queue-capacity:20}") int queueCapacity,
+                            @Value("${mes.export.jobs.max-per-tenant:2}") int maxPerTenant,
+                            @Value("${mes.export.jobs.ttl-minutes:60}") long ttlMinutes) {
+        this.rawLogService = rawLogService;
+        this.meterRegistry = meterRegistry;
+        this.baseDir = Paths.get(dir);
+        this.maxPerTenant = Math.max(maxPerTenant, 1);
+        this.ttlMillis = Math.max(ttlMinutes, 1) * 60_000L;
+        AtomicInteger threadNo = new AtomicInteger();
+        int poolSize = Math.max(threads, 1);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), r -> {
+                    Thread t = new Thread(r, "raw-log-export-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * 이전 실행에서 남은 결과 파일을 지웁니다(작업 목록이 메모리에만 있어 다시 내려받을 수 없음).
+     */
+    @PostConstruct
+    public void cleanUpLeftovers() {
+        if (!Files.isDirectory(baseDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(baseDir)) {
+            files.filter(Files::isRegularFile).forEach(RawLogExportJobs::deleteQuietly);
+        } catch (IOException e) {
+            log.warn("이전 Export 결과 파일 정리 실패 - dir={}, 원인={}", baseDir, e.getMessage());
+        }
+    }
+
+    /**
+     * Export 작업을 제출합니다. 테넌트 동시 작업 수나 전체 대기열이 가득 차면 거절합니다.
+     */
+    public synchronized Submission submit(String tenantId, String userId, OffsetDateTime from, OffsetDateTime to,
+                                          String eventType, String source, String requestId, long limit) {
+        long active = jobs.values().stream()
+                .filter(j -> j.tenantId.equals(tenantId) && (j.state == State.QUEUED || j.state == State.RUNNING))
+                .count();
+        if (active >= maxPerTenant) {
+            return new Submission(null, "too many export jobs for tenant (max " + maxPerTenant + ")");
+        }
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), tenantId, userId, System.currentTimeMillis());
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> run(job, from, to, eventType, source, requestId, limit));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            return new Submission(null, "export queue is full");
+        }
+        log.info("Export 작업 제출 - tenant={}, jobId={}, userId={}, from={}, to={}", tenantId, job.id, userId, from, to);
+        return new Submission(job, null);
+    }
+
+    /**
+     * 작업 조회. 다른 테넌트의 작업이거나 만료되어 지운 작업이면 null.
+     */
+    public ExportJob find(String tenantId, String jobId) {
+        ExportJob job = jobs.get(jobId);
+        return job != null && job.tenantId.equals(tenantId) ? job : null;
+    }
+
+    /**
+     * 작업을 취소하고(실행 중이면 다음 행에서 멈춤) 결과 파일과 함께 지웁니다.
+     */
+    public boolean cancel(String tenantId, String jobId) {
+        ExportJob job = find(tenantId, jobId);
+        if (job == null) {
+            return false;
+        }
+        job.cancelled = true;
+        if (job.future != null) {
+            job.future.cancel(false);
+        }
+        synchronized (job) {
+            if (job.state == State.QUEUED || job.state == State.RUNNING) {
+                job.state = State.CANCELLED;
+                job.finishedAt = System.currentTimeMillis();
+            }
+        }
+        remove(job);
+        return true;
+    }
+
+    /**
+     * 만료된 작업(끝난 지 ttl이 지난 작업)의 결과 파일을 지우고 목록에서 뺍니다.
+     */
+    @Scheduled(fixedDelayString = "${mes.export.jobs.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (ExportJob job : jobs.values()) {
+            if (job.finishedAt > 0 && now >= job.finishedAt + ttlMillis) {
+                remove(job);
+                log.info("만료된 Export 작업 정리 - tenant={}, jobId={}", job.tenantId, job.id);
+            }
+        }
+    }
+
+    private void remove(ExportJob job) {
+        jobs.remove(job.id);
+        if (job.file != null && job.state != State.RUNNING) {
+            deleteQuietly(job.file);
+        }
+    }
+
+    private void run(ExportJob job, OffsetDateTime from, OffsetDateTime to, String eventType, String source,
+                     String requestId, long limit) {
+        synchronized (job) {
+            if (job.state != State.QUEUED) {
+                return;
+            }
+            job.state = State.RUNNING;
+            job.startedAt = System.currentTimeMillis();
+        }
+        Path dir = baseDir.resolve(job.tenantId);
+        Path part = dir.resolve(job.id + ".csv.gz.part");
+        Path file = dir.resolve(job.id + ".csv.gz");
+        TenantContext.setTenant(job.tenantId, "export-job");
+        try {
+            Files.createDirectories(dir);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(part), 64 * 1024), StandardCharsets.UTF_8), 64 * 1024)) {
+                RawLogCsvWriter csv = new RawLogCsvWriter(writer, false);
+                csv.writeHeader();
+                rawLogService.exportLogs(from, to, eventType, source, requestId, limit, false, row -> {
+                    if (job.cancelled) {
+                        throw new IOException("cancelled");
+                    }
+                    csv.writeRow(row);
+                    job.rowsWritten++;
+                });
+            }
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finish(job, State.COMPLETED, file, null);
+        } catch (Exception e) {
+            deleteQuietly(part);
+            finish(job, job.cancelled ? State.CANCELLED : State.FAILED, null, e.getMessage());
+            if (!job.cancelled) {
+                log.warn("Export 작업 실패 - tenant={}, jobId={}, 원인={}", job.tenantId, job.id, e.getMessage());
+            }
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    private void finish(ExportJob job, State state, Path file, String error) {
+        synchronized (job) {
+            if (job.state == State.RUNNING) {
+                job.state = state;
+                job.error = error;
+                job.finishedAt = System.currentTimeMillis();
+                if (file != null) {
+                    job.file = file;
+                    job.fileBytes = sizeOf(file);
+                }
+            }
+        }
+        if (job.cancelled && file != null) {
+            // 끝나기 직전에 취소되었으면 방금 만든 파일도 지웁니다.
+            deleteQuietly(file);
+        }
+        resultCounters.computeIfAbsent(job.tenantId + "|" + state, k -> Counter.builder("mes.export.jobs")
+                .description("끝난 비동기 Export 작업 수")
+                .tag("tenant", job.tenantId).tag("result", state.name().toLowerCase())
+                .register(meterRegistry)).increment();
+        log.info("Export 작업 종료 - tenant={}, jobId={}, state={}, rows={}", job.tenantId, job.id, state, job.rowsWritten);
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Export 파일 삭제 실패 - file={}, 원인={}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 작업 하나의 상태. 작업 스레드가 고치고 요청 스레드는 읽기만 합니다.
+     */
+    public final class ExportJob {
+        private final String id;
+        private final String tenantId;
+        private final String userId;
+        private final long createdAt;
+        private volatile State state = State.QUEUED;
+        private volatile long rowsWritten;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile Path file;
+        private volatile long fileBytes;
+        private volatile String error;
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+
+        private ExportJob(String id, String tenantId, String userId, long createdAt) {
+            this.id = id;
+            this.tenantId = tenantId;
+            this.userId = userId;
+            this.createdAt = createdAt;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public State state() {
+            return state;
+        }
+
+        /**
+         * 다운로드할 결과 파일(완료 전이면 null).
+         */
+        public Path file() {
+            return state == State.COMPLETED ? file : null;
+        }
+
+        /**
+         * 상태 조회 응답 본문.
+         */
+        public Map<String, Object> toStatus() {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("job_id", id);
+            body.put("state", state.name());
+            body.put("rows_written", rowsWritten);
+            body.put("user_id", userId);
+            body.put("created_at", Instant.ofEpochMilli(createdAt).toString());
+            body.put("started_at", startedAt > 0 ? Instant.ofEpochMilli(startedAt).toString() : null);
+            body.put("finished_at", finishedAt > 0 ? Instant.ofEpochMilli(finishedAt).toString() : null);
+            body.put("expires_at", finishedAt > 0 ? Instant.ofEpochMilli(finishedAt + ttlMillis).toString() : null);
+            body.put("file_bytes", state == State.COMPLETED ? fileBytes : null);
+            body.put("error", error);
+            return body;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package kr.co.mes.support;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 초보자용 상세 주석:
+ * - /actuator/health의 rawLogIndex 항목입니다. 기동 시 EXPLAIN으로 확인한 쿼리 모양별 결과를 보여 줍니다.
+ * - 전체 스캔으로 떨어지는 모양이 있으면 상태를 DEGRADED로 표시합니다(서비스는 계속 동작하므로 HTTP 200 유지).
+ * - 상세(실행 계획)는 show-details=when-authorized라 인증된 호출에만 보입니다.
+ *   관리자는 GET /api/admin/raw-logs/query-plans에서 같은 내용을 확인합니다.
+ */
+@Component
+@Profile("local")
+public class RawLogIndexHealthIndicator implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED", "some raw-log query shapes use full table scans");
+
+    private final RawLogIndexManager indexManager;
+
+    public RawLogIndexHealthIndicator(RawLogIndexManager indexManager) {
+        this.indexManager = indexManager;
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Map<String, RawLogIndexManager.ShapeCheck>> report = indexManager.report();
+        if (report.isEmpty()) {
+            return Health.unknown().withDetail("reason", "not verified yet").build();
+        }
+        List<String> fullScans = new ArrayList<>();
+        Map<String, Object> tenants = new LinkedHashMap<>();
+        report.forEach((tenant, shapes) -> {
+            Map<String, Object> details = new LinkedHashMap<>();
+            shapes.forEach((name, check) -> {
+                Map<String, Object> d = new LinkedHashMap<>();
+                d.put("type", check.accessType());
+                d.put("key", check.key());
+                d.put("rows", check.estimatedRows());
+                d.put("expected_index_usable", check.expectedIndexUsable());
+                if (check.error() != null) {
+                    d.put("error", check.error());
+                }
+                details.put(name, d);
+                if (check.fullScan()) {
+                    fullScans.add(tenant + ":" + name);
+                }
+            });
+            tenants.put(tenant, details);
+        });
+        return Health.status(fullScans.isEmpty() ? Status.UP : DEGRADED)
+                .withDetail("full_scan_shapes", fullScans)
+                .withDetail("tenants", tenants)
+                .build();
+    }
+}
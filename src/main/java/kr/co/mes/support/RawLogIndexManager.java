@@ -0,0 +1,178 @@
+package kr.co.mes.support;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 관리자 목록/Export가 지원하는 필터 조합(쿼리 모양)과, 그 조합에 맞는 raw_ingest_log 인덱스를 한곳에서 선언합니다.
+ *   모든 모양은 ORDER BY received_at DESC, id DESC이므로, 등호 필터 컬럼 뒤에 received_at을 붙인 복합 인덱스를 둡니다.
+ *   (InnoDB 보조 인덱스에는 PK(id)가 함께 저장되어 id 순서까지 인덱스로 해결됩니다)
+ * - 기동 시(RawLogTableInitializer가 테이블을 만든 뒤) 테넌트 DB마다 인덱스를 만들고, 모양마다 EXPLAIN을 실행해
+ *   기대 인덱스를 쓸 수 없는 모양이 있는지 확인합니다.
+ * - 작은 테이블에서는 옵티마이저가 일부러 전체 스캔(type=ALL)을 고르기도 하므로, 판정은 데이터 분포에 덜 흔들리는 기준을 씁니다.
+ *   1) 기대 인덱스가 possible_keys에 없으면(인덱스 누락/컬럼 불일치) 전체 스캔으로 봅니다.
+ *   2) type=ALL이라도 예상 행 수가 full-scan-min-rows 이하이면 정상으로 봅니다(작은 테이블).
+ *   EXPLAIN 범위는 데이터가 없을 과거의 1분 구간이라 선택도가 높게 잡힙니다.
+ * - 결과는 report()(헬스 체크 rawLogIndex)와 지표 mes.raw_log.query_shape.full_scan{tenant,shape}(1이면 전체 스캔)으로 봅니다.
+ * - 새 필터를 목록/Export에 추가하면 여기 SHAPES와 INDEXES도 함께 추가해야 합니다.
+ */
+@Component
+@Profile("local")
+public class RawLogIndexManager {
+
+    private static final Logger log = LoggerFactory.getLogger(RawLogIndexManager.class);
+
+    /**
+     * 인덱스 하나(이름, 컬럼 목록).
+     */
+    public record IndexDef(String name, String columns) {}
+
+    /**
+     * 쿼리 모양 하나: 등호 필터 컬럼 + received_at 범위 조건 사용 여부 + 이 모양이 써야 할 인덱스.
+     */
+    public record QueryShape(String name, List<String> equalityColumns, boolean timeRange, String expectedIndex) {}
+
+    /**
+     * EXPLAIN 결과(선택된 접근 방식/인덱스/예상 행 수, 기대 인덱스 사용 가능 여부).
+     * fullScan이면 테이블 전체를 읽게 되는 모양입니다.
+     */
+    public record ShapeCheck(String shape, String accessType, String key, Long estimatedRows,
+                             boolean expectedIndexUsable, boolean fullScan, String error) {}
+
+    /**
+     * EXPLAIN에 쓰는 범위(데이터가 없을 과거 1분). 최근 구간을 쓰면 작은 테이블에서 대부분의 행이 걸려 전체 스캔이 선택됩니다.
+     */
+    private static final Instant PROBE_FROM = Instant.parse("2000-01-01T00:00:00Z");
+
+    static final List<IndexDef> INDEXES = List.of(
+            new IndexDef("idx_raw_log_received_at", "received_at"),
+            new IndexDef("idx_raw_log_event_time", "event_type, received_at"),
+            new IndexDef("idx_raw_log_source_time", "source, received_at"),
+            new IndexDef("idx_raw_log_event_source_time", "event_type, source, received_at"),
+            new IndexDef("idx_raw_log_request_id", "request_id"));
+
+    /**
+     * 목록/Export에서 지원하는 필터 조합. request_id는 거의 유일한 값이라 다른 필터와 함께 와도 request_id 인덱스로 찾습니다.
+     */
+    static final List<QueryShape> SHAPES = List.of(
+            new QueryShape("time", List.of(), true, "idx_raw_log_received_at"),
+            new QueryShape("event_type", List.of("event_type"), true, "idx_raw_log_event_time"),
+            new QueryShape("source", List.of("source"), true, "idx_raw_log_source_time"),
+            new QueryShape("event_type+source", List.of("event_type", "source"), true, "idx_raw_log_event_source_time"),
+            new QueryShape("request_id", List.of("request_id"), false, "idx_raw_log_request_id"));
+
+    private final MeterRegistry meterRegistry;
+    private final long fullScanMinRows;
+    private final Map<String, Map<String, ShapeCheck>> checks = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> fullScanGauges = new ConcurrentHashMap<>();
+
+    public RawLogIndexManager(MeterRegistry meterRegistry,
+                              @Value("${mes.index-check.full-scan-min-rows:10000}") long fullScanMinRows) {
+        this.meterRegistry = meterRegistry;
+        this.fullScanMinRows = Math.max(fullScanMinRows, 0);
+    }
+
+    /**
+     * 선언된 인덱스를 만듭니다(없으면 생성, 이미 있으면 무시).
+     */
+    public void ensureIndexes(JdbcTemplate jdbcTemplate, String tenantName) {
+        for (IndexDef index : INDEXES) {
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + index.name() + " ON raw_ingest_log(" + index.columns() + ")");
+        }
+        log.info("raw_ingest_log 인덱스 준비 완료 - tenant={}, indexes={}", tenantName, INDEXES.size());
+    }
+
+    /**
+     * 쿼리 모양마다 EXPLAIN을 실행해 결과를 기록합니다. 전체 스캔인 모양은 경고 로그를 남깁니다.
+     * - 값은 실제로 없을 법한 더미 값과 과거 1분 범위를 씁니다(데이터가 아니라 계획만 확인).
+     */
+    public Map<String, ShapeCheck> verify(JdbcTemplate jdbcTemplate, String tenantName) {
+        Map<String, ShapeCheck> result = new LinkedHashMap<>();
+        for (QueryShape shape : SHAPES) {
+            ShapeCheck check = explain(jdbcTemplate, shape);
+            result.put(shape.name(), check);
+            fullScanGauge(tenantName, shape.name()).set(check.fullScan() ? 1 : 0);
+            if (check.fullScan()) {
+                log.warn("쿼리 모양이 전체 스캔으로 실행됨 - tenant={}, shape={}, expectedIndexUsable={}, type={}, key={}, rows={}",
+                        tenantName, shape.name(), check.expectedIndexUsable(), check.accessType(), check.key(),
+                        check.estimatedRows());
+            } else if (check.error() != null) {
+                log.warn("쿼리 모양 EXPLAIN 실패 - tenant={}, shape={}, 원인={}", tenantName, shape.name(), check.error());
+            }
+        }
+        checks.put(tenantName, result);
+        return result;
+    }
+
+    /**
+     * 테넌트별 마지막 확인 결과.
+     */
+    public Map<String, Map<String, ShapeCheck>> report() {
+        return Map.copyOf(checks);
+    }
+
+    private ShapeCheck explain(JdbcTemplate jdbcTemplate, QueryShape shape) {
+        StringBuilder sql = new StringBuilder("""
+                EXPLAIN SELECT id, tenant_id, source, event_type, received_at, request_id
+                FROM raw_ingest_log
+                WHERE 1=1
+                """);
+        List<Object> params = new ArrayList<>();
+        if (shape.timeRange()) {
+            sql.append(" AND received_at >= ? AND received_at <= ? ");
+            params.add(Timestamp.from(PROBE_FROM));
+            params.add(Timestamp.from(PROBE_FROM.plus(1, ChronoUnit.MINUTES)));
+        }
+        for (String column : shape.equalityColumns()) {
+            sql.append(" AND ").append(column).append(" = ? ");
+            params.add("__explain__");
+        }
+        sql.append(" ORDER BY received_at DESC, id DESC LIMIT 50");
+        try {
+            List<Map<String, Object>> plan = jdbcTemplate.queryForList(sql.toString(), params.toArray());
+            if (plan.isEmpty()) {
+                return new ShapeCheck(shape.name(), null, null, null, false, false, "empty plan");
+            }
+            Map<String, Object> row = plan.get(0);
+            String type = (String) row.get("type");
+            Long rows = row.get("rows") instanceof Number n ? n.longValue() : null;
+            String possibleKeys = (String) row.get("possible_keys");
+            boolean usable = possibleKeys != null
+                    && List.of(possibleKeys.split(",")).contains(shape.expectedIndex());
+            boolean largeScan = "ALL".equalsIgnoreCase(type) && (rows == null || rows > fullScanMinRows);
+            return new ShapeCheck(shape.name(), type, (String) row.get("key"), rows, usable, !usable || largeScan, null);
+        } catch (Exception e) {
+            return new ShapeCheck(shape.name(), null, null, null, false, false, e.getMessage());
+        }
+    }
+
+    private AtomicInteger fullScanGauge(String tenantName, String shape) {
+        return fullScanGauges.computeIfAbsent(tenantName + "|" + shape, k -> {
+            AtomicInteger value = new AtomicInteger();
+            Gauge.builder("mes.raw_log.query_shape.full_scan", value, AtomicInteger::get)
+                    .description("목록/Export 쿼리 모양이 전체 스캔으로 실행되는지(1이면 전체 스캔)")
+                    .tag("tenant", tenantName)
+                    .tag("shape", shape)
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+}
@@ -0,0 +1,174 @@
+package kr.co.mes.support;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 초보자용 상세 주석:
+ * - 대시보드용 "분/시간 단위 event_type·source별 건수/바이트" 집계 테이블(raw_log_rollup_minute/hour)을 다룹니다.
+ * - 수집 경로가 새로 저장된 행을 Deltas에 모았다가 버킷별로 한 번씩 배치 upsert합니다.
+ *   (event_count = event_count + ?, 같은 버킷의 여러 행은 한 번의 upsert로 합쳐짐)
+ *   배치/write-behind/스풀 재생은 INSERT와 같은 트랜잭션에서, 단건 수집은 RawLogRollupAccumulator가 메모리에 모아
+ *   주기마다 따로 짧은 트랜잭션으로 반영합니다(인기 source의 단건 수집이 집계 행 잠금에서 줄 서지 않게).
+ * - 버킷은 received_at을 UTC 기준 분/시간으로 잘라 정하며, 원시 로그 정리(RawLogCleanupScheduler)와 무관하게 남습니다.
+ * - 여러 트랜잭션이 같은 버킷 행을 잠글 때 교착되지 않도록 항상 (버킷, event_type, source) 순서로 upsert합니다.
+ */
+public final class RawLogRollup {
+
+    /**
+     * 집계 단위. 각 단위는 별도 테이블을 씁니다.
+     */
+    public enum Granularity {
+        MINUTE("raw_log_rollup_minute", ChronoUnit.MINUTES),
+        HOUR("raw_log_rollup_hour", ChronoUnit.HOURS);
+
+        private final String table;
+        private final ChronoUnit unit;
+
+        Granularity(String table, ChronoUnit unit) {
+            this.table = table;
+            this.unit = unit;
+        }
+
+        public String table() {
+            return table;
+        }
+
+        public Instant bucketOf(Instant at) {
+            return at.truncatedTo(unit);
+        }
+
+        /**
+         * 요청 문자열(minute/hour)을 단위로 바꿉니다. 모르는 값이면 IllegalArgumentException.
+         */
+        public static Granularity parse(String value) {
+            return Granularity.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private RawLogRollup() {
+    }
+
+    /**
+     * 집계 테이블 DDL (테넌트 DB마다 RawLogTableInitializer가 실행).
+     * - bucket_start는 첫 TIMESTAMP 컬럼이라 기본값을 명시해 ON UPDATE 자동 갱신이 붙지 않게 합니다.
+     */
+    public static String createTableSql(Granularity granularity) {
+        return """
+                CREATE TABLE IF NOT EXISTS %s (
+                  bucket_start TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                  event_type VARCHAR(80) NOT NULL,
+                  source VARCHAR(50) NOT NULL,
+                  event_count BIGINT NOT NULL,
+                  payload_bytes BIGINT NOT NULL,
+                  PRIMARY KEY (bucket_start, event_type, source)
+                )
+                """.formatted(granularity.table());
+    }
+
+    /**
+     * 기존 원시 로그(id <= maxId)로 집계 테이블을 한 번 채우는 SQL. 집계 테이블을 처음 만들 때만 사용합니다.
+     */
+    public static String backfillSql(Granularity granularity) {
+        int seconds = granularity == Granularity.MINUTE ? 60 : 3600;
+        return """
+                INSERT INTO %s (bucket_start, event_type, source, event_count, payload_bytes)
+                SELECT FROM_UNIXTIME(FLOOR(UNIX_TIMESTAMP(received_at) / %d) * %d),
+                       COALESCE(event_type, ''), COALESCE(source, ''), COUNT(*), COALESCE(SUM(payload_size), 0)
+                FROM raw_ingest_log
+                WHERE id <= ? AND received_at IS NOT NULL
+                GROUP BY 1, 2, 3
+                ON DUPLICATE KEY UPDATE event_count = event_count + VALUES(event_count),
+                                        payload_bytes = payload_bytes + VALUES(payload_bytes)
+                """.formatted(granularity.table(), seconds, seconds);
+    }
+
+    /**
+     * 버킷 키. 정렬 순서가 곧 upsert(잠금) 순서입니다.
+     */
+    private record Key(Instant bucket, String eventType, String source) {
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::bucket)
+                .thenComparing(Key::eventType)
+                .thenComparing(Key::source);
+    }
+
+    /**
+     * 한 번의 저장(단건/배치)에서 새로 들어간 행들의 버킷별 증가분.
+     */
+    public static final class Deltas {
+
+        private final Map<Key, long[]> minutes = new TreeMap<>(Key.ORDER);
+
+        /**
+         * 새로 저장된 행 하나를 더합니다. payloadSize를 모르면(스풀 재생 등) 건수만 셉니다.
+         */
+        public void add(Instant receivedAt, String eventType, String source, Integer payloadSize) {
+            Key key = new Key(Granularity.MINUTE.bucketOf(receivedAt),
+                    eventType == null ? "" : eventType, source == null ? "" : source);
+            long[] sum = minutes.computeIfAbsent(key, k -> new long[2]);
+            sum[0]++;
+            sum[1] += payloadSize == null ? 0 : payloadSize;
+        }
+
+        public boolean isEmpty() {
+            return minutes.isEmpty();
+        }
+
+        /**
+         * 다른 증가분을 이 객체에 더합니다(반영에 실패한 증가분을 다음 주기로 되돌릴 때 사용).
+         */
+        public void addAll(Deltas other) {
+            other.minutes.forEach((key, sum) -> {
+                long[] mine = minutes.computeIfAbsent(key, k -> new long[2]);
+                mine[0] += sum[0];
+                mine[1] += sum[1];
+            });
+        }
+
+        /**
+         * 분/시간 테이블에 배치 upsert합니다. 호출자의 트랜잭션(커넥션)을 그대로 사용합니다.
+         */
+        public void upsert(Connection connection) throws SQLException {
+            if (minutes.isEmpty()) {
+                return;
+            }
+            Map<Key, long[]> hours = new TreeMap<>(Key.ORDER);
+            for (Map.Entry<Key, long[]> e : minutes.entrySet()) {
+                Key k = e.getKey();
+                long[] sum = hours.computeIfAbsent(
+                        new Key(Granularity.HOUR.bucketOf(k.bucket()), k.eventType(), k.source()), x -> new long[2]);
+                sum[0] += e.getValue()[0];
+                sum[1] += e.getValue()[1];
+            }
+            upsert(connection, Granularity.MINUTE, minutes);
+            upsert(connection, Granularity.HOUR, hours);
+        }
+
+        private static void upsert(Connection connection, Granularity granularity, Map<Key, long[]> rows)
+                throws SQLException {
+            try (PreparedStatement ps = connection.prepareStatement("""
+                    INSERT INTO %s (bucket_start, event_type, source, event_count, payload_bytes)
+                    VALUES (?, ?, ?, ?, ?)
+                    ON DUPLICATE KEY UPDATE event_count = event_count + VALUES(event_count),
+                                            payload_bytes = payload_bytes + VALUES(payload_bytes)
+                    """.formatted(granularity.table()))) {
+                for (Map.Entry<Key, long[]> e : rows.entrySet()) {
+                    ps.setTimestamp(1, Timestamp.from(e.getKey().bucket()));
+                    ps.setString(2, e.getKey().eventType());
+                    ps.setString(3, e.getKey().source());
+                    ps.setLong(4, e.getValue()[0]);
+                    ps.setLong(5, e.getValue()[1]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package kr.co.mes.support;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 초보자용 상세 주석:
+ * - 단건 수집(RawLogService.save)의 집계 증가분을 테넌트별로 메모리에 모았다가, flush-interval-ms마다
+ *   테넌트 DB에 짧은 별도 트랜잭션 하나로 upsert합니다.
+ *   INSERT 트랜잭션 안에서 집계 행을 갱신하면 같은 (분, event_type, source) 행의 잠금 때문에
+ *   인기 source의 수집 커밋이 한 줄로 서게 되므로, 수집 트랜잭션에서는 집계 행을 잠그지 않습니다.
+ * - 바깥 트랜잭션 안에서 호출되면 커밋된 뒤에만 더합니다(롤백된 행은 집계하지 않음).
+ * - 반영에 실패하면 증가분을 되돌려 놓고 다음 주기에 다시 시도합니다. 정상 종료 시에는 남은 증가분을 반영합니다.
+ * - 트레이드오프: 프로세스가 비정상 종료되면 마지막 주기(기본 1초)의 단건 집계가 빠질 수 있습니다(원시 로그는 그대로).
+ */
+@Component
+public class RawLogRollupAccumulator {
+
+    private static final Logger log = LoggerFactory.getLogger(RawLogRollupAccumulator.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, RawLogRollup.Deltas> pending = new ConcurrentHashMap<>();
+
+    public RawLogRollupAccumulator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 새로 저장된 행 하나를 집계 대기열에 더합니다.
+     */
+    public void add(String tenantId, Instant receivedAt, String eventType, String source, Integer payloadSize) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addNow(tenantId, receivedAt, eventType, source, payloadSize);
+                }
+            });
+            return;
+        }
+        addNow(tenantId, receivedAt, eventType, source, payloadSize);
+    }
+
+    private void addNow(String tenantId, Instant receivedAt, String eventType, String source, Integer payloadSize) {
+        // compute는 키별로 원자적이라 flush의 remove와 겹쳐도 증가분이 사라지지 않습니다.
+        pending.compute(tenantId, (tenant, deltas) -> {
+            RawLogRollup.Deltas d = deltas == null ? new RawLogRollup.Deltas() : deltas;
+            d.add(receivedAt, eventType, source, payloadSize);
+            return d;
+        });
+    }
+
+    /**
+     * 모인 증가분을 테넌트별로 반영합니다 (이전 실행이 끝난 뒤부터 계산).
+     */
+    @Scheduled(fixedDelayString = "${mes.rollup.flush-interval-ms:1000}")
+    public void flush() {
+        for (String tenant : List.copyOf(pending.keySet())) {
+            RawLogRollup.Deltas deltas = pending.remove(tenant);
+            if (deltas == null || deltas.isEmpty()) {
+                continue;
+            }
+            // 백그라운드 스레드이므로 라우팅 DataSource가 올바른 테넌트 DB를 고르도록 컨텍스트를 직접 설정합니다.
+            TenantContext.setTenant(tenant, "rollup-flush");
+            try {
+                jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    boolean autoCommit = connection.getAutoCommit();
+                    connection.setAutoCommit(false);
+                    try {
+                        deltas.upsert(connection);
+                        connection.commit();
+                    } catch (SQLException | RuntimeException e) {
+                        connection.rollback();
+                        throw e;
+                    } finally {
+                        connection.setAutoCommit(autoCommit);
+                    }
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                pending.merge(tenant, deltas, (current, failed) -> {
+                    current.addAll(failed);
+                    return current;
+                });
+                log.warn("집계 반영 보류, 다음 주기에 재시도 - tenant={}, 원인={}", tenant, e.getMessage());
+            } finally {
+                TenantContext.clear();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (!pending.isEmpty()) {
+            log.error("종료 시 반영하지 못한 집계 증가분 남음 - tenants={}", pending.keySet());
+        }
+    }
+}
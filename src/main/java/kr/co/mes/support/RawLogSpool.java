@@ -0,0 +1,653 @@
+package kr.co.mes.support;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import kr.co.mes.crypto.CryptoKeyRegistry;
+import kr.co.mes.service.RawLogService.EncryptedRawLog;
+import kr.co.mes.service.RawLogService.RawLogEntry;
+
+/**
+ * 초보자용 상세 주석:
+ * - DB 장애/점검 중에도 수집을 받기 위한 로컬 디스크 스풀(write-ahead)입니다. (mes.ingest.spool.enabled=true 일 때만 동작)
+ * - 테넌트마다 디렉터리를 두고, 고정 크기 세그먼트 파일(segment-000..001.spool)을 메모리 맵으로 열어 뒤에 붙여 씁니다(append-only).
+ * - 디스크에는 이미 암호화된 페이로드(암호문/nonce/keyId)와 메타데이터만 기록합니다. 평문은 절대 쓰지 않습니다.
+ * - 레코드 형식: [길이 int][CRC32 int][본문]. 길이를 마지막에 써서 "커밋 표시"로 사용하므로,
+ *   쓰다 만 레코드(프로세스 중단)는 재시작 시 길이 0 또는 CRC 불일치로 걸러집니다.
+ * - 재생 위치는 cursor 파일(세그먼트 번호 + 오프셋)에 저장하며, 다 읽은 세그먼트는 커서를 먼저 저장한 뒤 삭제합니다.
+ *   삭제는 최선 노력입니다: Windows에서는 아직 매핑이 남은 파일(직전 쓰기 세그먼트)을 지울 수 없으므로,
+ *   실패하면 목록에 남겨 두고 다음 커밋/기록 때 다시 지웁니다(커서는 이미 앞으로 갔으므로 다시 재생되지 않음).
+ * - 읽기는 현재 쓰는 세그먼트만 쓰기 맵을 쓰고, 닫힌 세그먼트는 맵 없이 FileChannel로 읽어 새 매핑을 만들지 않습니다.
+ * - 재생기가 영구 오류(제약 위반 등)로 저장할 수 없는 레코드는 quarantine()으로 quarantine.dlq에 옮겨(암호문 그대로)
+ *   뒤따르는 이벤트의 재생을 막지 않게 합니다.
+ * - 재생은 "최소 한 번" 보장입니다: DB 저장 후 cursor 기록 전에 중단되면 재시작 시 같은 배치가 다시 저장될 수 있습니다.
+ */
+@Component
+@Profile("local")
+public class RawLogSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(RawLogSpool.class);
+
+    private static final int RECORD_HEADER_BYTES = 8;
+    /**
+     * 레코드 형식 버전. 2부터 멱등 키, 3부터 압축 방식/사전 id가 추가되었고,
+     * 4부터 암호문/nonce를 Base64 대신 원본 바이트로 기록합니다. 이전 버전 레코드도 그대로 읽습니다.
+     */
+    private static final byte FORMAT_VERSION = 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String CURSOR_FILE = "cursor";
+    private static final String QUARANTINE_FILE = "quarantine.dlq";
+
+    private final boolean enabled;
+    private final Path baseDir;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final boolean syncWrites;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TenantSpool> spools = new HashMap<>();
+    private final Map<String, Counter> appendedCounters = new HashMap<>();
+    private final Map<String, Counter> quarantinedCounters = new HashMap<>();
+
+    public RawLogSpool(MeterRegistry meterRegistry,
+                       @Value("${mes.ingest.spool.enabled:false}") boolean enabled,
+                       @Value("${mes.ingest.spool.dir:${java.io.tmpdir}/mes-spool}") String dir,
+                       @Value("${mes.ingest.spool.segment-mb:64}") int segmentMb,
+                       @Value("${mes.ingest.spool.max-mb:1024}") long maxMb,
+                       @Value("${mes.ingest.spool.sync-writes:false}") boolean syncWrites) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.baseDir = Paths.get(dir);
+        this.segmentBytes = (int) Math.min(Math.max(segmentMb, 1) * 1024L * 1024L, Integer.MAX_VALUE);
+        this.maxBytes = Math.max(maxMb, 1) * 1024L * 1024L;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * 스풀 사용 여부.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 아직 DB로 재생하지 못한 이벤트가 남아 있는지.
+     * - 남아 있으면 새 이벤트도 DB를 거치지 않고 스풀 뒤에 붙입니다(순서 유지 + DB 장애 중 지연 최소화).
+     */
+    public boolean hasBacklog(String tenantId) {
+        TenantSpool spool = spools.get(tenantId);
+        return spool != null && spool.pending.get() > 0;
+    }
+
+    /**
+     * 재생 대기 중인 이벤트 수.
+     */
+    public long pending(String tenantId) {
+        TenantSpool spool = spools.get(tenantId);
+        return spool == null ? 0 : spool.pending.get();
+    }
+
+    /**
+     * 암호화된 이벤트를 스풀 끝에 붙입니다. 전부 쓰거나, 공간이 부족하면 하나도 쓰지 않습니다.
+     *
+     * @throws IOException 스풀이 꺼져 있거나, 용량(max-mb)을 넘거나, 디스크 쓰기에 실패한 경우
+     */
+    public void append(String tenantId, List<EncryptedRawLog> logs) throws IOException {
+        TenantSpool spool = spools.get(tenantId);
+        if (spool == null) {
+            throw new IOException("spool is not available for tenant " + tenantId);
+        }
+        List<byte[]> records = new ArrayList<>(logs.size());
+        long total = 0;
+        for (EncryptedRawLog encrypted : logs) {
+            byte[] record = serialize(encrypted);
+            if (record.length + RECORD_HEADER_BYTES > segmentBytes) {
+                throw new IOException("spool record exceeds segment size: " + record.length);
+            }
+            records.add(record);
+            total += record.length + RECORD_HEADER_BYTES;
+        }
+        spool.append(records, total);
+        appendedCounters.get(tenantId).increment(records.size());
+    }
+
+    /**
+     * 재생 위치부터 최대 max건을 읽습니다(위치는 commit() 전까지 움직이지 않습니다).
+     */
+    public Batch read(String tenantId, int max) throws IOException {
+        TenantSpool spool = spools.get(tenantId);
+        if (spool == null) {
+            return new Batch(List.of(), 0, 0);
+        }
+        return spool.read(max);
+    }
+
+    /**
+     * read()로 읽은 배치를 DB에 저장한 뒤 호출해 재생 위치를 앞으로 옮깁니다.
+     */
+    public void commit(String tenantId, Batch batch) throws IOException {
+        TenantSpool spool = spools.get(tenantId);
+        if (spool != null && !batch.logs().isEmpty()) {
+            spool.commit(batch);
+        }
+    }
+
+    /**
+     * 재생할 수 없는 레코드(영구 오류)를 격리 파일 끝에 붙입니다. 스풀 레코드와 같은 형식이라 나중에 조사/복구할 수 있습니다.
+     * - 재생 위치는 바꾸지 않으므로, 호출자는 격리 후 배치를 commit()해야 합니다.
+     */
+    public void quarantine(String tenantId, List<EncryptedRawLog> logs) throws IOException {
+        TenantSpool spool = spools.get(tenantId);
+        if (spool == null) {
+            throw new IOException("spool is not available for tenant " + tenantId);
+        }
+        List<byte[]> records = new ArrayList<>(logs.size());
+        for (EncryptedRawLog encrypted : logs) {
+            records.add(serialize(encrypted));
+        }
+        spool.quarantine(records);
+        quarantinedCounters.get(tenantId).increment(records.size());
+    }
+
+    /**
+     * read() 결과: 이벤트 목록과, 이 배치를 커밋하면 옮겨 갈 재생 위치.
+     */
+    public record Batch(List<EncryptedRawLog> logs, long segment, int offset) {}
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            TenantSpool spool = new TenantSpool(baseDir.resolve(tenant));
+            spool.recover();
+            spools.put(tenant, spool);
+            Gauge.builder("mes.ingest.spool.pending", spool.pending, AtomicLong::get)
+                    .description("스풀에 남아 DB 재생을 기다리는 이벤트 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+            appendedCounters.put(tenant, Counter.builder("mes.ingest.spool.appended")
+                    .description("DB 대신 스풀에 기록한 이벤트 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+            quarantinedCounters.put(tenant, Counter.builder("mes.ingest.spool.quarantined")
+                    .description("영구 오류로 재생하지 못하고 격리 파일로 옮긴 이벤트 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+            if (spool.pending.get() > 0) {
+                log.warn("스풀에 재생 대기 이벤트 있음 - tenant={}, pending={}", tenant, spool.pending.get());
+            }
+        }
+        log.info("수집 스풀 시작 - dir={}, segmentBytes={}, maxBytes={}", baseDir, segmentBytes, maxBytes);
+    }
+
+    @PreDestroy
+    public void close() {
+        spools.values().forEach(TenantSpool::flush);
+    }
+
+    /**
+     * 레코드 본문: 버전 + 메타데이터 + 암호문. (문자열은 길이 int + UTF-8, 암호문/nonce는 길이 int + 바이트, null은 길이 -1)
+     */
+    private static byte[] serialize(EncryptedRawLog encrypted) {
+        RawLogEntry entry = encrypted.entry();
+        CryptoKeyRegistry.EncryptedPayload enc = encrypted.encrypted();
+        byte[][] fields = {
+                utf8(entry.source()), utf8(entry.eventType()), utf8(entry.payloadSha256()),
+                utf8(entry.requestId()), utf8(entry.userId()), utf8(entry.role()),
+                enc.cipherText(), enc.nonce(), utf8(enc.keyId()), utf8(enc.alg()),
+                utf8(entry.idempotencyKey()), utf8(enc.codec()),
+                utf8(enc.dictId() == null ? null : Long.toString(enc.dictId()))
+        };
+        int size = 1 + Long.BYTES + Integer.BYTES;
+        for (byte[] field : fields) {
+            size += Integer.BYTES + (field == null ? 0 : field.length);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        Instant receivedAt = entry.receivedAt().toInstant();
+        buf.put(FORMAT_VERSION);
+        buf.putLong(receivedAt.getEpochSecond());
+        buf.putInt(receivedAt.getNano());
+        for (byte[] field : fields) {
+            if (field == null) {
+                buf.putInt(-1);
+            } else {
+                buf.putInt(field.length);
+                buf.put(field);
+            }
+        }
+        return buf.array();
+    }
+
+    private static EncryptedRawLog deserialize(ByteBuffer buf) throws IOException {
+        byte version = buf.get();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("unsupported spool record version: " + version);
+        }
+        OffsetDateTime receivedAt = Instant.ofEpochSecond(buf.getLong(), buf.getInt()).atOffset(ZoneOffset.UTC);
+        String source = readString(buf);
+        String eventType = readString(buf);
+        String sha = readString(buf);
+        String requestId = readString(buf);
+        String userId = readString(buf);
+        String role = readString(buf);
+        byte[] cipher = version >= 4 ? readBytes(buf) : base64(readString(buf));
+        byte[] nonce = version >= 4 ? readBytes(buf) : base64(readString(buf));
+        String keyId = readString(buf);
+        String alg = readString(buf);
+        String idempotencyKey = version >= 2 ? readString(buf) : null;
+        String codec = version >= 3 ? readString(buf) : null;
+        String dictId = version >= 3 ? readString(buf) : null;
+        CryptoKeyRegistry.EncryptedPayload enc = new CryptoKeyRegistry.EncryptedPayload(cipher, nonce, keyId, alg,
+                codec, dictId == null ? null : Long.valueOf(dictId));
+        RawLogEntry entry = new RawLogEntry(source, eventType, null, sha, receivedAt, requestId, userId, role,
+                idempotencyKey);
+        return new EncryptedRawLog(entry, enc);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = readBytes(buf);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] base64(String value) {
+        return value == null ? null : Base64.getDecoder().decode(value);
+    }
+
+    /**
+     * pos 위치의 레코드가 온전하면 다음 레코드 위치를, 아니면(끝/쓰다 만 레코드) -1을 반환합니다.
+     */
+    private static int nextRecord(ByteBuffer buf, int pos) {
+        if (pos + RECORD_HEADER_BYTES > buf.capacity()) {
+            return -1;
+        }
+        int length = buf.getInt(pos);
+        if (length <= 0 || length > buf.capacity() - pos - RECORD_HEADER_BYTES) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().position(pos + RECORD_HEADER_BYTES).limit(pos + RECORD_HEADER_BYTES + length));
+        if ((int) crc.getValue() != buf.getInt(pos + 4)) {
+            return -1;
+        }
+        return pos + RECORD_HEADER_BYTES + length;
+    }
+
+    /**
+     * 세그먼트 하나에서 레코드 본문을 읽는 곳.
+     */
+    private interface SegmentReader extends AutoCloseable {
+        /**
+         * pos 위치의 레코드 본문. 끝이거나 온전하지 않은(쓰다 만) 레코드면 null.
+         */
+        byte[] recordAt(int pos) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * 현재 쓰는 세그먼트: 이미 열려 있는 쓰기 맵을 그대로 읽습니다.
+     */
+    private static SegmentReader mappedReader(ByteBuffer buf) {
+        return new SegmentReader() {
+            @Override
+            public byte[] recordAt(int pos) {
+                int next = nextRecord(buf, pos);
+                if (next < 0) {
+                    return null;
+                }
+                byte[] body = new byte[next - pos - RECORD_HEADER_BYTES];
+                buf.get(pos + RECORD_HEADER_BYTES, body);
+                return body;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * 닫힌 세그먼트: 맵을 만들지 않고 FileChannel 위치 읽기로 헤더/본문을 읽습니다(닫으면 파일 핸들도 바로 풀림).
+     */
+    private static SegmentReader channelReader(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        return new SegmentReader() {
+            @Override
+            public byte[] recordAt(int pos) throws IOException {
+                if (pos + RECORD_HEADER_BYTES > size) {
+                    return null;
+                }
+                ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+                readFully(channel, header, pos);
+                int length = header.getInt(0);
+                if (length <= 0 || length > size - pos - RECORD_HEADER_BYTES) {
+                    return null;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(channel, body, pos + RECORD_HEADER_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(body.array());
+                if ((int) crc.getValue() != header.getInt(4)) {
+                    return null;
+                }
+                return body.array();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + buf.position());
+            if (n < 0) {
+                throw new IOException("unexpected end of spool segment");
+            }
+        }
+    }
+
+    /**
+     * 테넌트 하나의 스풀 상태. 쓰기/읽기/커밋 모두 lock 하나로 직렬화합니다(장애 시에만 쓰이는 경로).
+     */
+    private final class TenantSpool {
+        private final Path dir;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicLong pending = new AtomicLong();
+        private long writeSegment;
+        private MappedByteBuffer writeBuffer;
+        private int writePos;
+        private long readSegment;
+        private int readPos;
+        private int segmentCount;
+        /** 다 읽었지만 아직 지우지 못한 세그먼트 (segmentCount에 포함, 다음 커밋/기록 때 다시 삭제 시도) */
+        private final List<Long> obsolete = new ArrayList<>();
+
+        TenantSpool(Path dir) {
+            this.dir = dir;
+        }
+
+        /**
+         * 시작 시 세그먼트/커서를 읽어 쓰기 위치와 재생 대기 건수를 복구합니다.
+         */
+        void recover() throws IOException {
+            Files.createDirectories(dir);
+            List<Long> segments = listSegments();
+            long[] cursor = readCursor();
+            readSegment = cursor != null ? cursor[0] : (segments.isEmpty() ? 1 : segments.get(0));
+            readPos = cursor != null ? (int) cursor[1] : 0;
+
+            for (long seq : segments) {
+                if (seq < readSegment) {
+                    obsolete.add(seq);
+                }
+            }
+            segments.removeIf(seq -> seq < readSegment);
+            deleteObsolete();
+            if (segments.isEmpty()) {
+                readPos = 0;
+                openWriteSegment(readSegment);
+                writePos = 0;
+                segmentCount = 1 + obsolete.size();
+                return;
+            }
+
+            openWriteSegment(segments.get(segments.size() - 1));
+            segmentCount = segments.size() + obsolete.size();
+            long count = 0;
+            for (long seq : segments) {
+                try (SegmentReader reader = reader(seq)) {
+                    int pos = seq == readSegment ? readPos : 0;
+                    byte[] record;
+                    while ((record = reader.recordAt(pos)) != null) {
+                        count++;
+                        pos += RECORD_HEADER_BYTES + record.length;
+                    }
+                    if (seq == writeSegment) {
+                        writePos = pos;
+                    }
+                }
+            }
+            if (readSegment == writeSegment && readPos > writePos) {
+                readPos = writePos;
+            }
+            pending.set(count);
+        }
+
+        void append(List<byte[]> records, long total) throws IOException {
+            lock.lock();
+            try {
+                deleteObsolete();
+                long freeInSegment = segmentBytes - writePos;
+                long extraSegments = total <= freeInSegment ? 0 : (total - freeInSegment) / segmentBytes + 1;
+                if ((segmentCount + extraSegments) * segmentBytes > maxBytes) {
+                    throw new IOException("spool is full (max " + maxBytes + " bytes)");
+                }
+                int syncFrom = writePos;
+                for (byte[] record : records) {
+                    if (writePos + RECORD_HEADER_BYTES + record.length > segmentBytes) {
+                        force(syncFrom);
+                        openWriteSegment(writeSegment + 1);
+                        writePos = 0;
+                        syncFrom = 0;
+                        segmentCount++;
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(record);
+                    writeBuffer.put(writePos + RECORD_HEADER_BYTES, record);
+                    writeBuffer.putInt(writePos + 4, (int) crc.getValue());
+                    // 길이는 마지막에 기록: 여기까지 써져야 온전한 레코드로 인정됩니다.
+                    writeBuffer.putInt(writePos, record.length);
+                    writePos += RECORD_HEADER_BYTES + record.length;
+                }
+                force(syncFrom);
+                pending.addAndGet(records.size());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Batch read(int max) throws IOException {
+            lock.lock();
+            try {
+                List<EncryptedRawLog> logs = new ArrayList<>();
+                long seq = readSegment;
+                int pos = readPos;
+                SegmentReader reader = reader(seq);
+                try {
+                    while (logs.size() < max) {
+                        byte[] record = reader.recordAt(pos);
+                        if (record == null) {
+                            if (seq >= writeSegment) {
+                                break;
+                            }
+                            reader.close();
+                            seq++;
+                            pos = 0;
+                            reader = reader(seq);
+                            continue;
+                        }
+                        logs.add(deserialize(ByteBuffer.wrap(record)));
+                        pos += RECORD_HEADER_BYTES + record.length;
+                    }
+                } finally {
+                    reader.close();
+                }
+                return new Batch(logs, seq, pos);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void commit(Batch batch) throws IOException {
+            lock.lock();
+            try {
+                // 1) 재생 위치를 먼저 저장: 여기서 실패하면 아무것도 바뀌지 않고 같은 배치를 다시 재생합니다.
+                writeCursor(batch.segment(), batch.offset());
+                for (long seq = readSegment; seq < batch.segment(); seq++) {
+                    obsolete.add(seq);
+                }
+                readSegment = batch.segment();
+                readPos = batch.offset();
+                pending.addAndGet(-batch.logs().size());
+                // 2) 다 읽은 세그먼트 삭제 (실패해도 커밋은 끝난 것, 다음에 다시 시도)
+                deleteObsolete();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void flush() {
+            lock.lock();
+            try {
+                if (writeBuffer != null) {
+                    writeBuffer.force();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void force(int from) {
+            if (syncWrites && writePos > from) {
+                writeBuffer.force(from, writePos - from);
+            }
+        }
+
+        private void openWriteSegment(long seq) throws IOException {
+            try (FileChannel channel = FileChannel.open(segmentPath(seq),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                writeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            }
+            writeSegment = seq;
+        }
+
+        void quarantine(List<byte[]> records) throws IOException {
+            lock.lock();
+            try (FileChannel channel = FileChannel.open(dir.resolve(QUARANTINE_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                for (byte[] record : records) {
+                    CRC32 crc = new CRC32();
+                    crc.update(record);
+                    ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER_BYTES + record.length);
+                    buf.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+                    while (buf.hasRemaining()) {
+                        channel.write(buf);
+                    }
+                }
+                if (syncWrites) {
+                    channel.force(false);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private SegmentReader reader(long seq) throws IOException {
+            return seq == writeSegment ? mappedReader(writeBuffer.duplicate()) : channelReader(segmentPath(seq));
+        }
+
+        /**
+         * 다 읽은 세그먼트를 지웁니다. 실패한 세그먼트는 목록에 남겨 다음 호출에서 다시 시도합니다.
+         */
+        private void deleteObsolete() {
+            for (Iterator<Long> it = obsolete.iterator(); it.hasNext(); ) {
+                long seq = it.next();
+                try {
+                    Files.deleteIfExists(segmentPath(seq));
+                    it.remove();
+                    segmentCount--;
+                } catch (IOException e) {
+                    log.debug("다 읽은 스풀 세그먼트 삭제 보류, 나중에 재시도 - dir={}, segment={}, 원인={}", dir, seq, e.getMessage());
+                }
+            }
+        }
+
+        private List<Long> listSegments() throws IOException {
+            try (Stream<Path> files = Files.list(dir)) {
+                return new ArrayList<>(files.map(p -> p.getFileName().toString())
+                        .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                        .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())))
+                        .sorted()
+                        .toList());
+            }
+        }
+
+        private Path segmentPath(long seq) {
+            return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+        }
+
+        private long[] readCursor() throws IOException {
+            Path path = dir.resolve(CURSOR_FILE);
+            if (!Files.exists(path)) {
+                return null;
+            }
+            String[] parts = Files.readString(path).trim().split(":");
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+        }
+
+        /**
+         * 임시 파일에 쓴 뒤 원자적으로 교체하여, 중간에 끊겨도 이전/새 커서 중 하나만 남게 합니다.
+         */
+        private void writeCursor(long segment, int offset) throws IOException {
+            Path tmp = dir.resolve(CURSOR_FILE + ".tmp");
+            Files.writeString(tmp, segment + ":" + offset);
+            Files.move(tmp, dir.resolve(CURSOR_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package kr.co.mes.support;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import kr.co.mes.service.RawLogService;
+
+/**
+ * 초보자용 상세 주석:
+ * - 스풀(RawLogSpool)에 쌓인 이벤트를 DB가 살아나면 배치로 다시 저장하는 스케줄러입니다.
+ * - 매 주기마다 테넌트 DB에 "SELECT 1"(LocalDbHealthChecker와 같은 점검)을 먼저 실행하고,
+ *   성공한 테넌트만 batch-size건씩 저장 → 재생 위치 커밋을 반복해 스풀을 비웁니다.
+ * - 한 주기에는 최대 replay-max-batches개 배치만 재생하고 돌아갑니다. 기본 스케줄러는 스레드가 하나라
+ *   재생이 길어지면 롤업 flush, 상세 캐시 TTL 정리, 키 재암호화 같은 다른 @Scheduled 작업이 모두 멈추기 때문입니다.
+ *   남은 백로그는 다음 주기(fixed delay)에 이어서 재생합니다.
+ * - 저장 중 일시/연결 오류(DbFailures.isTransient)가 나면 그 자리에서 멈추고 다음 주기에 이어서 재시도합니다(순서 유지).
+ * - 영구 오류(제약 위반 등)는 다시 해도 같은 결과라 스풀이 영원히 막히므로, 배치를 한 건씩 다시 저장해
+ *   실패하는 레코드만 격리 파일(RawLogSpool.quarantine)로 옮기고 배치를 커밋합니다. (지표 mes.ingest.spool.quarantined)
+ *   한 건씩 저장하던 중 일시 오류가 나면 배치를 커밋하지 않으므로, 이미 저장된 앞쪽 레코드는 다음 주기에 다시 재생될 수 있습니다
+ *   (요청 ID가 있는 이벤트는 저장 시 중복으로 걸러짐).
+ * - 중복 제거(RawLogDeduplicator)가 켜져 있으면 재생이 끝난 이벤트의 선점을 id로 확정하고, 격리한 이벤트는 선점을 풉니다.
+ */
+@Component
+@Profile("local")
+public class RawLogSpoolReplayer {
+
+    private static final Logger log = LoggerFactory.getLogger(RawLogSpoolReplayer.class);
+
+    private final RawLogSpool spool;
+    private final RawLogService rawLogService;
+    private final JdbcTemplate jdbcTemplate;
+    private final RawLogDeduplicator deduplicator;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Map<String, Counter> replayedCounters = new HashMap<>();
+    private final Map<String, Counter> failedCounters = new HashMap<>();
+
+    public RawLogSpoolReplayer(RawLogSpool spool, RawLogService rawLogService, JdbcTemplate jdbcTemplate,
+                               RawLogDeduplicator deduplicator, MeterRegistry meterRegistry,
+                               @Value("${mes.ingest.spool.replay-batch-size:500}") int batchSize,
+                               @Value("${mes.ingest.spool.replay-max-batches:20}") int maxBatchesPerRun) {
+        this.spool = spool;
+        this.rawLogService = rawLogService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.deduplicator = deduplicator;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxBatchesPerRun = Math.max(maxBatchesPerRun, 1);
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            replayedCounters.put(tenant, Counter.builder("mes.ingest.spool.replayed")
+                    .description("스풀에서 DB로 재생한 이벤트 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+            failedCounters.put(tenant, Counter.builder("mes.ingest.spool.replay.failed")
+                    .description("스풀 재생 시도 중 DB 점검/저장 실패 횟수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * replay-interval-ms마다 실행 (이전 실행이 끝난 뒤부터 계산).
+     */
+    @Scheduled(fixedDelayString = "${mes.ingest.spool.replay-interval-ms:1000}")
+    public void replay() {
+        if (!spool.isEnabled()) {
+            return;
+        }
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            if (spool.hasBacklog(tenant)) {
+                replayTenant(tenant);
+            }
+        }
+    }
+
+    private void replayTenant(String tenant) {
+        // 백그라운드 스레드이므로 라우팅 DataSource가 올바른 테넌트 DB를 고르도록 컨텍스트를 직접 설정합니다.
+        TenantContext.setTenant(tenant, "spool-replay");
+        long replayed = 0;
+        try {
+            Integer ok = jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            if (ok == null || ok != 1) {
+                return;
+            }
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                RawLogSpool.Batch batch = spool.read(tenant, batchSize);
+                if (batch.logs().isEmpty()) {
+                    break;
+                }
+                try {
+                    deduplicator.completeAll(tenant, batch.logs(), rawLogService.saveEncrypted(tenant, batch.logs()));
+                } catch (DataAccessException e) {
+                    if (DbFailures.isTransient(e)) {
+                        throw e;
+                    }
+                    log.warn("스풀 배치 저장 영구 실패, 한 건씩 재시도 - tenant={}, count={}, 원인={}",
+                            tenant, batch.logs().size(), e.getMessage());
+                    saveOneByOne(tenant, batch.logs());
+                }
+                spool.commit(tenant, batch);
+                replayed += batch.logs().size();
+                replayedCounters.get(tenant).increment(batch.logs().size());
+            }
+            log.info("스풀 재생 - tenant={}, replayed={}, pending={}", tenant, replayed, spool.pending(tenant));
+        } catch (Exception e) {
+            failedCounters.get(tenant).increment();
+            log.warn("스풀 재생 보류, 다음 주기에 재시도 - tenant={}, replayed={}, pending={}, 원인={}",
+                    tenant, replayed, spool.pending(tenant), e.getMessage());
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    /**
+     * 배치를 한 건씩 저장하고, 영구 오류가 나는 레코드는 격리합니다. 일시 오류는 그대로 던져 다음 주기로 미룹니다.
+     */
+    private void saveOneByOne(String tenant, List<RawLogService.EncryptedRawLog> logs) throws IOException {
+        for (RawLogService.EncryptedRawLog encrypted : logs) {
+            try {
+                List<RawLogService.EncryptedRawLog> single = List.of(encrypted);
+                deduplicator.completeAll(tenant, single, rawLogService.saveEncrypted(tenant, single));
+            } catch (DataAccessException e) {
+                if (DbFailures.isTransient(e)) {
+                    throw e;
+                }
+                spool.quarantine(tenant, List.of(encrypted));
+                deduplicator.release(tenant, encrypted.entry().source(), encrypted.entry().payloadSha256());
+                log.warn("재생할 수 없는 스풀 레코드 격리 - tenant={}, request_id={}, source={}, 원인={}",
+                        tenant, encrypted.entry().requestId(), encrypted.entry().source(), e.getMessage());
+            }
+        }
+    }
+}
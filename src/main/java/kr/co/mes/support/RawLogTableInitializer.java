@@ -13,6 +13,11 @@ import org.springframework.stereotype.Component;
  * 초보자용 상세 주석:
  * - 애플리케이션 기동 시 테넌트 DB마다 원시 로그 테이블(raw_ingest_log)을 생성합니다.
  * - CREATE TABLE IF NOT EXISTS와 인덱스 생성으로 여러 번 실행되어도 안전합니다.
+ * - 페이로드 압축 사전 테이블(raw_payload_dict)과 키 교체 진행 테이블(raw_key_rotation_checkpoint)도 함께 준비합니다.
+ * - 조회용 인덱스는 RawLogIndexManager가 선언/생성하고, 테이블 준비 직후 EXPLAIN으로 쿼리 모양을 확인합니다.
+ * - 분/시간 집계 테이블(RawLogRollup)을 처음 만들 때는 기존 원시 로그로 한 번 채웁니다.
+ * - 스케줄러(@Scheduled)는 ApplicationRunner보다 먼저 돌기 시작하므로, 이 테이블들을 읽는 백그라운드 작업은
+ *   isReady()가 true가 될 때까지 건너뛰어야 합니다(빈 DB에서 "테이블 없음" 경고 방지).
  */
 @Component
 @Profile("local")
@@ -22,18 +27,30 @@ public class RawLogTableInitializer implements ApplicationRunner {
 
     private final JdbcTemplate tenantAJdbcTemplate;
     private final JdbcTemplate tenantBJdbcTemplate;
+    private final RawLogIndexManager indexManager;
+    private volatile boolean ready;
 
     public RawLogTableInitializer(
             @Qualifier("tenantAJdbcTemplate") JdbcTemplate tenantAJdbcTemplate,
-            @Qualifier("tenantBJdbcTemplate") JdbcTemplate tenantBJdbcTemplate) {
+            @Qualifier("tenantBJdbcTemplate") JdbcTemplate tenantBJdbcTemplate,
+            RawLogIndexManager indexManager) {
         this.tenantAJdbcTemplate = tenantAJdbcTemplate;
         this.tenantBJdbcTemplate = tenantBJdbcTemplate;
+        this.indexManager = indexManager;
     }
 
     @Override
     public void run(ApplicationArguments args) {
         createTable(tenantAJdbcTemplate, "tenant_a");
         createTable(tenantBJdbcTemplate, "tenant_b");
+        ready = true;
+    }
+
+    /**
+     * 모든 테넌트 DB에 테이블 준비가 끝났으면 true.
+     */
+    public boolean isReady() {
+        return ready;
     }
 
     private void createTable(JdbcTemplate jdbcTemplate, String tenantName) {
@@ -49,11 +66,19 @@ public class RawLogTableInitializer implements ApplicationRunner {
                   payload_nonce VARCHAR(32),
                   payload_key_id VARCHAR(20),
                   payload_alg VARCHAR(20),
+                  payload_codec VARCHAR(16),
+                  payload_dict_id BIGINT,
+                  payload_enc_bin LONGBLOB,
+                  payload_nonce_bin VARBINARY(12),
+                  payload_preview_enc VARBINARY(1024),
+                  payload_preview_nonce VARBINARY(12),
+                  payload_size INT,
                   payload_sha256 CHAR(64),
                   received_at TIMESTAMP(6),
                   request_id VARCHAR(64),
                   user_id VARCHAR(50),
-                  role VARCHAR(20)
+                  role VARCHAR(20),
+                  idempotency_key VARCHAR(128)
                 )
                 """);
         // 기존 테이블에 없을 수 있는 컬럼을 추가합니다.
@@ -61,9 +86,70 @@ public class RawLogTableInitializer implements ApplicationRunner {
         jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_nonce VARCHAR(32)");
         jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_key_id VARCHAR(20)");
         jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_alg VARCHAR(20)");
-        // 인덱스 생성 (없으면 생성, 이미 있으면 무시)
-        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_raw_log_received_at ON raw_ingest_log(received_at)");
-        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_raw_log_event_time ON raw_ingest_log(event_type, received_at)");
+        jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS idempotency_key VARCHAR(128)");
+        jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_codec VARCHAR(16)");
+        jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_dict_id BIGINT");
+        // 저장 형식 v2: 암호문/nonce 원본 바이트 (기존 Base64 텍스트 컬럼은 RawLogBinaryMigrator가 옮긴 뒤 비움)
+        jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_enc_bin LONGBLOB");
+        jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_nonce_bin VARBINARY(12)");
+        // 목록용 암호화 프리뷰(앞 200자, 최대 800바이트 + 태그)와 압축 전 원본 크기 (기존 행은 목록 조회 때 백필)
+        jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_preview_enc VARBINARY(1024)");
+        jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_preview_nonce VARBINARY(12)");
+        jdbcTemplate.execute("ALTER TABLE raw_ingest_log ADD COLUMN IF NOT EXISTS payload_size INT");
+        // 조회용 인덱스 생성 (지원하는 필터 조합별 복합 인덱스, 없으면 생성)
+        indexManager.ensureIndexes(jdbcTemplate, tenantName);
+        // 멱등 키: 테넌트 안에서 유일 (NULL은 여러 개 허용되므로 키 없는 이벤트에는 영향 없음)
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_raw_log_idempotency ON raw_ingest_log(tenant_id, idempotency_key)");
+        // event_type별 zstd 압축 사전 (payload_dict_id가 가리키는 대상, 지우지 않음)
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS raw_payload_dict (
+                  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                  event_type VARCHAR(80),
+                  dict_bytes MEDIUMBLOB,
+                  sample_count INT,
+                  created_at TIMESTAMP(6)
+                )
+                """);
+        // 키 교체 재암호화 진행 상황 (활성 키별 한 행, 재기동 후 last_id부터 이어서 진행)
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS raw_key_rotation_checkpoint (
+                  target_key_id VARCHAR(20) PRIMARY KEY,
+                  last_id BIGINT NOT NULL,
+                  target_max_id BIGINT NOT NULL,
+                  rows_reencrypted BIGINT NOT NULL,
+                  rows_failed BIGINT NOT NULL,
+                  started_at TIMESTAMP(6),
+                  updated_at TIMESTAMP(6),
+                  completed_at TIMESTAMP(6) NULL
+                )
+                """);
+        // 분/시간 집계 테이블 (수집 시 배치 upsert, 원시 로그 정리와 무관하게 유지)
+        for (RawLogRollup.Granularity granularity : RawLogRollup.Granularity.values()) {
+            createRollupTable(jdbcTemplate, tenantName, granularity);
+        }
         log.info("raw_ingest_log 테이블 준비 완료 - tenant={}", tenantName);
+        // 쿼리 모양별 실행 계획 확인 (전체 스캔이면 경고 로그 + 헬스/지표에 표시)
+        indexManager.verify(jdbcTemplate, tenantName);
+    }
+
+    /**
+     * 집계 테이블을 만들고, 새로 만든 경우에만 기존 원시 로그로 채웁니다.
+     * - 테이블이 없던 동안의 배치 수집은 집계 upsert에서 실패해 INSERT까지 롤백되므로,
+     *   생성 직전 max(id) 이하 행만 채우면 이중 집계되지 않습니다.
+     *   (단건 수집 집계는 메모리에 모았다가 테이블이 생긴 뒤 반영되므로, 테이블을 처음 만드는 순간과 겹친
+     *   단건 수집은 드물게 한 번 더 집계될 수 있습니다. 처음 한 번만 해당하는 근사치 오차입니다)
+     */
+    private void createRollupTable(JdbcTemplate jdbcTemplate, String tenantName, RawLogRollup.Granularity granularity) {
+        Integer exists = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.tables
+                WHERE table_schema = DATABASE() AND table_name = ?
+                """, Integer.class, granularity.table());
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM raw_ingest_log", Long.class);
+        jdbcTemplate.execute(RawLogRollup.createTableSql(granularity));
+        if (exists != null && exists == 0 && maxId != null && maxId > 0) {
+            int rows = jdbcTemplate.update(RawLogRollup.backfillSql(granularity), maxId);
+            log.info("집계 테이블 초기 채움 완료 - tenant={}, table={}, maxId={}, rows={}",
+                    tenantName, granularity.table(), maxId, rows);
+        }
     }
 }
@@ -0,0 +1,289 @@
+package kr.co.mes.support;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import kr.co.mes.service.RawLogService;
+import kr.co.mes.service.RawLogService.EncryptedRawLog;
+
+/**
+ * 초보자용 상세 주석:
+ * - 원시 로그 write-behind 버퍼입니다. (mes.ingest.write-behind.enabled=true 일 때만 동작)
+ * - 요청 스레드는 암호화까지만 하고 테넌트별 bounded 큐에 넣은 뒤 바로 202를 응답합니다.
+ * - 테넌트마다 백그라운드 writer 스레드가 큐를 비우며, N건 또는 T밀리초마다 한 번에 커밋(group commit)합니다.
+ * - 큐가 가득 차면 offer()가 false를 반환하므로, 호출 측은 이벤트를 버리지 말고 클라이언트에 재시도를 요청해야 합니다.
+ * - DB 저장이 일시/연결 오류(DbFailures.isTransient)로 실패하면 같은 배치를 백오프 후 다시 시도합니다
+ *   (그동안 큐가 차서 자연스럽게 역압이 걸립니다).
+ * - 영구 오류(제약 위반 등)는 재시도해도 같은 결과라 writer가 멈추므로, 배치를 반으로 나눠 다시 저장하고
+ *   혼자서도 실패하는 행만 dead-letter로 뺍니다(지표 mes.ingest.write_behind.dead_lettered, 스풀이 켜져 있으면 격리 파일에 보관).
+ * - 중복 제거(RawLogDeduplicator)가 켜져 있으면 저장이 끝난 뒤 선점을 id로 확정하고, dead-letter된 행은 선점을 풉니다.
+ * - 스풀(RawLogSpool)이 켜져 있으면 실패한 배치를 재시도 대신 스풀에 넘기고, 스풀이 비워질 때까지는 스풀에 바로 씁니다.
+ */
+@Component
+@Profile("local")
+public class RawLogWriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(RawLogWriteBehindBuffer.class);
+
+    /**
+     * 저장 실패 시 재시도 대기 시간의 상한(ms).
+     */
+    private static final long MAX_RETRY_BACKOFF_MS = 1000;
+
+    private final RawLogService rawLogService;
+    private final RawLogSpool spool;
+    private final RawLogDeduplicator deduplicator;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+
+    /**
+     * 테넌트 ID -> bounded 큐. 허용 테넌트 목록으로 미리 만들어 두고 이후에는 읽기만 합니다.
+     */
+    private final Map<String, BlockingQueue<EncryptedRawLog>> queues = new HashMap<>();
+    private final Map<String, DistributionSummary> batchSizeSummaries = new HashMap<>();
+    private final Map<String, Timer> flushTimers = new HashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final List<Thread> writers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public RawLogWriteBehindBuffer(RawLogService rawLogService,
+                                   RawLogSpool spool,
+                                   RawLogDeduplicator deduplicator,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${mes.ingest.write-behind.enabled:false}") boolean enabled,
+                                   @Value("${mes.ingest.write-behind.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${mes.ingest.write-behind.batch-size:500}") int batchSize,
+                                   @Value("${mes.ingest.write-behind.flush-interval-ms:50}") long flushIntervalMs) {
+        this.rawLogService = rawLogService;
+        this.spool = spool;
+        this.deduplicator = deduplicator;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushIntervalMs = Math.max(flushIntervalMs, 1);
+
+        for (String tenant : TenantContext.ALLOWED_TENANTS) {
+            BlockingQueue<EncryptedRawLog> queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+            queues.put(tenant, queue);
+            Gauge.builder("mes.ingest.write_behind.queue.depth", queue, BlockingQueue::size)
+                    .description("write-behind 큐에 대기 중인 이벤트 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+            batchSizeSummaries.put(tenant, DistributionSummary.builder("mes.ingest.write_behind.batch.size")
+                    .description("group commit 한 번에 저장한 이벤트 수")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry));
+            flushTimers.put(tenant, Timer.builder("mes.ingest.write_behind.flush.latency")
+                    .description("group commit 한 번의 DB 저장 시간")
+                    .tag("tenant", tenant)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * write-behind 모드 사용 여부.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 암호화된 이벤트를 테넌트 큐에 넣습니다.
+     *
+     * @return 큐에 들어갔으면 true, 큐가 가득 찼거나 모드가 꺼져 있으면 false
+     */
+    public boolean offer(String tenantId, EncryptedRawLog encrypted) {
+        BlockingQueue<EncryptedRawLog> queue = queues.get(tenantId);
+        if (!running || queue == null) {
+            return false;
+        }
+        if (!queue.offer(encrypted)) {
+            meterRegistry.counter("mes.ingest.write_behind.rejected", "tenant", tenantId).increment();
+            return false;
+        }
+        return true;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (String tenant : queues.keySet()) {
+            Thread writer = new Thread(() -> drainLoop(tenant), "raw-log-writer-" + tenant);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        log.info("write-behind 버퍼 시작 - tenants={}, batchSize={}, flushIntervalMs={}",
+                queues.keySet(), batchSize, flushIntervalMs);
+    }
+
+    /**
+     * 종료 시 새 이벤트를 받지 않고, writer가 큐에 남은 이벤트를 모두 저장할 때까지 기다립니다.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        queues.forEach((tenant, queue) -> {
+            if (!queue.isEmpty()) {
+                log.error("write-behind 종료 시 미저장 이벤트 남음 - tenant={}, remaining={}", tenant, queue.size());
+            }
+        });
+    }
+
+    /**
+     * writer 스레드 본체: 첫 이벤트가 오면 batchSize가 차거나 flushInterval이 지날 때까지 모은 뒤 저장합니다.
+     */
+    private void drainLoop(String tenant) {
+        BlockingQueue<EncryptedRawLog> queue = queues.get(tenant);
+        List<EncryptedRawLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                EncryptedRawLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    EncryptedRawLog next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flushWithRetry(tenant, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 배치를 저장합니다. 일시 오류면 성공할 때까지 백오프하며 재시도하고, 영구 오류면 배치를 나눠 문제 행을 골라냅니다.
+     * - 재시도 중에는 큐가 차면서 offer()가 거절되어 클라이언트 쪽으로 역압이 전달됩니다.
+     */
+    private void flushWithRetry(String tenant, List<EncryptedRawLog> batch) throws InterruptedException {
+        long backoffMs = 50;
+        while (true) {
+            if (spool.hasBacklog(tenant) && trySpool(tenant, batch)) {
+                return;
+            }
+            try {
+                flush(tenant, batch);
+                return;
+            } catch (RuntimeException e) {
+                meterRegistry.counter("mes.ingest.write_behind.flush.failed", "tenant", tenant).increment();
+                if (!DbFailures.isTransient(e)) {
+                    splitOrDeadLetter(tenant, batch, e);
+                    return;
+                }
+                if (spool.isEnabled() && trySpool(tenant, batch)) {
+                    log.warn("write-behind 저장 실패, 스풀로 전환 - tenant={}, batch={}, 원인={}",
+                            tenant, batch.size(), e.getMessage());
+                    return;
+                }
+                log.error("write-behind 저장 실패, {}ms 후 재시도 - tenant={}, batch={}, 원인={}",
+                        backoffMs, tenant, batch.size(), e.getMessage());
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * 영구 오류가 난 배치를 반씩 나눠 다시 저장합니다(각 절반도 flushWithRetry 규칙을 따름). 한 건짜리면 dead-letter합니다.
+     */
+    private void splitOrDeadLetter(String tenant, List<EncryptedRawLog> batch, RuntimeException cause)
+            throws InterruptedException {
+        if (batch.size() == 1) {
+            deadLetter(tenant, batch.get(0), cause);
+            return;
+        }
+        int half = batch.size() / 2;
+        flushWithRetry(tenant, new ArrayList<>(batch.subList(0, half)));
+        flushWithRetry(tenant, new ArrayList<>(batch.subList(half, batch.size())));
+    }
+
+    /**
+     * 저장할 수 없는 행을 빼냅니다. 스풀이 켜져 있으면 격리 파일에 암호문 그대로 남기고, 아니면 로그/지표만 남깁니다.
+     */
+    private void deadLetter(String tenant, EncryptedRawLog encrypted, RuntimeException cause) {
+        meterRegistry.counter("mes.ingest.write_behind.dead_lettered", "tenant", tenant).increment();
+        // 저장되지 않았으므로 선점을 풀어, 장치가 재전송하면 중복이 아니라 새 이벤트로 받습니다.
+        deduplicator.release(tenant, encrypted.entry().source(), encrypted.entry().payloadSha256());
+        boolean kept = false;
+        if (spool.isEnabled()) {
+            try {
+                spool.quarantine(tenant, List.of(encrypted));
+                kept = true;
+            } catch (IOException e) {
+                log.error("write-behind dead-letter 격리 실패 - tenant={}, 원인={}", tenant, e.getMessage());
+            }
+        }
+        log.error("write-behind 저장 불가 행 dead-letter - tenant={}, request_id={}, source={}, quarantined={}, 원인={}",
+                tenant, encrypted.entry().requestId(), encrypted.entry().source(), kept, cause.getMessage());
+    }
+
+    private boolean trySpool(String tenant, List<EncryptedRawLog> batch) {
+        try {
+            spool.append(tenant, batch);
+            return true;
+        } catch (IOException e) {
+            log.error("write-behind 스풀 기록 실패 - tenant={}, batch={}, 원인={}", tenant, batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void flush(String tenant, List<EncryptedRawLog> batch) {
+        // 백그라운드 스레드이므로 라우팅 DataSource가 올바른 테넌트 DB를 고르도록 컨텍스트를 직접 설정합니다.
+        TenantContext.setTenant(tenant, "write-behind");
+        List<Long> ids;
+        try {
+            ids = flushTimers.get(tenant).record(() -> rawLogService.saveEncrypted(tenant, batch));
+            batchSizeSummaries.get(tenant).record(batch.size());
+        } finally {
+            TenantContext.clear();
+        }
+        deduplicator.completeAll(tenant, batch, ids);
+    }
+}
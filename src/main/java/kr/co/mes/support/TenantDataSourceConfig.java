@@ -8,6 +8,7 @@ import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,11 +16,19 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * 초보자용 상세 주석:
  * - 로컬 프로파일에서만 활성화되는 멀티테넌트 DataSource 설정입니다.
  * - tenant_a, tenant_b 두 개의 DataSource를 만들고, 라우팅 DataSource를 통해
  *   요청 헤더(X-Tenant-Id)에 따라 알맞은 DB로 연결됩니다.
+ * - mes.datasource.connection-limit.enabled=true(가상 스레드 모드 기본값)이면 각 테넌트 DataSource 앞에
+ *   풀 크기만큼만 동시에 입장시키는 ConnectionLimitingDataSource를 둡니다.
+ * - useAffectedRows=true: 영향 행 수를 "실제로 바뀐 행"으로 받습니다. 멱등 키 중복 INSERT가 0을 돌려줘
+ *   새 행만 집계 테이블에 더할 수 있습니다(RawLogServiceImpl).
  */
 @Configuration
 @Profile("local")
@@ -35,7 +44,7 @@ public class TenantDataSourceConfig {
     public DataSource tenantADataSource() {
         log.info("tenant_a DataSource 생성");
         return DataSourceBuilder.create()
-                .url("jdbc:mariadb://localhost:3306/mes_tenant_a")
+                .url("jdbc:mariadb://localhost:3306/mes_tenant_a?useAffectedRows=true")
                 .username("mes")
                 .password("mes1234!")
                 .driverClassName("org.mariadb.jdbc.Driver")
@@ -50,7 +59,7 @@ public class TenantDataSourceConfig {
     public DataSource tenantBDataSource() {
         log.info("tenant_b DataSource 생성");
         return DataSourceBuilder.create()
-                .url("jdbc:mariadb://localhost:3306/mes_tenant_b")
+                .url("jdbc:mariadb://localhost:3306/mes_tenant_b?useAffectedRows=true")
                 .username("mes")
                 .password("mes1234!")
                 .driverClassName("org.mariadb.jdbc.Driver")
@@ -83,9 +92,17 @@ public class TenantDataSourceConfig {
     @Primary
     public DataSource dataSource(
             @Qualifier("tenantADataSource") DataSource tenantADataSource,
-            @Qualifier("tenantBDataSource") DataSource tenantBDataSource) {
+            @Qualifier("tenantBDataSource") DataSource tenantBDataSource,
+            MeterRegistry meterRegistry,
+            @Value("${mes.datasource.connection-limit.enabled:${spring.threads.virtual.enabled:false}}") boolean limitEnabled,
+            @Value("${mes.datasource.connection-limit.max-concurrent:0}") int maxConcurrent,
+            @Value("${mes.datasource.connection-limit.acquire-timeout-ms:5000}") long acquireTimeoutMs) {
 
         Map<Object, Object> targetDataSources = new HashMap<>();
+        if (limitEnabled) {
+            tenantADataSource = limit("tenant_a", tenantADataSource, maxConcurrent, acquireTimeoutMs, meterRegistry);
+            tenantBDataSource = limit("tenant_b", tenantBDataSource, maxConcurrent, acquireTimeoutMs, meterRegistry);
+        }
         targetDataSources.put("tenant_a", tenantADataSource);
         targetDataSources.put("tenant_b", tenantBDataSource);
 
@@ -97,6 +114,18 @@ public class TenantDataSourceConfig {
         return routingDataSource;
     }
 
+    /**
+     * 테넌트 DataSource를 동시 입장 제한으로 감쌉니다.
+     * - max-concurrent가 0 이하이면 Hikari 풀의 maximumPoolSize를 그대로 사용합니다.
+     */
+    private DataSource limit(String tenantId, DataSource target, int maxConcurrent, long acquireTimeoutMs,
+                             MeterRegistry meterRegistry) {
+        int permits = maxConcurrent > 0 ? maxConcurrent
+                : target instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+        log.info("{} DB 동시 입장 제한 사용 - maxConcurrent={}, acquireTimeoutMs={}", tenantId, permits, acquireTimeoutMs);
+        return new ConnectionLimitingDataSource(tenantId, target, permits, acquireTimeoutMs, meterRegistry);
+    }
+
     /**
      * JdbcTemplate을 라우팅 DataSource 기반으로 제공합니다.
      * - 컨트롤러에서 SQL을 간단히 실행하기 위해 사용합니다.
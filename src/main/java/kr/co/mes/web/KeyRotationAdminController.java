@@ -0,0 +1,88 @@
+package kr.co.mes.web;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import jakarta.servlet.http.HttpSession;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import kr.co.mes.crypto.CryptoKeyRegistry;
+import kr.co.mes.support.KeyRotationReencryptor;
+import kr.co.mes.support.SessionConstants;
+
+/**
+ * 초보자용 상세 주석:
+ * - 키 교체(재암호화) 진행 상황을 조회하고, 키 목록을 재기동 없이 다시 읽는 관리자 API입니다.
+ * - GET  /api/admin/key-rotation             : 활성 키와 테넌트별 진행률/ETA
+ * - POST /api/admin/key-rotation/reload-keys : 키 파일(MES_CRYPTO_KEYS_FILE)의 MES_CRYPTO_KEYS / MES_CRYPTO_ACTIVE_KEY_ID 다시 읽기
+ *   (활성 키가 바뀌면 다음 주기부터 재암호화가 시작됩니다)
+ *   키를 환경변수로 주는 배포(key_source=env)에서는 실행 중에 값이 바뀌지 않으므로 키 교체는 재기동으로 합니다.
+ */
+@RestController
+@RequestMapping(path = "/api/admin/key-rotation", produces = MediaType.APPLICATION_JSON_VALUE)
+@Profile("local")
+public class KeyRotationAdminController {
+
+    private final CryptoKeyRegistry keyRegistry;
+    private final KeyRotationReencryptor reencryptor;
+
+    public KeyRotationAdminController(CryptoKeyRegistry keyRegistry, KeyRotationReencryptor reencryptor) {
+        this.keyRegistry = keyRegistry;
+        this.reencryptor = reencryptor;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> status(HttpSession session) {
+        if (!isAdmin(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error("forbidden"));
+        }
+        return ResponseEntity.ok(statusBody());
+    }
+
+    @PostMapping("/reload-keys")
+    public ResponseEntity<?> reloadKeys(HttpSession session) {
+        if (!isAdmin(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error("forbidden"));
+        }
+        boolean changed;
+        try {
+            changed = keyRegistry.reload();
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error(e.getMessage()));
+        }
+        Map<String, Object> body = statusBody();
+        body.put("active_key_changed", changed);
+        return ResponseEntity.ok(body);
+    }
+
+    private Map<String, Object> statusBody() {
+        Map<String, Object> body = new HashMap<>();
+        body.put("ok", true);
+        body.put("active_key_id", keyRegistry.getActiveKeyId());
+        body.put("key_ids", new TreeSet<>(keyRegistry.getKeyIds()));
+        body.put("key_source", keyRegistry.getKeySource());
+        body.put("tenants", reencryptor.status());
+        return body;
+    }
+
+    private boolean isAdmin(HttpSession session) {
+        String role = (String) session.getAttribute(SessionConstants.ATTR_ROLE);
+        return "ADMIN".equalsIgnoreCase(role);
+    }
+
+    private Map<String, Object> error(String msg) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("ok", false);
+        body.put("error", msg);
+        return body;
+    }
+}
@@ -1,28 +1,64 @@
 package kr.co.mes.web;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipException;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 import kr.co.mes.service.RawLogService;
+import kr.co.mes.support.DbFailures;
+import kr.co.mes.support.IngestDecompressionFilter.InflatedBodyTooLargeException;
+import kr.co.mes.support.IdempotencyKeyCache;
+import kr.co.mes.support.IngestPhaseMetrics;
+import kr.co.mes.support.IngestPhaseMetrics.Phase;
+import kr.co.mes.support.IngestRateLimiter;
+import kr.co.mes.support.RawIngestEnvelopeParser;
+import kr.co.mes.support.RawIngestEnvelopeParser.Encoding;
+import kr.co.mes.support.RawIngestEnvelopeParser.RawIngestEnvelope;
+import kr.co.mes.support.RawLogDeduplicator;
+import kr.co.mes.support.RawLogSpool;
+import kr.co.mes.support.RawLogWriteBehindBuffer;
 import kr.co.mes.support.RequestIdContext;
 import kr.co.mes.support.SessionConstants;
 import kr.co.mes.support.TenantContext;
@@ -31,6 +67,12 @@ import kr.co.mes.support.TenantContext;
  * 초보자용 상세 주석:
  * - 원시 이벤트를 수집해 DB에 저장하는 엔드포인트입니다.
  * - 현재 세션에서 확정된 테넌트 ID를 사용하며, 헤더 위변조는 허용하지 않습니다.
+ * - 기본(raw-payload 모드)은 payload를 객체로 바꾸지 않고 원본 JSON 바이트(문자열 밖 공백만 제거)로 해시/암호화합니다.
+ *   해시 기준은 기존 방식(객체 바인딩 후 재직렬화)과 같은 공백 없는 JSON입니다.
+ * - /raw, /raw/batch는 Content-Type으로 JSON 외에 CBOR(application/cbor), Smile(application/x-jackson-smile)도 받습니다.
+ * - gzip/deflate 압축 본문은 IngestDecompressionFilter가 풀어서 넘겨 줍니다(상한 초과 시 413).
+ * - 단건 수집은 단계별(파싱/해시/압축/암호화/커넥션 획득/INSERT) 시간을 mes.ingest.phase.latency로 기록합니다.
+ * - 본문의 requestId는 멱등 키입니다. 같은 키를 다시 보내면 재암호화/재저장 없이 원래 id를 돌려줍니다.
  */
 @RestController
 @RequestMapping(path = "/api/ingest", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -38,67 +80,223 @@ import kr.co.mes.support.TenantContext;
 public class RawIngestController {
 
     private static final Logger log = LoggerFactory.getLogger(RawIngestController.class);
+
+    /**
+     * 배치 저장 한 번에 허용하는 최대 이벤트 수.
+     */
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * NDJSON 스트리밍 수집에서 한 번에 저장하는 micro-batch 크기.
+     */
+    private static final int NDJSON_CHUNK_SIZE = 500;
+
+    /**
+     * NDJSON 한 줄의 최대 길이(바이트). 넘으면 해당 줄만 거부합니다.
+     */
+    private static final int MAX_NDJSON_LINE_BYTES = 1_000_000;
+
+    /**
+     * NDJSON 응답에 담을 실패 줄 상세의 최대 개수.
+     */
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    /**
+     * raw_ingest_log.source / event_type 컬럼 길이(VARCHAR(50) / VARCHAR(80)).
+     */
+    private static final int MAX_SOURCE_LENGTH = 50;
+    private static final int MAX_EVENT_TYPE_LENGTH = 80;
+
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    private static final int LINE_OK = 0;
+    private static final int LINE_TOO_LONG = 1;
+    private static final int LINE_EOF = -1;
+
     private final RawLogService rawLogService;
     private final ObjectMapper objectMapper;
+    private final RawLogWriteBehindBuffer writeBehindBuffer;
+    private final RawLogDeduplicator deduplicator;
+    private final RawIngestEnvelopeParser envelopeParser;
+    private final IngestRateLimiter rateLimiter;
+    private final RawLogSpool spool;
+    private final IdempotencyKeyCache idempotencyKeys;
+    private final IngestPhaseMetrics phaseMetrics;
+    private final boolean rawPayloadEnabled;
+    private final Map<Encoding, Timer> decodeTimers = new EnumMap<>(Encoding.class);
+    private final Map<Encoding, DistributionSummary> requestSizes = new EnumMap<>(Encoding.class);
 
     /**
      * 생성자 주입.
      */
-    public RawIngestController(RawLogService rawLogService, ObjectMapper objectMapper) {
+    public RawIngestController(RawLogService rawLogService, ObjectMapper objectMapper,
+                               RawLogWriteBehindBuffer writeBehindBuffer, RawLogDeduplicator deduplicator,
+                               RawIngestEnvelopeParser envelopeParser, IngestRateLimiter rateLimiter,
+                               RawLogSpool spool, IdempotencyKeyCache idempotencyKeys, IngestPhaseMetrics phaseMetrics,
+                               MeterRegistry meterRegistry,
+                               @Value("${mes.ingest.raw-payload.enabled:true}") boolean rawPayloadEnabled) {
         this.rawLogService = rawLogService;
         this.objectMapper = objectMapper;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.deduplicator = deduplicator;
+        this.envelopeParser = envelopeParser;
+        this.rateLimiter = rateLimiter;
+        this.spool = spool;
+        this.idempotencyKeys = idempotencyKeys;
+        this.phaseMetrics = phaseMetrics;
+        this.rawPayloadEnabled = rawPayloadEnabled;
+        for (Encoding encoding : Encoding.values()) {
+            String tag = encoding.name().toLowerCase();
+            decodeTimers.put(encoding, Timer.builder("mes.ingest.decode.latency")
+                    .description("수집 본문 파싱(+ payload 정규화) 시간")
+                    .tag("encoding", tag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            requestSizes.put(encoding, DistributionSummary.builder("mes.ingest.request.size")
+                    .description("수집 요청 본문 크기")
+                    .baseUnit("bytes")
+                    .tag("encoding", tag)
+                    .register(meterRegistry));
+        }
     }
 
     /**
      * 요청 DTO: source, eventType, payload(JSON 객체).
+     * - raw-payload 모드를 끈 경우(객체 바인딩 후 재직렬화)에만 사용합니다.
      */
     public record RawIngestRequest(String source, String eventType, Object payload, String requestId) {}
 
     /**
      * POST /api/ingest/raw
-     * - payload를 JSON 문자열로 직렬화 후 SHA-256 해시를 계산하여 저장합니다.
+     * - payload의 공백 없는 JSON 바이트로 SHA-256 해시를 계산하고 같은 바이트를 암호화하여 저장합니다.
      * - 세션 사용자/역할 정보를 함께 기록합니다.
+     * - write-behind 모드가 켜져 있으면 암호화 후 큐에 넣고 202(Accepted)를 반환합니다.
+     * - DB 저장이 실패하거나 스풀에 재생 대기 이벤트가 있으면 로컬 스풀에 기록하고 202(spooled=true)를 반환합니다.
+     * - 최근에 저장된 requestId(멱등 키)면 200(duplicate=true)과 원래 id를 바로 반환합니다.
      */
     @PostMapping("/raw")
-    public ResponseEntity<?> ingest(@RequestBody RawIngestRequest request, HttpSession session) {
+    public ResponseEntity<?> ingest(@RequestBody byte[] rawBody,
+                                    @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                    HttpSession session) {
         Map<String, Object> body = new HashMap<>();
 
         // 세션에서 사용자/역할/테넌트 정보 조회 (없으면 ANONYMOUS/기본 테넌트)
-        String userId = (String) session.getAttribute(SessionConstants.ATTR_USER_ID);
-        if (userId == null || userId.isBlank()) {
-            userId = "ANONYMOUS";
-        }
-        String role = (String) session.getAttribute(SessionConstants.ATTR_ROLE);
-        if (role == null || role.isBlank()) {
-            role = "ANONYMOUS";
-        }
-
+        String userId = sessionValueOrAnonymous(session, SessionConstants.ATTR_USER_ID);
+        String role = sessionValueOrAnonymous(session, SessionConstants.ATTR_ROLE);
         String tenantId = TenantContext.getTenantIdOrDefault();
-        String eventType = request.eventType() == null ? "UNKNOWN" : request.eventType();
-        String source = request.source() == null ? "UNKNOWN" : request.source();
 
-        // payload 직렬화
-        String payloadJson;
+        // 본문 파싱 (payload는 인코딩과 무관하게 공백 없는 JSON으로 맞춤: JSON은 원본 구간에서 공백만 제거, CBOR/Smile은 한 번 정규화)
+        Encoding encoding = Encoding.fromContentType(contentType);
+        RawIngestEnvelope request;
+        long phaseStart = System.nanoTime();
         try {
-            payloadJson = objectMapper.writeValueAsString(request.payload());
-        } catch (JsonProcessingException e) {
+            request = parseEnvelope(rawBody, encoding);
+        } catch (IOException e) {
             body.put("ok", false);
-            body.put("error", "payload serialization failed");
+            body.put("error", "invalid " + encoding.name().toLowerCase());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+        }
+        phaseMetrics.record(Phase.PARSE, tenantId, request.eventType(), phaseStart);
+        String lengthError = columnLengthError(request);
+        if (lengthError != null) {
+            body.put("ok", false);
+            body.put("error", lengthError);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
         }
-
-        // SHA-256 해시
-        String payloadSha = DigestUtils.sha256Hex(payloadJson);
 
         // received_at UTC, requestId는 필터에서 확정한 값을 사용
         OffsetDateTime receivedAt = OffsetDateTime.now(ZoneOffset.UTC);
         String requestId = RequestIdContext.getOrCreate();
 
-        long id = rawLogService.save(tenantId, source, eventType, payloadJson, payloadSha, receivedAt, requestId, userId, role);
+        // 멱등 키: 최근에 저장한 키면 해시/암호화/INSERT 없이 원래 id를 돌려줍니다(DB 조회 없음).
+        Long knownId = idempotencyKeys.lookup(tenantId, request.requestId());
+        if (knownId != null) {
+            body.put("ok", true);
+            body.put("duplicate", true);
+            body.put("id", knownId);
+            body.put("requestId", requestId);
+            body.put("tenant", tenantId);
+            return ResponseEntity.ok(body);
+        }
+
+        // SHA-256 해시 (payload 바이트 버퍼 하나로 해시와 암호화를 모두 수행)
+        long hashStart = System.nanoTime();
+        RawLogService.RawLogEntry entry = toEntry(request, receivedAt, requestId, userId, role);
+        phaseMetrics.record(Phase.HASH, tenantId, entry.eventType(), hashStart);
+        String source = entry.source();
+        String payloadSha = entry.payloadSha256();
+
+        // source별 속도 제한 (테넌트 단위 제한은 IngestRateLimitFilter에서 이미 적용됨)
+        long waitNanos = rateLimiter.tryAcquireSource(tenantId, source, 1);
+        if (waitNanos > 0) {
+            return tooManyRequests(body, waitNanos, requestId);
+        }
+
+        // 중복 제거 창: 같은 source+payload가 window 안에 이미 들어왔으면 저장하지 않고 원본 id를 돌려줍니다.
+        Long duplicateId = deduplicator.claim(tenantId, source, payloadSha);
+        if (duplicateId != null) {
+            body.put("ok", true);
+            body.put("duplicate", true);
+            body.put("id", duplicateId == RawLogDeduplicator.PENDING_ID ? null : duplicateId);
+            body.put("requestId", requestId);
+            body.put("tenant", tenantId);
+            return ResponseEntity.ok(body);
+        }
+
+        // write-behind 모드: 암호화까지만 하고 큐에 넣은 뒤 202 응답 (저장은 백그라운드 group commit)
+        if (writeBehindBuffer.isEnabled()) {
+            RawLogService.EncryptedRawLog encrypted = rawLogService.encrypt(entry);
+            if (!writeBehindBuffer.offer(tenantId, encrypted)) {
+                // 큐가 가득 차면 이벤트를 버리지 않고 클라이언트에 재시도를 요청합니다.
+                deduplicator.release(tenantId, source, payloadSha);
+                body.put("ok", false);
+                body.put("error", "ingest queue full");
+                body.put("requestId", requestId);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(body);
+            }
+            body.put("ok", true);
+            body.put("requestId", requestId);
+            body.put("tenant", tenantId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(body);
+        }
+
+        Long id = null;
+        if (!spool.hasBacklog(tenantId)) {
+            try {
+                id = rawLogService.save(tenantId, entry);
+            } catch (DataAccessException e) {
+                // 스풀은 일시/연결 오류만 받습니다. 제약 위반 같은 영구 오류는 재생해도 실패하므로 바로 오류로 돌려줍니다.
+                if (!spool.isEnabled() || !DbFailures.isTransient(e)) {
+                    deduplicator.release(tenantId, source, payloadSha);
+                    throw e;
+                }
+                log.warn("DB 저장 실패, 스풀로 전환 - request_id={}, tenant_id={}, 원인={}", requestId, tenantId, e.getMessage());
+            } catch (RuntimeException e) {
+                deduplicator.release(tenantId, source, payloadSha);
+                throw e;
+            }
+        }
+        if (id == null) {
+            // DB를 쓸 수 없는 동안은 암호화된 이벤트를 스풀에 남기고, 재생기가 나중에 저장합니다.
+            try {
+                spoolEntries(tenantId, List.of(entry));
+            } catch (RuntimeException e) {
+                deduplicator.release(tenantId, source, payloadSha);
+                throw e;
+            }
+            body.put("ok", true);
+            body.put("spooled", true);
+            body.put("requestId", requestId);
+            body.put("tenant", tenantId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(body);
+        }
+        deduplicator.complete(tenantId, source, payloadSha, id);
+        idempotencyKeys.remember(tenantId, entry.idempotencyKey(), id);
 
         // 요약 로그(민감정보 제외)
         log.info("raw_ingest summary request_id={}, tenant_id={}, event_type={}, source={}, payload_size={}",
-                requestId, tenantId, eventType, source, payloadJson.length());
+                requestId, tenantId, entry.eventType(), source, entry.payload().length);
 
         body.put("ok", true);
         body.put("id", id);
@@ -106,4 +304,433 @@ public class RawIngestController {
         body.put("tenant", tenantId);
         return ResponseEntity.ok(body);
     }
+
+    /**
+     * POST /api/ingest/raw/batch
+     * - 이벤트 배열을 받아 한 트랜잭션에서 JDBC 배치로 저장합니다.
+     * - 응답의 ids는 요청 배열의 순서와 같습니다(중복으로 생략된 이벤트는 원본 id, 모르면 null).
+     * - DB 대신 스풀에 기록된 이벤트는 id가 null이며, 이 경우 202와 spooled 건수를 반환합니다.
+     * - 본문은 JSON/CBOR/Smile 배열이며, 잘못된 본문이거나 null 원소가 있으면 아무것도 저장하지 않고 400을 반환합니다.
+     */
+    @PostMapping("/raw/batch")
+    public ResponseEntity<?> ingestBatch(@RequestBody byte[] rawBody,
+                                         @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                         HttpSession session) {
+        Map<String, Object> body = new HashMap<>();
+
+        Encoding encoding = Encoding.fromContentType(contentType);
+        List<RawIngestEnvelope> requests;
+        try {
+            requests = parseEnvelopes(rawBody, encoding);
+        } catch (IOException e) {
+            body.put("ok", false);
+            body.put("error", "invalid " + encoding.name().toLowerCase());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+        }
+        if (requests.isEmpty()) {
+            body.put("ok", false);
+            body.put("error", "events must not be empty");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            body.put("ok", false);
+            body.put("error", "batch size must be 1~" + MAX_BATCH_SIZE);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+        }
+
+        String userId = sessionValueOrAnonymous(session, SessionConstants.ATTR_USER_ID);
+        String role = sessionValueOrAnonymous(session, SessionConstants.ATTR_ROLE);
+        String tenantId = TenantContext.getTenantIdOrDefault();
+        OffsetDateTime receivedAt = OffsetDateTime.now(ZoneOffset.UTC);
+        String requestId = RequestIdContext.getOrCreate();
+
+        // 모든 이벤트를 먼저 해시해 두고, 저장은 한 번에 수행합니다.
+        List<RawLogService.RawLogEntry> entries = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            RawIngestEnvelope request = requests.get(i);
+            if (request == null) {
+                body.put("ok", false);
+                body.put("error", "event must not be null");
+                body.put("index", i);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+            }
+            String lengthError = columnLengthError(request);
+            if (lengthError != null) {
+                body.put("ok", false);
+                body.put("error", lengthError);
+                body.put("index", i);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+            }
+            entries.add(toEntry(request, receivedAt, requestId, userId, role));
+        }
+
+        // source별 속도 제한: 배치 안의 이벤트 수만큼 소비하며, 하나라도 넘으면 배치 전체를 거절합니다.
+        Map<String, Integer> eventsPerSource = new LinkedHashMap<>();
+        for (RawLogService.RawLogEntry entry : entries) {
+            eventsPerSource.merge(entry.source(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> e : eventsPerSource.entrySet()) {
+            long waitNanos = rateLimiter.tryAcquireSource(tenantId, e.getKey(), e.getValue());
+            if (waitNanos > 0) {
+                body.put("source", e.getKey());
+                return tooManyRequests(body, waitNanos, requestId);
+            }
+        }
+
+        DeduplicatedSave saved = saveAllDeduplicated(tenantId, entries);
+
+        log.info("raw_ingest batch summary request_id={}, tenant_id={}, count={}, duplicates={}",
+                requestId, tenantId, saved.ids().size(), saved.duplicates());
+
+        body.put("ok", true);
+        body.put("ids", saved.ids());
+        body.put("count", saved.ids().size());
+        body.put("duplicates", saved.duplicates());
+        body.put("spooled", saved.spooled());
+        body.put("requestId", requestId);
+        body.put("tenant", tenantId);
+        return ResponseEntity.status(saved.spooled() > 0 ? HttpStatus.ACCEPTED : HttpStatus.OK).body(body);
+    }
+
+    /**
+     * POST /api/ingest/raw/ndjson
+     * - 한 줄에 이벤트 하나(JSON)씩 담긴 NDJSON 본문을 스트리밍으로 읽습니다.
+     * - 본문 전체를 메모리에 올리지 않고, 줄 단위로 파싱/해시한 뒤 NDJSON_CHUNK_SIZE건씩 모아 배치 저장합니다.
+     * - 파싱에 실패한 줄은 건너뛰고 rejected로 집계합니다(빈 줄은 무시).
+     * - 중복 제거 창에 걸린 줄은 저장하지 않고 duplicates로 집계합니다.
+     * - source별 속도 제한을 넘은 줄은 rejected로 집계하고 사유를 "rate limited"로 남깁니다(클라이언트가 해당 줄만 재전송).
+     * - DB 저장이 실패한 chunk는 스풀에 기록하고 spooled로 집계합니다(accepted에 포함, 재전송 불필요).
+     * - 응답: accepted/rejected/duplicates/spooled 건수와 실패한 줄 번호/사유(최대 MAX_REPORTED_ERRORS건).
+     */
+    @PostMapping(path = "/raw/ndjson", consumes = {NDJSON_MEDIA_TYPE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<?> ingestNdjson(HttpServletRequest httpRequest, HttpSession session) throws IOException {
+        String userId = sessionValueOrAnonymous(session, SessionConstants.ATTR_USER_ID);
+        String role = sessionValueOrAnonymous(session, SessionConstants.ATTR_ROLE);
+        String tenantId = TenantContext.getTenantIdOrDefault();
+        String requestId = RequestIdContext.getOrCreate();
+
+        long lineNo = 0;
+        long accepted = 0;
+        long rejected = 0;
+        long duplicates = 0;
+        long spooled = 0;
+        List<Map<String, Object>> errors = new ArrayList<>();
+        List<RawLogService.RawLogEntry> chunk = new ArrayList<>(NDJSON_CHUNK_SIZE);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        try (InputStream in = new BufferedInputStream(httpRequest.getInputStream())) {
+            int status;
+            while ((status = readLine(in, line)) != LINE_EOF) {
+                lineNo++;
+                String error = null;
+                if (status == LINE_TOO_LONG) {
+                    error = "line exceeds " + MAX_NDJSON_LINE_BYTES + " bytes";
+                } else if (!isBlank(line)) {
+                    try {
+                        RawIngestEnvelope request = parseEnvelope(line.toByteArray(), Encoding.JSON);
+                        RawLogService.RawLogEntry entry =
+                                toEntry(request, OffsetDateTime.now(ZoneOffset.UTC), requestId, userId, role);
+                        String lengthError = columnLengthError(request);
+                        if (lengthError != null) {
+                            error = lengthError;
+                        } else if (rateLimiter.tryAcquireSource(tenantId, entry.source(), 1) > 0) {
+                            error = "rate limited";
+                        } else {
+                            chunk.add(entry);
+                        }
+                    } catch (JsonProcessingException e) {
+                        error = "invalid json: " + e.getOriginalMessage();
+                    } catch (IOException e) {
+                        error = "invalid json: " + e.getMessage();
+                    }
+                }
+
+                if (error != null) {
+                    rejected++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        Map<String, Object> err = new HashMap<>();
+                        err.put("line", lineNo);
+                        err.put("error", error);
+                        errors.add(err);
+                    }
+                }
+                if (chunk.size() >= NDJSON_CHUNK_SIZE) {
+                    DeduplicatedSave saved = saveAllDeduplicated(tenantId, chunk);
+                    accepted += saved.ids().size() - saved.duplicates();
+                    duplicates += saved.duplicates();
+                    spooled += saved.spooled();
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            DeduplicatedSave saved = saveAllDeduplicated(tenantId, chunk);
+            accepted += saved.ids().size() - saved.duplicates();
+            duplicates += saved.duplicates();
+            spooled += saved.spooled();
+        }
+
+        log.info("raw_ingest ndjson summary request_id={}, tenant_id={}, lines={}, accepted={}, rejected={}, duplicates={}, spooled={}",
+                requestId, tenantId, lineNo, accepted, rejected, duplicates, spooled);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("ok", rejected == 0);
+        body.put("accepted", accepted);
+        body.put("rejected", rejected);
+        body.put("duplicates", duplicates);
+        body.put("spooled", spooled);
+        body.put("errors", errors);
+        body.put("requestId", requestId);
+        body.put("tenant", tenantId);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * 압축 해제 후 본문이 상한을 넘은 경우(압축 폭탄 방지): 413.
+     * - /raw, /raw/batch는 본문 변환 단계에서 감싸진 예외로, NDJSON은 읽는 도중 직접 올라옵니다.
+     */
+    @ExceptionHandler({InflatedBodyTooLargeException.class, HttpMessageNotReadableException.class, ZipException.class})
+    public ResponseEntity<?> handleUnreadableBody(Exception e) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("ok", false);
+        body.put("requestId", RequestIdContext.getOrCreate());
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof InflatedBodyTooLargeException) && !(cause instanceof ZipException)) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof InflatedBodyTooLargeException) {
+            body.put("error", cause.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(body);
+        }
+        body.put("error", cause instanceof ZipException ? "invalid compressed body" : "unreadable request body");
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+    }
+
+    /**
+     * 속도 제한 초과 응답: 429 + Retry-After(초).
+     */
+    private ResponseEntity<?> tooManyRequests(Map<String, Object> body, long waitNanos, String requestId) {
+        body.put("ok", false);
+        body.put("error", "rate limited");
+        body.put("scope", "source");
+        body.put("requestId", requestId);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(IngestRateLimiter.retryAfterSeconds(waitNanos)))
+                .body(body);
+    }
+
+    /**
+     * 중복 제거 창을 거쳐 배치 저장합니다.
+     * - 최근에 저장된 멱등 키는 암호화/저장 없이 원래 id를 넣고 중복으로 셉니다.
+     * - window 안의 중복은 저장하지 않고, 같은 자리에 원본 id(아직 모르면 null)를 넣습니다.
+     * - DB 저장이 실패하거나 스풀 backlog가 있으면 스풀에 기록합니다(해당 id는 null).
+     * - 스풀까지 실패하면 이번에 선점한 키를 모두 풀어 재시도가 막히지 않게 합니다.
+     */
+    private DeduplicatedSave saveAllDeduplicated(String tenantId, List<RawLogService.RawLogEntry> entries) {
+        List<Long> ids = new ArrayList<>(Collections.nCopies(entries.size(), (Long) null));
+        List<RawLogService.RawLogEntry> fresh = new ArrayList<>(entries.size());
+        List<Integer> freshIndexes = new ArrayList<>(entries.size());
+        int duplicates = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            RawLogService.RawLogEntry entry = entries.get(i);
+            Long knownId = idempotencyKeys.lookup(tenantId, entry.idempotencyKey());
+            if (knownId != null) {
+                ids.set(i, knownId);
+                duplicates++;
+                continue;
+            }
+            Long duplicateId = deduplicator.claim(tenantId, entry.source(), entry.payloadSha256());
+            if (duplicateId != null) {
+                ids.set(i, duplicateId == RawLogDeduplicator.PENDING_ID ? null : duplicateId);
+                duplicates++;
+            } else {
+                fresh.add(entry);
+                freshIndexes.add(i);
+            }
+        }
+
+        List<Long> saved = null;
+        try {
+            if (!spool.hasBacklog(tenantId)) {
+                try {
+                    saved = rawLogService.saveAll(tenantId, fresh);
+                } catch (DataAccessException e) {
+                    if (!spool.isEnabled() || !DbFailures.isTransient(e)) {
+                        throw e;
+                    }
+                    log.warn("DB 배치 저장 실패, 스풀로 전환 - tenant_id={}, count={}, 원인={}",
+                            tenantId, fresh.size(), e.getMessage());
+                }
+            }
+            if (saved == null) {
+                spoolEntries(tenantId, fresh);
+                return new DeduplicatedSave(ids, duplicates, fresh.size());
+            }
+        } catch (RuntimeException e) {
+            for (RawLogService.RawLogEntry entry : fresh) {
+                deduplicator.release(tenantId, entry.source(), entry.payloadSha256());
+            }
+            throw e;
+        }
+        for (int j = 0; j < saved.size(); j++) {
+            RawLogService.RawLogEntry entry = fresh.get(j);
+            ids.set(freshIndexes.get(j), saved.get(j));
+            deduplicator.complete(tenantId, entry.source(), entry.payloadSha256(), saved.get(j));
+            idempotencyKeys.remember(tenantId, entry.idempotencyKey(), saved.get(j));
+        }
+        return new DeduplicatedSave(ids, duplicates, 0);
+    }
+
+    /**
+     * 중복 제거 배치 저장 결과: 입력 순서의 id 목록, 생략된 중복 건수, 스풀에 기록된 건수.
+     */
+    private record DeduplicatedSave(List<Long> ids, int duplicates, int spooled) {}
+
+    /**
+     * 이벤트를 암호화해 로컬 스풀에 기록합니다. 디스크에도 쓸 수 없으면 예외를 던집니다.
+     */
+    private void spoolEntries(String tenantId, List<RawLogService.RawLogEntry> entries) {
+        List<RawLogService.EncryptedRawLog> encrypted = new ArrayList<>(entries.size());
+        for (RawLogService.RawLogEntry entry : entries) {
+            encrypted.add(rawLogService.encrypt(entry));
+        }
+        try {
+            spool.append(tenantId, encrypted);
+        } catch (IOException e) {
+            throw new UncheckedIOException("raw log spool append failed", e);
+        }
+    }
+
+    /**
+     * 단건 요청 본문을 파싱합니다. 인코딩별 파싱 시간과 본문 크기를 기록합니다.
+     * - raw-payload 모드 또는 CBOR/Smile: 스트리밍 파서로 payload만 잘라 냅니다(객체 트리 없음).
+     * - 그 외(JSON): 기존처럼 객체로 바인딩한 뒤 payload를 다시 직렬화합니다.
+     */
+    private RawIngestEnvelope parseEnvelope(byte[] raw, Encoding encoding) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (rawPayloadEnabled || encoding != Encoding.JSON) {
+                return envelopeParser.parse(raw, encoding);
+            }
+            RawIngestRequest request = objectMapper.readValue(raw, RawIngestRequest.class);
+            if (request == null) {
+                throw new IOException("request body must be a JSON object");
+            }
+            return toEnvelope(request);
+        } finally {
+            recordDecode(encoding, raw.length, start);
+        }
+    }
+
+    /**
+     * 배치 요청 본문(배열)을 파싱합니다. null 원소는 null로 남깁니다.
+     */
+    private List<RawIngestEnvelope> parseEnvelopes(byte[] raw, Encoding encoding) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (rawPayloadEnabled || encoding != Encoding.JSON) {
+                return envelopeParser.parseArray(raw, encoding);
+            }
+            List<RawIngestRequest> requests = objectMapper.readValue(raw, new TypeReference<List<RawIngestRequest>>() {});
+            if (requests == null) {
+                throw new IOException("request body must be a JSON array");
+            }
+            List<RawIngestEnvelope> result = new ArrayList<>(requests.size());
+            for (RawIngestRequest request : requests) {
+                result.add(request == null ? null : toEnvelope(request));
+            }
+            return result;
+        } finally {
+            recordDecode(encoding, raw.length, start);
+        }
+    }
+
+    private void recordDecode(Encoding encoding, int bytes, long startNanos) {
+        decodeTimers.get(encoding).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        requestSizes.get(encoding).record(bytes);
+    }
+
+    private RawIngestEnvelope toEnvelope(RawIngestRequest request) throws JsonProcessingException {
+        return new RawIngestEnvelope(request.source(), request.eventType(), request.requestId(),
+                objectMapper.writeValueAsBytes(request.payload()));
+    }
+
+    /**
+     * 파싱된 요청을 저장용 엔트리로 바꿉니다(payload 바이트로 SHA-256 계산).
+     * - 본문의 requestId는 멱등 키(idempotency_key)로 저장하고, request_id 컬럼에는 전송 요청 id를 그대로 남깁니다.
+     */
+    private RawLogService.RawLogEntry toEntry(RawIngestEnvelope request, OffsetDateTime receivedAt, String requestId,
+                                              String userId, String role) {
+        String eventType = request.eventType() == null ? "UNKNOWN" : request.eventType();
+        String source = request.source() == null ? "UNKNOWN" : request.source();
+        return new RawLogService.RawLogEntry(source, eventType, request.payload(),
+                DigestUtils.sha256Hex(request.payload()), receivedAt, requestId, userId, role,
+                idempotencyKeys.isEnabled() ? request.requestId() : null);
+    }
+
+    /**
+     * 저장 컬럼 길이를 넘는 값이 있으면 오류 메시지, 없으면 null.
+     * - DB에서 길이 초과(제약 위반)로 실패하면 재시도/스풀로 해결되지 않으므로, 202를 돌려주기 전에 여기서 400으로 거절합니다.
+     */
+    private String columnLengthError(RawIngestEnvelope request) {
+        if (request.source() != null && request.source().length() > MAX_SOURCE_LENGTH) {
+            return "source exceeds " + MAX_SOURCE_LENGTH + " chars";
+        }
+        if (request.eventType() != null && request.eventType().length() > MAX_EVENT_TYPE_LENGTH) {
+            return "eventType exceeds " + MAX_EVENT_TYPE_LENGTH + " chars";
+        }
+        if (idempotencyKeys.isEnabled() && request.requestId() != null
+                && request.requestId().length() > IdempotencyKeyCache.MAX_KEY_LENGTH) {
+            return "requestId exceeds " + IdempotencyKeyCache.MAX_KEY_LENGTH + " chars";
+        }
+        return null;
+    }
+
+    /**
+     * 한 줄을 line 버퍼에 읽어 들입니다(줄바꿈 문자는 제외).
+     * - UTF-8에서 '\n' 바이트는 다른 문자의 일부가 될 수 없으므로 바이트 단위로 안전하게 자를 수 있습니다.
+     * - MAX_NDJSON_LINE_BYTES를 넘는 줄은 나머지를 버리고 LINE_TOO_LONG을 반환합니다(메모리 상한 보장).
+     *
+     * @return LINE_OK, LINE_TOO_LONG, 또는 더 읽을 내용이 없으면 LINE_EOF
+     */
+    private int readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        boolean tooLong = false;
+        int b = in.read();
+        if (b == -1) {
+            return LINE_EOF;
+        }
+        while (b != -1 && b != '\n') {
+            if (b != '\r') {
+                if (line.size() < MAX_NDJSON_LINE_BYTES) {
+                    line.write(b);
+                } else {
+                    tooLong = true;
+                }
+            }
+            b = in.read();
+        }
+        if (tooLong) {
+            line.reset();
+            return LINE_TOO_LONG;
+        }
+        return LINE_OK;
+    }
+
+    private boolean isBlank(ByteArrayOutputStream line) {
+        for (byte b : line.toByteArray()) {
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 세션 속성 값을 읽고, 없으면 ANONYMOUS를 반환합니다.
+     */
+    private String sessionValueOrAnonymous(HttpSession session, String attr) {
+        String value = (String) session.getAttribute(attr);
+        return (value == null || value.isBlank()) ? "ANONYMOUS" : value;
+    }
 }
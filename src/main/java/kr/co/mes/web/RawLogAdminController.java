@@ -1,27 +1,46 @@
 package kr.co.mes.web;
 
-import java.time.Duration;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import kr.co.mes.service.RawLogService;
+import kr.co.mes.support.RawLogCsvWriter;
+import kr.co.mes.support.RawLogExportJobs;
+import kr.co.mes.support.RawLogIndexHealthIndicator;
 import kr.co.mes.support.SessionConstants;
+import kr.co.mes.support.TenantContext;
 
 /**
  * 초보자용 상세 주석:
@@ -34,11 +53,16 @@ import kr.co.mes.support.SessionConstants;
 public class RawLogAdminController {
 
     private final RawLogService rawLogService;
+    private final RawLogExportJobs exportJobs;
+    private final RawLogIndexHealthIndicator indexHealth;
     private final boolean localProfile;
 
-    public RawLogAdminController(RawLogService rawLogService,
+    public RawLogAdminController(RawLogService rawLogService, RawLogExportJobs exportJobs,
+                                 RawLogIndexHealthIndicator indexHealth,
                                  @Value("${spring.profiles.active:local}") String activeProfile) {
         this.rawLogService = rawLogService;
+        this.exportJobs = exportJobs;
+        this.indexHealth = indexHealth;
         this.localProfile = activeProfile != null && activeProfile.toLowerCase().contains("local");
     }
 
@@ -46,7 +70,9 @@ public class RawLogAdminController {
      * 관리자 목록 조회.
      * - from/to: ISO-8601 문자열(예 2025-12-17T00:00:00Z)
      * - eventType, source, requestId: 선택 필터
-     * - limit: 최대 200, offset: 0 이상
+     * - limit: 최대 200
+     * - cursor: 이전 응답의 next_cursor (있으면 그 다음 페이지, 깊은 페이지도 빠름)
+     * - offset: 0 이상, cursor가 없을 때만 사용하는 호환 방식 (cursor와 함께 쓰면 400)
      */
     @GetMapping
     public ResponseEntity<?> findLogs(
@@ -57,6 +83,7 @@ public class RawLogAdminController {
             @RequestParam(required = false) String requestId,
             @RequestParam(defaultValue = "50") int limit,
             @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) String cursor,
             HttpSession session) {
 
         if (!isAdmin(session)) {
@@ -68,14 +95,42 @@ public class RawLogAdminController {
         if (offset < 0) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("offset must be >= 0"));
         }
+        RawLogService.ListCursor listCursor = null;
+        if (cursor != null && !cursor.isBlank()) {
+            if (offset > 0) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("cursor and offset cannot be combined"));
+            }
+            try {
+                listCursor = RawLogService.ListCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("invalid cursor"));
+            }
+        }
 
         OffsetDateTime fromTs = parseOrNull(from);
         OffsetDateTime toTs = parseOrNull(to);
 
-        Map<String, Object> result = rawLogService.findLogs(fromTs, toTs, eventType, source, requestId, limit, offset);
+        Map<String, Object> result = rawLogService.findLogs(fromTs, toTs, eventType, source, requestId, limit, offset,
+                listCursor);
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * 쿼리 모양별 실행 계획 점검 결과 (기동 시 EXPLAIN).
+     * - /actuator/health의 rawLogIndex 상세와 같은 내용이며, 헬스 상세는 익명에게 보이지 않으므로 관리자 API로 제공합니다.
+     */
+    @GetMapping("/query-plans")
+    public ResponseEntity<?> queryPlans(HttpSession session) {
+        if (!isAdmin(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error("forbidden"));
+        }
+        Health health = indexHealth.health();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", health.getStatus().getCode());
+        body.putAll(health.getDetails());
+        return ResponseEntity.ok(body);
+    }
+
     /**
      * 관리자 단건 상세 조회.
      */
@@ -92,11 +147,13 @@ public class RawLogAdminController {
     }
 
     /**
-     * 관리자 Export (CSV).
-     * - from/to 필수
-     * - 기간 최대 7일
-     * - limit 최대 5000
+     * 관리자 Export (CSV, 스트리밍).
+     * - from/to 필수 (기간 상한 없음)
+     * - limit: 0 이하이면 제한 없음(기본)
      * - includeDecrypted는 local 프로파일에서만 허용
+     * - 행을 DB에서 받는 대로 응답 스트림에 바로 쓰므로, 한 달치처럼 큰 Export도 메모리 사용량이 일정합니다.
+     * - Accept-Encoding에 gzip이 있으면 쓰면서 gzip으로 압축합니다(Content-Encoding: gzip).
+     * - 응답 본문을 쓰기 시작한 뒤에는 상태 코드를 바꿀 수 없으므로, 검증 오류는 모두 쓰기 전에 JSON으로 돌려줍니다.
      */
     @GetMapping(value = "/export", produces = "text/csv")
     public ResponseEntity<?> export(
@@ -105,40 +162,173 @@ public class RawLogAdminController {
             @RequestParam(required = false) String eventType,
             @RequestParam(required = false) String source,
             @RequestParam(required = false) String requestId,
-            @RequestParam(defaultValue = "1000") int limit,
+            @RequestParam(defaultValue = "0") long limit,
+            @RequestParam(defaultValue = "false") boolean includeDecrypted,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpSession session,
+            HttpServletResponse response) throws IOException {
+
+        ExportRange range = validateExport(session, from, to, includeDecrypted);
+        if (range.error() != null) {
+            return range.error();
+        }
+
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=raw_logs.csv");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        OutputStream body = gzip ? new GZIPOutputStream(response.getOutputStream(), 8192) : response.getOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 64 * 1024)) {
+            RawLogCsvWriter csv = new RawLogCsvWriter(writer, includeDecrypted);
+            csv.writeHeader();
+            rawLogService.exportLogs(range.from(), range.to(), eventType, source, requestId, limit, includeDecrypted,
+                    csv::writeRow);
+        }
+        // 응답은 이미 썼으므로 Spring이 따로 본문을 쓰지 않게 null을 반환합니다.
+        return null;
+    }
+
+    /**
+     * 비동기 Export 작업 제출.
+     * - 조건은 /export와 같고, 결과는 작업이 끝난 뒤 download_url에서 gzip CSV 파일로 받습니다.
+     * - 테넌트별 동시 작업 수나 대기열이 가득 차면 429.
+     * - includeDecrypted=true는 400: 결과 파일이 ttl 동안 디스크에 남으므로 평문을 쓰지 않습니다(복호화 포함은 /export 스트리밍만).
+     */
+    @PostMapping("/export-jobs")
+    public ResponseEntity<?> submitExportJob(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) String requestId,
+            @RequestParam(defaultValue = "0") long limit,
             @RequestParam(defaultValue = "false") boolean includeDecrypted,
             HttpSession session) {
 
+        ExportRange range = validateExport(session, from, to, includeDecrypted);
+        if (range.error() != null) {
+            return range.error();
+        }
+        if (includeDecrypted) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(error("includeDecrypted is not supported for export jobs, use /export"));
+        }
+        RawLogExportJobs.Submission submission = exportJobs.submit(TenantContext.getTenantIdOrDefault(),
+                (String) session.getAttribute(SessionConstants.ATTR_USER_ID), range.from(), range.to(),
+                eventType, source, requestId, limit);
+        if (submission.job() == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error(submission.rejectReason()));
+        }
+        String jobId = submission.job().id();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ok", true);
+        body.put("job_id", jobId);
+        body.put("state", submission.job().state().name());
+        body.put("status_url", "/api/admin/raw-logs/export-jobs/" + jobId);
+        body.put("download_url", "/api/admin/raw-logs/export-jobs/" + jobId + "/download");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(body);
+    }
+
+    /**
+     * 비동기 Export 작업 상태(state, rows_written 등). 다른 테넌트의 작업이거나 만료되었으면 404.
+     */
+    @GetMapping("/export-jobs/{jobId}")
+    public ResponseEntity<?> exportJobStatus(@PathVariable String jobId, HttpSession session) {
         if (!isAdmin(session)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error("forbidden"));
         }
-        if (limit < 1 || limit > 5000) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("limit must be 1~5000"));
+        RawLogExportJobs.ExportJob job = exportJobs.find(TenantContext.getTenantIdOrDefault(), jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error("not found"));
         }
-        if (includeDecrypted && !localProfile) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("includeDecrypted allowed only in local"));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ok", true);
+        body.putAll(job.toStatus());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * 비동기 Export 결과 다운로드(gzip CSV).
+     * - 파일 응답이므로 Range 요청(이어받기, 206 Partial Content)을 지원합니다.
+     * - 아직 끝나지 않았거나 실패한 작업이면 409.
+     */
+    @GetMapping(value = "/export-jobs/{jobId}/download", produces = {"application/gzip", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> downloadExportJob(@PathVariable String jobId, HttpSession session) {
+        if (!isAdmin(session)) {
+            return exportError(HttpStatus.FORBIDDEN, "forbidden");
         }
+        RawLogExportJobs.ExportJob job = exportJobs.find(TenantContext.getTenantIdOrDefault(), jobId);
+        if (job == null) {
+            return exportError(HttpStatus.NOT_FOUND, "not found");
+        }
+        Path file = job.file();
+        if (file == null) {
+            return exportError(HttpStatus.CONFLICT, "job is " + job.state().name());
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.valueOf("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=raw_logs_" + jobId + ".csv.gz")
+                .body(new FileSystemResource(file));
+    }
 
-        OffsetDateTime fromTs = parseOrNull(from);
-        OffsetDateTime toTs = parseOrNull(to);
+    /**
+     * 비동기 Export 작업 취소/삭제(실행 중이면 멈추고 결과 파일도 지움).
+     */
+    @DeleteMapping("/export-jobs/{jobId}")
+    public ResponseEntity<?> cancelExportJob(@PathVariable String jobId, HttpSession session) {
+        if (!isAdmin(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error("forbidden"));
+        }
+        if (!exportJobs.cancel(TenantContext.getTenantIdOrDefault(), jobId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error("not found"));
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("ok", true);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Export 조건 검증 결과. error가 있으면 그대로 응답합니다.
+     */
+    private record ExportRange(OffsetDateTime from, OffsetDateTime to, ResponseEntity<Map<String, Object>> error) {}
+
+    /**
+     * Export/Export 작업 공통 검증: ADMIN, includeDecrypted 허용 여부, from/to 필수·순서.
+     */
+    private ExportRange validateExport(HttpSession session, String from, String to, boolean includeDecrypted) {
+        if (!isAdmin(session)) {
+            return new ExportRange(null, null, exportError(HttpStatus.FORBIDDEN, "forbidden"));
+        }
+        if (includeDecrypted && !localProfile) {
+            return new ExportRange(null, null, exportError(HttpStatus.BAD_REQUEST, "includeDecrypted allowed only in local"));
+        }
+        OffsetDateTime fromTs;
+        OffsetDateTime toTs;
+        try {
+            fromTs = parseOrNull(from);
+            toTs = parseOrNull(to);
+        } catch (DateTimeParseException e) {
+            return new ExportRange(null, null, exportError(HttpStatus.BAD_REQUEST, "from/to must be ISO-8601"));
+        }
         if (fromTs == null || toTs == null) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("from/to is required"));
+            return new ExportRange(null, null, exportError(HttpStatus.BAD_REQUEST, "from/to is required"));
         }
         if (toTs.isBefore(fromTs)) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("to must be >= from"));
-        }
-        Duration range = Duration.between(fromTs, toTs);
-        if (range.toDays() > 7) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("range must be within 7 days"));
+            return new ExportRange(null, null, exportError(HttpStatus.BAD_REQUEST, "to must be >= from"));
         }
+        return new ExportRange(fromTs, toTs, null);
+    }
 
-        List<Map<String, Object>> rows = rawLogService.exportLogs(fromTs, toTs, eventType, source, requestId, limit, includeDecrypted);
-        String csv = toCsv(rows, includeDecrypted);
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.valueOf("text/csv"))
-                .header("Content-Disposition", "attachment; filename=raw_logs.csv")
-                .body(csv);
+    /**
+     * Export 검증 오류. 매핑의 produces(text/csv)와 관계없이 JSON으로 쓰도록 Content-Type을 지정합니다.
+     */
+    private ResponseEntity<Map<String, Object>> exportError(HttpStatus status, String msg) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(error(msg));
     }
 
     private boolean isAdmin(HttpSession session) {
@@ -159,38 +349,4 @@ public class RawLogAdminController {
         }
         return OffsetDateTime.parse(value, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
     }
-
-    private String toCsv(List<Map<String, Object>> rows, boolean includeDecrypted) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("id,tenant_id,source,event_type,received_at,request_id,user_id,role,payload_preview");
-        if (includeDecrypted) {
-            sb.append(",decrypted_payload");
-        }
-        sb.append("\n");
-
-        for (Map<String, Object> row : rows) {
-            sb.append(csv(row.get("id"))).append(",");
-            sb.append(csv(row.get("tenant_id"))).append(",");
-            sb.append(csv(row.get("source"))).append(",");
-            sb.append(csv(row.get("event_type"))).append(",");
-            sb.append(csv(row.get("received_at"))).append(",");
-            sb.append(csv(row.get("request_id"))).append(",");
-            sb.append(csv(row.get("user_id"))).append(",");
-            sb.append(csv(row.get("role"))).append(",");
-            sb.append(csv(row.get("payload_preview")));
-            if (includeDecrypted) {
-                sb.append(",").append(csv(row.get("decrypted_payload")));
-            }
-            sb.append("\n");
-        }
-        return sb.toString();
-    }
-
-    private String csv(Object value) {
-        if (value == null) {
-            return "\"\"";
-        }
-        String s = String.valueOf(value).replace("\"", "\"\"");
-        return "\"" + s + "\"";
-    }
 }
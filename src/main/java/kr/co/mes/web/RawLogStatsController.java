@@ -0,0 +1,111 @@
+package kr.co.mes.web;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import kr.co.mes.service.RawLogService;
+import kr.co.mes.support.RawLogRollup;
+import kr.co.mes.support.SessionConstants;
+
+/**
+ * 초보자용 상세 주석:
+ * - 대시보드용 이벤트 통계 API입니다(분/시간 단위, event_type·source별 건수와 페이로드 바이트).
+ * - raw_ingest_log는 읽지 않고 수집 시 갱신되는 집계 테이블(raw_log_rollup_minute/hour)만 읽습니다.
+ * - 세션 role이 ADMIN인지 확인하고, 테넌트는 세션 확정값(라우팅 DataSource)을 사용합니다.
+ */
+@RestController
+@RequestMapping(path = "/api/admin/raw-logs/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+@Profile("local")
+public class RawLogStatsController {
+
+    private final RawLogService rawLogService;
+    private final Duration minuteMaxRange;
+
+    public RawLogStatsController(RawLogService rawLogService,
+                                 @Value("${mes.rollup.minute-max-range-hours:48}") long minuteMaxRangeHours) {
+        this.rawLogService = rawLogService;
+        this.minuteMaxRange = Duration.ofHours(Math.max(minuteMaxRangeHours, 1));
+    }
+
+    /**
+     * 통계 조회.
+     * - from/to: ISO-8601 문자열(필수), from이 속한 버킷부터 to 이전 버킷까지
+     * - granularity: minute(기본) 또는 hour. minute은 기간이 minute-max-range-hours를 넘으면 400
+     * - eventType, source: 선택 필터
+     */
+    @GetMapping
+    public ResponseEntity<?> stats(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "minute") String granularity,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) String source,
+            HttpSession session) {
+
+        if (!isAdmin(session)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error("forbidden"));
+        }
+        RawLogRollup.Granularity unit;
+        try {
+            unit = RawLogRollup.Granularity.parse(granularity);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("granularity must be minute or hour"));
+        }
+        OffsetDateTime fromTs;
+        OffsetDateTime toTs;
+        try {
+            fromTs = parseOrNull(from);
+            toTs = parseOrNull(to);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("from/to must be ISO-8601"));
+        }
+        if (fromTs == null || toTs == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("from/to is required"));
+        }
+        if (toTs.isBefore(fromTs)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error("to must be >= from"));
+        }
+        if (unit == RawLogRollup.Granularity.MINUTE && Duration.between(fromTs, toTs).compareTo(minuteMaxRange) > 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(error("range too long for minute granularity, use granularity=hour"));
+        }
+
+        Map<String, Object> result = rawLogService.findStats(fromTs, toTs, unit, eventType, source);
+        return ResponseEntity.ok(result);
+    }
+
+    private boolean isAdmin(HttpSession session) {
+        String role = (String) session.getAttribute(SessionConstants.ATTR_ROLE);
+        return "ADMIN".equalsIgnoreCase(role);
+    }
+
+    private Map<String, Object> error(String msg) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("ok", false);
+        body.put("error", msg);
+        return body;
+    }
+
+    private OffsetDateTime parseOrNull(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return OffsetDateTime.parse(value, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+}
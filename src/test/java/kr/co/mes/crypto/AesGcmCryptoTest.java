@@ -0,0 +1,135 @@
+package kr.co.mes.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import kr.co.mes.web.TestCryptoEnv;
+
+/**
+ * 초보자용 상세 주석:
+ * - AES-GCM 엔진의 왕복(바이트/ByteBuffer), 위변조 감지, 기존(랜덤 nonce) 암호문 호환,
+ *   그리고 여러 스레드가 동시에 암호화해도 nonce가 절대 겹치지 않는지를 검증합니다.
+ */
+class AesGcmCryptoTest {
+
+    static {
+        TestCryptoEnv.ensure();
+    }
+
+    private final CryptoKeyRegistry keyRegistry = new CryptoKeyRegistry();
+    private final AesGcmCrypto crypto = new AesGcmCrypto(keyRegistry);
+    private final String keyId = keyRegistry.getActiveKeyId();
+
+    @Test
+    @DisplayName("바이트 배열로 암호화한 것을 그대로 복호화할 수 있다")
+    void roundTripBytes() {
+        byte[] plain = "{\"temp\":21.5}".getBytes(StandardCharsets.UTF_8);
+        CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt(plain, keyId);
+
+        assertEquals(AesGcmCrypto.NONCE_LENGTH, enc.nonce().length);
+        assertEquals(AesGcmCrypto.cipherTextLength(plain.length), enc.cipherText().length);
+        assertArrayEquals(plain, crypto.decryptBytes(enc.cipherText(), enc.nonce(), keyId));
+        assertEquals("{\"temp\":21.5}", crypto.decrypt(enc.cipherTextBase64(), enc.nonceBase64(), keyId));
+    }
+
+    @Test
+    @DisplayName("호출자가 넘긴 ByteBuffer(direct 포함)로 암복호화한다")
+    void roundTripByteBuffers() {
+        byte[] plain = new byte[4096];
+        new SecureRandom().nextBytes(plain);
+        ByteBuffer in = ByteBuffer.allocateDirect(plain.length).put(plain).flip();
+        ByteBuffer cipherOut = ByteBuffer.allocateDirect(AesGcmCrypto.cipherTextLength(plain.length));
+        byte[] nonce = new byte[AesGcmCrypto.NONCE_LENGTH];
+
+        int written = crypto.encrypt(in, cipherOut, nonce, keyId);
+        assertEquals(AesGcmCrypto.cipherTextLength(plain.length), written);
+
+        ByteBuffer plainOut = ByteBuffer.allocate(plain.length);
+        assertEquals(plain.length, crypto.decrypt(cipherOut.flip(), nonce, keyId, plainOut));
+        assertArrayEquals(plain, plainOut.array());
+    }
+
+    @Test
+    @DisplayName("암호문이 바뀌면 인증 태그 검증에 실패한다")
+    void detectsTampering() {
+        CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt("{\"v\":1}".getBytes(StandardCharsets.UTF_8), keyId);
+        enc.cipherText()[0] ^= 1;
+        assertThrows(IllegalStateException.class, () -> crypto.decryptBytes(enc.cipherText(), enc.nonce(), keyId));
+    }
+
+    @Test
+    @DisplayName("기존 방식(랜덤 nonce)으로 만든 암호문도 복호화된다")
+    void decryptsRandomNonceCipherText() throws Exception {
+        byte[] nonce = new byte[12];
+        new SecureRandom().nextBytes(nonce);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, keyRegistry.getKey(keyId), new GCMParameterSpec(128, nonce));
+        byte[] cipherText = cipher.doFinal("legacy".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("legacy", crypto.decrypt(Base64.getEncoder().encodeToString(cipherText),
+                Base64.getEncoder().encodeToString(nonce), keyId));
+    }
+
+    @Test
+    @DisplayName("여러 스레드가 동시에 암호화해도 nonce가 한 번도 겹치지 않는다")
+    void noncesNeverRepeatUnderConcurrency() throws Exception {
+        int threads = 16;
+        int perThread = 20_000;
+        Set<ByteBuffer> nonces = ConcurrentHashMap.newKeySet();
+        byte[] plain = "{\"v\":1}".getBytes(StandardCharsets.UTF_8);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        nonces.add(ByteBuffer.wrap(crypto.encrypt(plain, keyId).nonce()));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(threads * perThread, nonces.size());
+    }
+
+    @Test
+    @DisplayName("같은 인스턴스의 nonce는 prefix가 같고 카운터만 1씩 증가한다")
+    void nonceIsPrefixPlusCounter() {
+        byte[] a = new byte[12];
+        byte[] b = new byte[12];
+        crypto.nextNonce(a);
+        crypto.nextNonce(b);
+        assertArrayEquals(Arrays.copyOf(a, 4), Arrays.copyOf(b, 4));
+        assertEquals(ByteBuffer.wrap(a, 4, 8).getLong() + 1, ByteBuffer.wrap(b, 4, 8).getLong());
+    }
+}
@@ -0,0 +1,58 @@
+package kr.co.mes.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import kr.co.mes.web.TestCryptoEnv;
+
+/**
+ * 초보자용 상세 주석:
+ * - 키 파일(MES_CRYPTO_KEYS_FILE)을 쓰면 reload()가 파일을 다시 읽어 재기동 없이 키를 바꾸는지 검증합니다.
+ */
+class CryptoKeyRegistryTest {
+
+    static {
+        TestCryptoEnv.ensure();
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("키 파일을 바꾸고 reload하면 새 키 목록/활성 키를 쓰고, 잘못된 파일이면 기존 키를 유지한다")
+    void reloadReadsKeyFile() throws IOException {
+        String k = CryptoKeyRegistry.generateRandomBase64Key();
+        Path file = dir.resolve("mes-crypto.properties");
+        Files.writeString(file, "MES_CRYPTO_KEYS=f1=" + k + "\nMES_CRYPTO_ACTIVE_KEY_ID=f1\n");
+
+        CryptoKeyRegistry registry;
+        System.setProperty("MES_CRYPTO_KEYS_FILE", file.toString());
+        try {
+            registry = new CryptoKeyRegistry();
+        } finally {
+            System.clearProperty("MES_CRYPTO_KEYS_FILE");
+        }
+        assertEquals("file", registry.getKeySource());
+        assertEquals(Set.of("f1"), registry.getKeyIds());
+        assertEquals("f1", registry.getActiveKeyId());
+
+        Files.writeString(file, "MES_CRYPTO_KEYS=f1=" + k + ";f2=" + k + "\nMES_CRYPTO_ACTIVE_KEY_ID=f2\n");
+        assertTrue(registry.reload());
+        assertEquals(Set.of("f1", "f2"), registry.getKeyIds());
+        assertEquals("f2", registry.getActiveKeyId());
+
+        Files.writeString(file, "MES_CRYPTO_KEYS=broken\n");
+        assertThrows(IllegalStateException.class, registry::reload);
+        assertEquals("f2", registry.getActiveKeyId());
+    }
+}
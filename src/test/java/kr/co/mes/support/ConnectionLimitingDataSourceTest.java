@@ -0,0 +1,70 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 동시 입장 제한이 풀 크기만큼만 커넥션을 내주고, close() 시 한 번만 반납하는지 가짜 DataSource로 검증합니다.
+ */
+class ConnectionLimitingDataSourceTest {
+
+    private final AtomicInteger closed = new AtomicInteger();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConnectionLimitingDataSource dataSource =
+            new ConnectionLimitingDataSource("tenant_a", fakeDataSource(), 2, 50, registry);
+
+    @Test
+    @DisplayName("허가 수를 넘으면 대기 후 실패하고, 반납되면 다시 입장할 수 있다")
+    void limitsConcurrentConnections() throws Exception {
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertEquals(1.0, registry.get("mes.datasource.connection_limit.timeouts").counter().count());
+        assertEquals(2.0, registry.get("mes.datasource.connection_limit.in_use").gauge().value());
+
+        first.close();
+        first.close();
+        assertEquals(2, closed.get());
+        Connection third = dataSource.getConnection();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        second.close();
+        third.close();
+        assertEquals(0.0, registry.get("mes.datasource.connection_limit.in_use").gauge().value());
+    }
+
+    private DataSource fakeDataSource() {
+        return new AbstractDataSource() {
+            @Override
+            public Connection getConnection() {
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            if ("close".equals(method.getName())) {
+                                closed.incrementAndGet();
+                            }
+                            return null;
+                        });
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) {
+                return getConnection();
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 멱등 키 캐시의 기억/조회, 테넌트 분리, ttl 만료, 크기 상한을 스프링 없이 검증합니다.
+ */
+class IdempotencyKeyCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IdempotencyKeyCache cache = new IdempotencyKeyCache(registry, true, 1000, 100, now::get);
+
+    @Test
+    @DisplayName("기억한 키는 원래 id를 돌려주고, 다른 테넌트에서는 보이지 않는다")
+    void rememberedKeyReturnsIdPerTenant() {
+        assertNull(cache.lookup("tenant_a", "order-1"));
+        cache.remember("tenant_a", "order-1", 42L);
+
+        assertEquals(42L, cache.lookup("tenant_a", "order-1"));
+        assertNull(cache.lookup("tenant_b", "order-1"));
+        assertEquals(1.0, registry.get("mes.ingest.idempotency.hits").tag("tenant", "tenant_a").counter().count());
+    }
+
+    @Test
+    @DisplayName("ttl이 지나면 캐시에서 사라진다")
+    void expiresAfterTtl() {
+        cache.remember("tenant_a", "order-1", 42L);
+        now.addAndGet(1000);
+        assertNull(cache.lookup("tenant_a", "order-1"));
+    }
+
+    @Test
+    @DisplayName("키 수가 상한을 넘지 않고, 최근 키는 남는다")
+    void boundedSize() {
+        for (int i = 0; i < 1000; i++) {
+            now.incrementAndGet();
+            cache.remember("tenant_a", "k-" + i, i);
+        }
+        double size = registry.get("mes.ingest.idempotency.cache.size").tag("tenant", "tenant_a").gauge().value();
+        assertTrue(size <= 100);
+        assertEquals(999L, cache.lookup("tenant_a", "k-999"));
+    }
+
+    @Test
+    @DisplayName("꺼져 있거나 키가 없으면 아무것도 기억하지 않는다")
+    void disabledOrNullKey() {
+        IdempotencyKeyCache disabled = new IdempotencyKeyCache(new SimpleMeterRegistry(), false, 1000, 100, now::get);
+        disabled.remember("tenant_a", "order-1", 1L);
+        assertNull(disabled.lookup("tenant_a", "order-1"));
+
+        cache.remember("tenant_a", null, 1L);
+        assertNull(cache.lookup("tenant_a", null));
+    }
+}
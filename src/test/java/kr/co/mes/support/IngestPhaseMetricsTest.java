@@ -0,0 +1,53 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import kr.co.mes.support.IngestPhaseMetrics.Phase;
+
+/**
+ * 초보자용 상세 주석:
+ * - 단계별 타이머가 phase/tenant/event_type 태그로 기록되고, event_type 태그 종류가 상한을 넘지 않는지 검증합니다.
+ */
+class IngestPhaseMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IngestPhaseMetrics metrics = new IngestPhaseMetrics(registry, 2);
+
+    @Test
+    @DisplayName("단계별로 태그가 붙은 타이머에 기록되고, 반환값은 다음 단계 시작 시각이다")
+    void recordsPerPhase() {
+        long start = System.nanoTime();
+        long next = metrics.record(Phase.ENCRYPT, "tenant_a", "ALARM", start);
+        metrics.record(Phase.INSERT, "tenant_a", "ALARM", next);
+
+        assertTrue(next >= start);
+        assertEquals(1, registry.get("mes.ingest.phase.latency")
+                .tags("phase", "encrypt", "tenant", "tenant_a", "event_type", "ALARM").timer().count());
+        assertEquals(1, registry.get("mes.ingest.phase.latency")
+                .tags("phase", "insert", "tenant", "tenant_a", "event_type", "ALARM").timer().count());
+        assertNotNull(registry.find("mes.ingest.phase.latency.percentile").tag("phi", "0.95").gauge());
+    }
+
+    @Test
+    @DisplayName("event_type 종류가 상한을 넘으면 OTHER로 묶인다")
+    void boundsEventTypeCardinality() {
+        long now = System.nanoTime();
+        metrics.record(Phase.HASH, "tenant_a", "A", now);
+        metrics.record(Phase.HASH, "tenant_a", "B", now);
+        metrics.record(Phase.HASH, "tenant_a", "C", now);
+        metrics.record(Phase.HASH, "tenant_a", "D", now);
+        metrics.record(Phase.HASH, "tenant_b", "C", now);
+
+        assertEquals(2, registry.get("mes.ingest.phase.latency")
+                .tags("tenant", "tenant_a", "event_type", "OTHER").timer().count());
+        assertEquals(1, registry.get("mes.ingest.phase.latency")
+                .tags("tenant", "tenant_b", "event_type", "C").timer().count());
+    }
+}
@@ -0,0 +1,99 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 토큰 버킷의 버스트/재충전/테넌트·source 분리와 동시성에서의 정확성을 스프링 없이 검증합니다.
+ * - 시계를 AtomicLong(ns)으로 바꿔 끼워 시간 경과를 흉내 냅니다.
+ */
+class IngestRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IngestRateLimiter limiter = new IngestRateLimiter(registry, true,
+            Map.of("tenant_a", new IngestRateLimiter.Limit(10, 5),
+                    "tenant_b", new IngestRateLimiter.Limit(0, 0)),
+            new IngestRateLimiter.Limit(100, 10), 100, now::get);
+
+    @Test
+    @DisplayName("버스트만큼 통과하고 이후는 거절되며, 시간이 지나면 다시 충전된다")
+    void burstThenRefill() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquireTenant("tenant_a"));
+        }
+        long wait = limiter.tryAcquireTenant("tenant_a");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+        assertEquals(1, IngestRateLimiter.retryAfterSeconds(wait));
+        assertEquals(1.0, registry.get("mes.ingest.rate_limit.throttled")
+                .tag("tenant", "tenant_a").tag("scope", "tenant").counter().count());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, limiter.tryAcquireTenant("tenant_a"));
+        assertTrue(limiter.tryAcquireTenant("tenant_a") > 0);
+    }
+
+    @Test
+    @DisplayName("한도가 0인 테넌트는 제한하지 않고, source 버킷은 서로 독립이다")
+    void unlimitedTenantAndIndependentSources() {
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limiter.tryAcquireTenant("tenant_b"));
+        }
+        assertEquals(0, limiter.tryAcquireSource("tenant_a", "plc-1", 10));
+        assertTrue(limiter.tryAcquireSource("tenant_a", "plc-1", 1) > 0);
+        assertEquals(0, limiter.tryAcquireSource("tenant_a", "plc-2", 10));
+        assertEquals(0, limiter.tryAcquireSource("tenant_b", "plc-1", 10));
+    }
+
+    @Test
+    @DisplayName("버스트보다 큰 배치는 버킷이 가득 찼을 때만 통과하고 초과분만큼 다음 요청을 늦춘다")
+    void oversizedBatchBorrowsAgainstFuture() {
+        assertEquals(0, limiter.tryAcquireSource("tenant_a", "plc-1", 30));
+        // 30건 = 0.3초 분량, 버스트 10건(0.1초)을 뺀 0.2초 + 다음 1건(0.01초)을 기다려야 함
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(210), limiter.tryAcquireSource("tenant_a", "plc-1", 1));
+    }
+
+    @Test
+    @DisplayName("여러 스레드가 동시에 소비해도 버스트를 넘겨 통과시키지 않는다")
+    void concurrentAcquireNeverExceedsBurst() throws InterruptedException {
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (limiter.tryAcquireSource("tenant_a", "plc-1", 1) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(10, granted.get());
+    }
+}
@@ -0,0 +1,100 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import kr.co.mes.crypto.AesGcmCrypto;
+import kr.co.mes.crypto.CryptoKeyRegistry;
+import kr.co.mes.support.PayloadBulkDecryptor.CipherColumns;
+import kr.co.mes.support.PayloadBulkDecryptor.Decrypted;
+import kr.co.mes.web.TestCryptoEnv;
+
+/**
+ * 초보자용 상세 주석:
+ * - 여러 행을 병렬로 복호화해도 결과가 입력 순서대로 나오고, 실패한 행만 오류로 표시되는지 DB 없이 검증합니다.
+ */
+class PayloadBulkDecryptorTest {
+
+    static {
+        TestCryptoEnv.ensure();
+    }
+
+    private final CryptoKeyRegistry keyRegistry = new CryptoKeyRegistry();
+    private final AesGcmCrypto crypto = new AesGcmCrypto(keyRegistry);
+    private final PayloadCompressor compressor = new PayloadCompressor(null, new SimpleMeterRegistry(), true, 3, 64,
+            100, 1_048_576, 10, 10_000, 1_048_576, System::currentTimeMillis);
+    private final PayloadBulkDecryptor decryptor = new PayloadBulkDecryptor(crypto, compressor, 4, 8);
+
+    @AfterEach
+    void tearDown() {
+        decryptor.shutdown();
+    }
+
+    private CipherColumns encrypted(String json) {
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        PayloadCompressor.Compressed compressed = compressor.compress("tenant_a", "ALARM", payload);
+        CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt(compressed.data(), keyRegistry.getActiveKeyId());
+        return new CipherColumns(enc.keyId(), enc.cipherText(), enc.nonce(), null, null,
+                compressed.codec(), compressed.dictId());
+    }
+
+    private static String payload(int i) {
+        return "{\"equipmentId\":\"EQ-" + i + "\",\"alarmCode\":\"A" + (i % 7) + "\",\"note\":\""
+                + "x".repeat(i % 90) + "\"}";
+    }
+
+    @Test
+    @DisplayName("병렬로 나눠 복호화해도 결과는 입력 순서 그대로다")
+    void preservesOrder() {
+        List<CipherColumns> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(encrypted(payload(i)));
+        }
+
+        List<Decrypted> results = decryptor.decryptAll("tenant_a", rows);
+
+        assertEquals(1000, results.size());
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(results.get(i).failed());
+            assertEquals(payload(i), results.get(i).plain());
+        }
+    }
+
+    @Test
+    @DisplayName("복호화에 실패한 행만 오류가 표시되고, 나머지 행과 v1(Base64) 행은 정상 처리된다")
+    void reportsErrorsPerRow() {
+        List<CipherColumns> rows = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            rows.add(encrypted(payload(i)));
+        }
+        CipherColumns good = rows.get(5);
+        byte[] tampered = good.cipherBin().clone();
+        tampered[0] ^= 1;
+        rows.set(5, new CipherColumns(good.keyId(), tampered, good.nonceBin(), null, null, good.codec(), good.dictId()));
+        CryptoKeyRegistry.EncryptedPayload v1 = crypto.encrypt(payload(7).getBytes(StandardCharsets.UTF_8),
+                keyRegistry.getActiveKeyId());
+        rows.set(7, new CipherColumns(v1.keyId(), null, null, v1.cipherTextBase64(), v1.nonceBase64(), null, null));
+        rows.set(9, new CipherColumns(null, null, null, null, null, null, null));
+
+        List<Decrypted> results = decryptor.decryptAll("tenant_a", rows);
+
+        assertTrue(results.get(5).failed());
+        assertNull(results.get(5).plain());
+        assertEquals(payload(7), results.get(7).plain());
+        assertFalse(results.get(9).failed());
+        assertNull(results.get(9).plain());
+        assertEquals(payload(19), results.get(19).plain());
+    }
+}
@@ -0,0 +1,95 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 페이로드 압축(사전 없음/사전 사용), 샘플 수집과 사전 학습, 압축 해제 왕복을 DB 없이 검증합니다.
+ * - 사전은 install로 직접 등록하므로 DB 조회(JdbcTemplate)는 쓰지 않습니다.
+ */
+class PayloadCompressorTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final PayloadCompressor compressor = new PayloadCompressor(null, new SimpleMeterRegistry(), true, 3, 64,
+            100, 1_048_576, 10, 10_000, 1_048_576, now::get);
+
+    private static byte[] alarm(int n) {
+        return ("{\"equipmentId\":\"EQ-" + (n % 37) + "\",\"alarmCode\":\"A" + (n % 11) + "\",\"severity\":\"MAJOR\","
+                + "\"temperature\":" + (20 + n % 13) + ".5,\"line\":\"LINE-" + (n % 4) + "\",\"seq\":" + n + "}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("작은 페이로드는 압축하지 않고 원본 그대로 둔다")
+    void smallPayloadUntouched() {
+        byte[] small = "{\"v\":1}".getBytes(StandardCharsets.UTF_8);
+        PayloadCompressor.Compressed result = compressor.compress("tenant_a", "ALARM", small);
+        assertSame(small, result.data());
+        assertNull(result.codec());
+        assertSame(small, compressor.decompress("tenant_a", result.data(), result.codec(), result.dictId()));
+    }
+
+    @Test
+    @DisplayName("사전을 학습해 등록하면 event_type의 압축에 사용되고, 압축 해제 결과는 원본과 같다")
+    void trainedDictionaryRoundTrip() {
+        for (int i = 0; i < 200; i++) {
+            compressor.compress("tenant_a", "ALARM", alarm(i));
+        }
+        List<PayloadCompressor.TrainingSet> sets = compressor.drainTrainingSets();
+        assertEquals(1, sets.size());
+        assertEquals("ALARM", sets.get(0).eventType());
+
+        byte[] dictionary = PayloadCompressor.train(sets.get(0).samples(), 4096);
+        assertNotNull(dictionary);
+        compressor.install("tenant_a", "ALARM", 7L, dictionary, now.get());
+
+        byte[] payload = alarm(12345);
+        PayloadCompressor.Compressed plain = new PayloadCompressor(null, new SimpleMeterRegistry(), true, 3, 64,
+                100, 1_048_576, 10, 10_000, 1_048_576, now::get).compress("tenant_a", "ALARM", payload);
+        PayloadCompressor.Compressed withDict = compressor.compress("tenant_a", "ALARM", payload);
+        assertEquals(PayloadCompressor.CODEC_ZSTD, withDict.codec());
+        assertEquals(7L, withDict.dictId());
+        assertTrue(withDict.data().length < payload.length);
+        assertTrue(withDict.data().length < plain.data().length);
+        assertArrayEquals(payload, compressor.decompress("tenant_a", withDict.data(), withDict.codec(), withDict.dictId()));
+
+        // 다른 테넌트/이벤트 타입에는 사전이 적용되지 않는다
+        assertNull(compressor.compress("tenant_b", "ALARM", payload).dictId());
+        assertNull(compressor.compress("tenant_a", "TEMP", payload).dictId());
+    }
+
+    @Test
+    @DisplayName("사전이 오래되면 다시 샘플을 모은다")
+    void resamplesAfterRetrainInterval() {
+        compressor.install("tenant_a", "ALARM", 1L, PayloadCompressor.train(samples(), 4096), now.get());
+        for (int i = 0; i < 200; i++) {
+            compressor.compress("tenant_a", "ALARM", alarm(i));
+        }
+        assertTrue(compressor.drainTrainingSets().isEmpty());
+
+        now.addAndGet(10_000);
+        for (int i = 0; i < 200; i++) {
+            compressor.compress("tenant_a", "ALARM", alarm(i));
+        }
+        assertEquals(1, compressor.drainTrainingSets().size());
+    }
+
+    private static List<byte[]> samples() {
+        return IntStream.range(0, 200).mapToObj(PayloadCompressorTest::alarm).toList();
+    }
+}
@@ -0,0 +1,106 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import kr.co.mes.support.RawIngestEnvelopeParser.Encoding;
+import kr.co.mes.support.RawIngestEnvelopeParser.RawIngestEnvelope;
+
+/**
+ * 초보자용 상세 주석:
+ * - payload가 원본 바이트 구간에서 문자열 밖 공백만 빠진 채 잘려 나오는지(한글/문자열 안 공백 유지), 잘못된 JSON을 거르는지 검증합니다.
+ * - CBOR/Smile 본문의 payload가 공백 없는 JSON으로 정규화되어 JSON 클라이언트와 같은 해시가 나오는지 검증합니다.
+ */
+class RawIngestEnvelopeParserTest {
+
+    private final RawIngestEnvelopeParser parser = new RawIngestEnvelopeParser(new ObjectMapper());
+
+    @Test
+    @DisplayName("payload는 원본 바이트에서 문자열 밖 공백만 빠진 채 잘려 나온다")
+    void payloadIsCompactedOriginalBytes() throws IOException {
+        String payload = "{ \"line\" : \"A-1\",\n\t\"msg\":\"설비 정지 \\\" \", \"v\":[1, 2.50,null] }";
+        String body = "{\"source\":\"plc-1\",\"payload\":" + payload + ",\"eventType\":\"ALARM\",\"requestId\":\"r-1\"}";
+
+        RawIngestEnvelope envelope = parser.parse(body.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("plc-1", envelope.source());
+        assertEquals("ALARM", envelope.eventType());
+        assertEquals("r-1", envelope.requestId());
+        assertEquals("{\"line\":\"A-1\",\"msg\":\"설비 정지 \\\" \",\"v\":[1,2.50,null]}",
+                new String(envelope.payload(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("payload가 없으면 null, 스칼라 payload도 그대로 유지된다")
+    void missingAndScalarPayload() throws IOException {
+        List<RawIngestEnvelope> list = parser.parseArray(
+                "[{\"source\":\"s\"},null,{\"payload\":\"text\"},{\"payload\":12.0}]".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(4, list.size());
+        assertEquals("null", new String(list.get(0).payload(), StandardCharsets.UTF_8));
+        assertNull(list.get(1));
+        assertEquals("\"text\"", new String(list.get(2).payload(), StandardCharsets.UTF_8));
+        assertEquals("12.0", new String(list.get(3).payload(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("잘못된 JSON, 객체가 아닌 본문, 뒤에 남은 내용은 거부한다")
+    void rejectsInvalidBodies() {
+        assertThrows(IOException.class, () -> parser.parse("{\"payload\":{\"a\":}".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IOException.class, () -> parser.parse("[1]".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IOException.class, () -> parser.parse("{} {}".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IOException.class, () -> parser.parse("{\"source\":{}}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("들여쓴 JSON, CBOR/Smile payload 모두 공백 없는 JSON으로 정규화되어 해시가 같다")
+    void binaryEncodingsCanonicalizeToCompactJson() throws IOException {
+        String compactPayload = "{\"line\":\"A-1\",\"msg\":\"설비 정지\",\"v\":[1,2.5,null,true]}";
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("source", "plc-1");
+        request.put("eventType", "ALARM");
+        request.put("payload", new ObjectMapper().readValue(compactPayload, Map.class));
+
+        RawIngestEnvelope json = parser.parse(("{\"source\":\"plc-1\",\"payload\":" + compactPayload + "}")
+                .getBytes(StandardCharsets.UTF_8));
+        RawIngestEnvelope pretty = parser.parse(new ObjectMapper().writerWithDefaultPrettyPrinter()
+                .writeValueAsBytes(request));
+        RawIngestEnvelope cbor = parser.parse(new CBORMapper().writeValueAsBytes(request), Encoding.CBOR);
+        RawIngestEnvelope smile = parser.parse(new SmileMapper().writeValueAsBytes(request), Encoding.SMILE);
+
+        assertEquals("plc-1", cbor.source());
+        assertEquals("ALARM", smile.eventType());
+        assertEquals(compactPayload, new String(cbor.payload(), StandardCharsets.UTF_8));
+        assertEquals(DigestUtils.sha256Hex(json.payload()), DigestUtils.sha256Hex(cbor.payload()));
+        assertEquals(DigestUtils.sha256Hex(json.payload()), DigestUtils.sha256Hex(smile.payload()));
+        assertEquals(DigestUtils.sha256Hex(json.payload()), DigestUtils.sha256Hex(pretty.payload()));
+
+        List<RawIngestEnvelope> batch = parser.parseArray(new CBORMapper().writeValueAsBytes(List.of(request, request)),
+                Encoding.CBOR);
+        assertEquals(2, batch.size());
+    }
+
+    @Test
+    @DisplayName("Content-Type으로 인코딩을 고르고, 모르는 값은 JSON으로 본다")
+    void encodingFromContentType() {
+        assertEquals(Encoding.CBOR, Encoding.fromContentType("application/cbor"));
+        assertEquals(Encoding.SMILE, Encoding.fromContentType("application/x-jackson-smile;q=1"));
+        assertEquals(Encoding.JSON, Encoding.fromContentType("application/json;charset=UTF-8"));
+        assertEquals(Encoding.JSON, Encoding.fromContentType(null));
+    }
+}
@@ -0,0 +1,58 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * 초보자용 상세 주석:
+ * - Export CSV의 컬럼 순서, 따옴표 이스케이프, null 처리, decrypted_payload 컬럼 유무를 검증합니다.
+ */
+class RawLogCsvWriterTest {
+
+    private static Map<String, Object> row() {
+        Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+        row.put("id", 7L);
+        row.put("tenant_id", "tenant_a");
+        row.put("source", "plc-1");
+        row.put("event_type", "ALARM");
+        row.put("received_at", null);
+        row.put("request_id", "req-1");
+        row.put("user_id", "user");
+        row.put("role", "USER");
+        row.put("payload_preview", "{\"a\":1}");
+        row.put("decrypted_payload", "{\"a\":1,\"b\":2}");
+        return row;
+    }
+
+    @Test
+    @DisplayName("값은 모두 따옴표로 감싸고 내부 따옴표는 두 번 쓴다")
+    void writesQuotedRows() throws Exception {
+        StringWriter out = new StringWriter();
+        RawLogCsvWriter csv = new RawLogCsvWriter(out, false);
+        csv.writeHeader();
+        csv.writeRow(row());
+
+        assertEquals("id,tenant_id,source,event_type,received_at,request_id,user_id,role,payload_preview\n"
+                + "\"7\",\"tenant_a\",\"plc-1\",\"ALARM\",\"\",\"req-1\",\"user\",\"USER\",\"{\"\"a\"\":1}\"\n", out.toString());
+    }
+
+    @Test
+    @DisplayName("includeDecrypted면 decrypted_payload 컬럼을 마지막에 붙인다")
+    void appendsDecryptedColumn() throws Exception {
+        StringWriter out = new StringWriter();
+        RawLogCsvWriter csv = new RawLogCsvWriter(out, true);
+        csv.writeHeader();
+        csv.writeRow(row());
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("id,tenant_id,source,event_type,received_at,request_id,user_id,role,payload_preview,decrypted_payload", lines[0]);
+        assertTrue(lines[1].endsWith(",\"{\"\"a\"\":1,\"\"b\"\":2}\""));
+    }
+}
@@ -0,0 +1,106 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import kr.co.mes.service.RawLogService;
+
+/**
+ * 초보자용 상세 주석:
+ * - 중복 제거 창의 동작(선점/원본 id 반환/만료/실패 시 해제)을 스프링 없이 검증합니다.
+ * - 시계를 AtomicLong으로 바꿔 끼워 시간 경과를 흉내 냅니다.
+ */
+class RawLogDeduplicatorTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RawLogDeduplicator dedup = new RawLogDeduplicator(registry, true, 1000, 100, now::get);
+
+    @Test
+    @DisplayName("window 안에서 같은 source+payload는 원본 id를 돌려준다")
+    void duplicateWithinWindowReturnsOriginalId() {
+        String sha = DigestUtils.sha256Hex("{\"v\":1}");
+
+        assertNull(dedup.claim("tenant_a", "plc-1", sha));
+        dedup.complete("tenant_a", "plc-1", sha, 42L);
+
+        now.addAndGet(500);
+        assertEquals(42L, dedup.claim("tenant_a", "plc-1", sha));
+        assertEquals(1.0, registry.get("mes.ingest.dedup.suppressed").tag("tenant", "tenant_a").counter().count());
+    }
+
+    @Test
+    @DisplayName("source나 테넌트가 다르면 중복이 아니다")
+    void differentSourceOrTenantIsNotDuplicate() {
+        String sha = DigestUtils.sha256Hex("{\"v\":1}");
+
+        assertNull(dedup.claim("tenant_a", "plc-1", sha));
+        assertNull(dedup.claim("tenant_a", "plc-2", sha));
+        assertNull(dedup.claim("tenant_b", "plc-1", sha));
+    }
+
+    @Test
+    @DisplayName("window가 지나면 같은 이벤트도 다시 저장된다")
+    void expiresAfterWindow() {
+        String sha = DigestUtils.sha256Hex("{\"v\":2}");
+
+        assertNull(dedup.claim("tenant_a", "plc-1", sha));
+        dedup.complete("tenant_a", "plc-1", sha, 7L);
+
+        now.addAndGet(1500);
+        assertNull(dedup.claim("tenant_a", "plc-1", sha));
+    }
+
+    @Test
+    @DisplayName("저장 실패로 release하면 재시도가 중복으로 막히지 않는다")
+    void releaseAllowsRetry() {
+        String sha = DigestUtils.sha256Hex("{\"v\":3}");
+
+        assertNull(dedup.claim("tenant_a", "plc-1", sha));
+        dedup.release("tenant_a", "plc-1", sha);
+        assertNull(dedup.claim("tenant_a", "plc-1", sha));
+    }
+
+    @Test
+    @DisplayName("비동기 저장이 끝나면 저장된 이벤트는 id로 확정하고, 저장되지 않은 이벤트는 선점을 푼다")
+    void completeAllSettlesPendingClaims() {
+        String stored = DigestUtils.sha256Hex("{\"v\":5}");
+        String dropped = DigestUtils.sha256Hex("{\"v\":6}");
+
+        assertNull(dedup.claim("tenant_a", "plc-1", stored));
+        assertNull(dedup.claim("tenant_a", "plc-1", dropped));
+        assertEquals(RawLogDeduplicator.PENDING_ID, dedup.claim("tenant_a", "plc-1", stored));
+
+        dedup.completeAll("tenant_a", List.of(encrypted("plc-1", stored), encrypted("plc-1", dropped)),
+                Arrays.asList(11L, null));
+
+        assertEquals(11L, dedup.claim("tenant_a", "plc-1", stored));
+        assertNull(dedup.claim("tenant_a", "plc-1", dropped));
+    }
+
+    @Test
+    @DisplayName("비활성화 상태에서는 항상 새 이벤트로 본다")
+    void disabledNeverSuppresses() {
+        RawLogDeduplicator off = new RawLogDeduplicator(new SimpleMeterRegistry(), false, 1000, 100, now::get);
+        String sha = DigestUtils.sha256Hex("{\"v\":4}");
+
+        assertNull(off.claim("tenant_a", "plc-1", sha));
+        assertNull(off.claim("tenant_a", "plc-1", sha));
+    }
+
+    private static RawLogService.EncryptedRawLog encrypted(String source, String sha) {
+        RawLogService.RawLogEntry entry = new RawLogService.RawLogEntry(source, "EVT", null, sha, null,
+                null, null, null, null);
+        return new RawLogService.EncryptedRawLog(entry, null, null, null);
+    }
+}
@@ -0,0 +1,112 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 상세 조회 캐시의 적중/미스 지표, 바이트 상한과 LRU 제거, ttl 만료, 키 교체 시 비우기를 스프링 없이 검증합니다.
+ */
+class RawLogDetailCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RawLogDetailCache cache = new RawLogDetailCache(registry, true, 4_000, 1000, now::get);
+
+    private static Map<String, Object> row(long id, String keyId, int payloadChars) {
+        Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+        row.put("id", id);
+        row.put("payload_key_id", keyId);
+        row.put("decrypted_payload", "x".repeat(payloadChars));
+        return row;
+    }
+
+    private double bytes(String tenant) {
+        return registry.get("mes.raw_log.detail_cache.bytes").tag("tenant", tenant).gauge().value();
+    }
+
+    @Test
+    @DisplayName("기억한 행은 복사본으로 돌려주고, 다른 테넌트에서는 보이지 않는다")
+    void hitReturnsCopyPerTenant() {
+        assertNull(cache.get("tenant_a", 1L));
+        cache.put("tenant_a", 1L, row(1L, "v1", 10));
+
+        Map<String, Object> hit = cache.get("tenant_a", 1L);
+        assertNotNull(hit);
+        hit.put("decrypted_payload", "changed");
+        assertEquals("x".repeat(10), cache.get("tenant_a", 1L).get("decrypted_payload"));
+        assertNull(cache.get("tenant_b", 1L));
+
+        assertEquals(2.0, registry.get("mes.raw_log.detail_cache.requests")
+                .tags("tenant", "tenant_a", "result", "hit").counter().count());
+        assertEquals(1.0, registry.get("mes.raw_log.detail_cache.requests")
+                .tags("tenant", "tenant_a", "result", "miss").counter().count());
+    }
+
+    @Test
+    @DisplayName("추정 바이트가 상한을 넘으면 가장 오래 조회되지 않은 행부터 밀려난다")
+    void evictsLeastRecentlyUsedByBytes() {
+        long oneRow = RawLogDetailCache.estimateBytes(row(1L, "v1", 500));
+        int fits = (int) (4_000 / oneRow);
+        for (long id = 1; id <= fits; id++) {
+            cache.put("tenant_a", id, row(id, "v1", 500));
+        }
+        cache.get("tenant_a", 1L); // 1번을 최근 사용으로 올림
+        cache.put("tenant_a", 100L, row(100L, "v1", 500));
+
+        assertNotNull(cache.get("tenant_a", 1L));
+        assertNull(cache.get("tenant_a", 2L));
+        assertNotNull(cache.get("tenant_a", 100L));
+        assertTrue(bytes("tenant_a") <= 4_000);
+        assertTrue(registry.get("mes.raw_log.detail_cache.evictions").tag("tenant", "tenant_a").counter().count() >= 1);
+
+        // 상한보다 큰 행 하나는 아예 기억하지 않는다
+        cache.put("tenant_a", 200L, row(200L, "v1", 10_000));
+        assertNull(cache.get("tenant_a", 200L));
+    }
+
+    @Test
+    @DisplayName("ttl이 지나면 조회/주기 정리에서 사라지고 메모리 지표도 줄어든다")
+    void expiresAfterTtl() {
+        cache.put("tenant_a", 1L, row(1L, "v1", 10));
+        cache.put("tenant_a", 2L, row(2L, "v1", 10));
+        now.addAndGet(1000);
+
+        assertNull(cache.get("tenant_a", 1L));
+        cache.purgeExpired();
+        assertEquals(0.0, bytes("tenant_a"));
+        assertEquals(0.0, registry.get("mes.raw_log.detail_cache.entries").tag("tenant", "tenant_a").gauge().value());
+    }
+
+    @Test
+    @DisplayName("키 교체 시 해당 키의 행만, 또는 전부 비울 수 있다")
+    void purgesOnKeyRotation() {
+        cache.put("tenant_a", 1L, row(1L, "v1", 10));
+        cache.put("tenant_b", 2L, row(2L, "v1", 10));
+        cache.put("tenant_a", 3L, row(3L, "v2", 10));
+
+        cache.purgeKey("v1");
+        assertNull(cache.get("tenant_a", 1L));
+        assertNull(cache.get("tenant_b", 2L));
+        assertNotNull(cache.get("tenant_a", 3L));
+
+        cache.invalidate("tenant_a", List.of(3L));
+        assertNull(cache.get("tenant_a", 3L));
+        cache.put("tenant_a", 4L, row(4L, "v2", 10));
+        cache.purgeAll();
+        assertNull(cache.get("tenant_a", 4L));
+        assertEquals(0.0, bytes("tenant_a"));
+    }
+}
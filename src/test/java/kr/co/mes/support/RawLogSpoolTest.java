@@ -0,0 +1,182 @@
+package kr.co.mes.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import kr.co.mes.crypto.CryptoKeyRegistry;
+import kr.co.mes.service.RawLogService.EncryptedRawLog;
+import kr.co.mes.service.RawLogService.RawLogEntry;
+
+/**
+ * 초보자용 상세 주석:
+ * - 스풀의 기록/재생/커밋, 재시작 후 복구, 세그먼트 교체, 쓰다 만 레코드 무시, 재생 불가 레코드 격리를 임시 디렉터리에서 검증합니다.
+ */
+class RawLogSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    private RawLogSpool open(int maxMb) throws IOException {
+        RawLogSpool spool = new RawLogSpool(new SimpleMeterRegistry(), true, dir.toString(), 1, maxMb, false);
+        spool.open();
+        return spool;
+    }
+
+    private static EncryptedRawLog log(int n) {
+        RawLogEntry entry = new RawLogEntry("plc-" + n, "ALARM", "{\"n\":1}".getBytes(), "sha-" + n,
+                OffsetDateTime.of(2026, 1, 2, 3, 4, 5, 123_456_789, ZoneOffset.UTC), "req-" + n, "user", null,
+                "idem-" + n);
+        return new EncryptedRawLog(entry, new CryptoKeyRegistry.EncryptedPayload(("cipher-" + n).getBytes(), "nonce".getBytes(), "k1", "AES-GCM",
+                "zstd", (long) n));
+    }
+
+    @Test
+    @DisplayName("기록한 이벤트를 순서대로 읽고, 평문 없이 메타데이터/암호문을 보존한다")
+    void appendReadCommit() throws IOException {
+        RawLogSpool spool = open(16);
+        spool.append("tenant_a", List.of(log(1), log(2), log(3)));
+        assertTrue(spool.hasBacklog("tenant_a"));
+        assertFalse(spool.hasBacklog("tenant_b"));
+
+        RawLogSpool.Batch batch = spool.read("tenant_a", 2);
+        assertEquals(2, batch.logs().size());
+        EncryptedRawLog first = batch.logs().get(0);
+        assertEquals("plc-1", first.entry().source());
+        assertNull(first.entry().payload());
+        assertNull(first.entry().role());
+        assertEquals(log(1).entry().receivedAt(), first.entry().receivedAt());
+        assertEquals("cipher-1", new String(first.encrypted().cipherText()));
+        assertEquals("idem-1", first.entry().idempotencyKey());
+        assertEquals("zstd", first.encrypted().codec());
+        assertEquals(1L, first.encrypted().dictId());
+
+        spool.commit("tenant_a", batch);
+        assertEquals(1, spool.pending("tenant_a"));
+        RawLogSpool.Batch rest = spool.read("tenant_a", 10);
+        assertEquals("req-3", rest.logs().get(0).entry().requestId());
+        spool.commit("tenant_a", rest);
+        assertFalse(spool.hasBacklog("tenant_a"));
+    }
+
+    @Test
+    @DisplayName("재시작하면 커밋된 위치부터 남은 이벤트를 다시 읽는다")
+    void recoversAfterRestart() throws IOException {
+        RawLogSpool spool = open(16);
+        spool.append("tenant_a", List.of(log(1), log(2), log(3)));
+        spool.commit("tenant_a", spool.read("tenant_a", 1));
+        spool.close();
+
+        RawLogSpool reopened = open(16);
+        assertEquals(2, reopened.pending("tenant_a"));
+        assertEquals("req-2", reopened.read("tenant_a", 10).logs().get(0).entry().requestId());
+
+        reopened.append("tenant_a", List.of(log(4)));
+        List<EncryptedRawLog> all = reopened.read("tenant_a", 10).logs();
+        assertEquals(List.of("req-2", "req-3", "req-4"), all.stream().map(l -> l.entry().requestId()).toList());
+    }
+
+    @Test
+    @DisplayName("세그먼트가 가득 차면 다음 세그먼트로 넘어가고, 다 읽은 세그먼트는 삭제된다")
+    void rollsAndDeletesSegments() throws IOException {
+        RawLogSpool spool = open(16);
+        List<EncryptedRawLog> logs = new ArrayList<>();
+        for (int i = 0; i < 12_000; i++) {
+            logs.add(log(i));
+        }
+        spool.append("tenant_a", logs);
+        assertTrue(segmentCount() > 1);
+
+        int read = 0;
+        RawLogSpool.Batch batch;
+        while (!(batch = spool.read("tenant_a", 1000)).logs().isEmpty()) {
+            assertEquals("req-" + read, batch.logs().get(0).entry().requestId());
+            read += batch.logs().size();
+            spool.commit("tenant_a", batch);
+        }
+        assertEquals(12_000, read);
+        assertEquals(1, segmentCount());
+    }
+
+    @Test
+    @DisplayName("용량을 넘는 기록은 하나도 쓰지 않고 거부한다")
+    void rejectsWhenFull() throws IOException {
+        RawLogSpool spool = open(1);
+        List<EncryptedRawLog> logs = new ArrayList<>();
+        for (int i = 0; i < 12_000; i++) {
+            logs.add(log(i));
+        }
+        assertThrows(IOException.class, () -> spool.append("tenant_a", logs));
+        assertEquals(0, spool.pending("tenant_a"));
+    }
+
+    @Test
+    @DisplayName("CRC가 맞지 않는(쓰다 만) 레코드는 재시작 시 무시한다")
+    void ignoresTornRecord() throws IOException {
+        RawLogSpool spool = open(16);
+        spool.append("tenant_a", List.of(log(1), log(2)));
+        spool.close();
+
+        // 두 번째 레코드의 CRC를 깨뜨려 쓰다 만 상태를 흉내 냅니다.
+        Path segment;
+        try (Stream<Path> files = Files.list(dir.resolve("tenant_a"))) {
+            segment = files.filter(p -> p.toString().endsWith(".spool")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN);
+            channel.read(header, 0);
+            int second = 8 + header.flip().getInt();
+            channel.write(ByteBuffer.allocate(4).putInt(0, 12345), second + 4);
+        }
+
+        RawLogSpool reopened = open(16);
+        assertEquals(1, reopened.pending("tenant_a"));
+        assertEquals("req-1", reopened.read("tenant_a", 10).logs().get(0).entry().requestId());
+    }
+
+    @Test
+    @DisplayName("격리한 레코드는 격리 파일에만 남고, 커밋 후 재생 대상에서 빠진다")
+    void quarantinesPoisonRecords() throws IOException {
+        RawLogSpool spool = open(16);
+        spool.append("tenant_a", List.of(log(1), log(2)));
+        RawLogSpool.Batch batch = spool.read("tenant_a", 10);
+        spool.quarantine("tenant_a", List.of(batch.logs().get(1)));
+        spool.commit("tenant_a", batch);
+
+        assertFalse(spool.hasBacklog("tenant_a"));
+        Path quarantine = dir.resolve("tenant_a").resolve("quarantine.dlq");
+        assertTrue(Files.size(quarantine) > 0);
+        assertFalse(new String(Files.readAllBytes(quarantine)).contains("{\"n\":1}"));
+        assertEquals(1, segmentCount());
+
+        RawLogSpool reopened = open(16);
+        assertFalse(reopened.hasBacklog("tenant_a"));
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("tenant_a"))) {
+            return files.filter(p -> p.toString().endsWith(".spool")).count();
+        }
+    }
+}
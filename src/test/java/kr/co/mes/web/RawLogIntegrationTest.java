@@ -2,25 +2,61 @@ package kr.co.mes.web;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import kr.co.mes.crypto.AesGcmCrypto;
+import kr.co.mes.crypto.CryptoKeyRegistry;
+import kr.co.mes.service.RawLogService;
+import kr.co.mes.support.KeyRotationReencryptor;
+import kr.co.mes.support.RawLogBinaryMigrator;
+import kr.co.mes.support.RawLogIndexManager;
+import kr.co.mes.support.RawLogRollupAccumulator;
+
 /**
  * 초보자용 상세 주석:
  * - 원시 로그 저장/조회/보안 제한을 통합으로 검증합니다.
@@ -33,6 +69,31 @@ class RawLogIntegrationTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private AesGcmCrypto crypto;
+
+    @Autowired
+    private CryptoKeyRegistry keyRegistry;
+
+    @Autowired
+    private RawLogBinaryMigrator migrator;
+
+    @Autowired
+    private KeyRotationReencryptor reencryptor;
+
+    @Autowired
+    private RawLogIndexManager indexManager;
+
+    @Autowired
+    private RawLogService rawLogService;
+
+    @Autowired
+    private RawLogRollupAccumulator rollupAccumulator;
+
+    @Autowired
+    @Qualifier("tenantAJdbcTemplate")
+    private JdbcTemplate tenantAJdbcTemplate;
+
     static {
         TestCryptoEnv.ensure();
     }
@@ -110,6 +171,485 @@ class RawLogIntegrationTest {
                 .andExpect(jsonPath("$.requestId", equalTo(requestId)));
     }
 
+    @Test
+    @DisplayName("배치 저장은 요청 순서대로 생성된 id 목록을 반환한다")
+    void batchIngestReturnsIdsInOrder() throws Exception {
+        MvcResult userLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"user\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession userSession = (MockHttpSession) userLogin.getRequest().getSession(false);
+
+        MvcResult batch = mockMvc.perform(post("/api/ingest/raw/batch")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"source\":\"plc-1\",\"eventType\":\"TEMP\",\"payload\":{\"v\":1}},"
+                                + "{\"source\":\"plc-1\",\"eventType\":\"TEMP\",\"payload\":{\"v\":2}},"
+                                + "{\"source\":\"plc-2\",\"eventType\":\"PRESS\",\"payload\":{\"v\":3}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ok", equalTo(true)))
+                .andExpect(jsonPath("$.count", equalTo(3)))
+                .andExpect(jsonPath("$.ids", hasSize(3)))
+                .andReturn();
+
+        // id는 입력 순서대로 증가해야 한다
+        String responseBody = batch.getResponse().getContentAsString();
+        String[] ids = responseBody.replaceAll("(?s).*\"ids\"\\s*:\\s*\\[([^\\]]*)\\].*", "$1").split(",");
+        assertTrue(Long.parseLong(ids[0].trim()) < Long.parseLong(ids[1].trim()));
+        assertTrue(Long.parseLong(ids[1].trim()) < Long.parseLong(ids[2].trim()));
+
+        // 빈 배열은 400
+        mockMvc.perform(post("/api/ingest/raw/batch")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+
+        // 컬럼 길이를 넘는 source/eventType은 저장 전에 400 (스풀/write-behind로 넘어가지 않음)
+        String longSource = "s".repeat(51);
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"source\":\"" + longSource + "\",\"eventType\":\"TEMP\",\"payload\":{\"v\":1}}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", equalTo("source exceeds 50 chars")));
+        mockMvc.perform(post("/api/ingest/raw/batch")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"source\":\"plc-1\",\"eventType\":\"TEMP\",\"payload\":{\"v\":1}},"
+                                + "{\"source\":\"plc-1\",\"eventType\":\"" + "e".repeat(81) + "\",\"payload\":{\"v\":2}}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.index", equalTo(1)));
+    }
+
+    @Test
+    @DisplayName("raw-payload 모드의 payload_sha256은 기존 방식(객체 바인딩 후 재직렬화)과 같다")
+    void rawPayloadHashMatchesLegacySerialization() throws Exception {
+        MvcResult userLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"user\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession userSession = (MockHttpSession) userLogin.getRequest().getSession(false);
+
+        // 들여쓰기/공백이 들어간 payload (문자열 안 공백은 데이터)
+        String payload = "{\n  \"line\" : \"A-1\",\n  \"msg\" : \"설비 정지\",\n  \"v\" : [ 1, 2.5, null ]\n}";
+        MvcResult ingest = mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"source\":\"hash-compat\",\"eventType\":\"HASH\",\"payload\":" + payload + "}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        long id = new ObjectMapper().readTree(ingest.getResponse().getContentAsString()).get("id").asLong();
+
+        ObjectMapper mapper = new ObjectMapper();
+        String legacySha = DigestUtils.sha256Hex(mapper.writeValueAsBytes(mapper.readValue(payload, Object.class)));
+        assertEquals(legacySha, tenantAJdbcTemplate.queryForObject(
+                "SELECT payload_sha256 FROM raw_ingest_log WHERE id = ?", String.class, id));
+    }
+
+    @Test
+    @DisplayName("CBOR 본문도 단건/배치 수집된다")
+    void cborIngestAccepted() throws Exception {
+        MvcResult userLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"user\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession userSession = (MockHttpSession) userLogin.getRequest().getSession(false);
+
+        Map<String, Object> event = Map.of("source", "edge-gw", "eventType", "TEMP", "payload", Map.of("v", 21.5));
+        CBORMapper cbor = new CBORMapper();
+
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType("application/cbor")
+                        .content(cbor.writeValueAsBytes(event)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ok", equalTo(true)))
+                .andExpect(jsonPath("$", hasKey("id")));
+
+        mockMvc.perform(post("/api/ingest/raw/batch")
+                        .session(userSession)
+                        .contentType("application/cbor")
+                        .content(cbor.writeValueAsBytes(List.of(event, event))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count", equalTo(2)));
+
+        // 깨진 CBOR는 400
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType("application/cbor")
+                        .content(new byte[]{(byte) 0xBF, 0x61}))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("gzip/deflate 압축 본문을 풀어서 수집하고, 해제 크기 상한을 넘으면 413")
+    void compressedIngestDecompressed() throws Exception {
+        MvcResult userLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"user\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession userSession = (MockHttpSession) userLogin.getRequest().getSession(false);
+
+        byte[] event = "{\"source\":\"cell-modem\",\"eventType\":\"TEMP\",\"payload\":{\"v\":1}}"
+                .getBytes(StandardCharsets.UTF_8);
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Content-Encoding", "gzip")
+                        .content(gzip(event)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasKey("id")));
+
+        // 헤더 없는 raw deflate
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(deflated, new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+            out.write(event);
+        }
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Content-Encoding", "deflate")
+                        .content(deflated.toByteArray()))
+                .andExpect(status().isOk());
+
+        String ndjson = "{\"source\":\"cell-modem\",\"payload\":{\"n\":1}}\n{\"source\":\"cell-modem\",\"payload\":{\"n\":2}}\n";
+        mockMvc.perform(post("/api/ingest/raw/ndjson")
+                        .session(userSession)
+                        .contentType("application/x-ndjson")
+                        .header("Content-Encoding", "gzip")
+                        .content(gzip(ndjson.getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", equalTo(2)));
+
+        // 압축 폭탄: /raw, /raw/batch는 본문을 메모리에 올리므로 버퍼 상한(4MB)을 넘는 순간 413
+        ByteArrayOutputStream bomb = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bomb)) {
+            byte[] zeros = new byte[1 << 20];
+            for (int i = 0; i < 5; i++) {
+                out.write(zeros);
+            }
+        }
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Content-Encoding", "gzip")
+                        .content(bomb.toByteArray()))
+                .andExpect(status().isPayloadTooLarge());
+        mockMvc.perform(post("/api/ingest/raw/batch")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Content-Encoding", "gzip")
+                        .content(bomb.toByteArray()))
+                .andExpect(status().isPayloadTooLarge());
+
+        // NDJSON(스트리밍)도 큰 상한(64MB)은 넘을 수 없다
+        ByteArrayOutputStream ndjsonBomb = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(ndjsonBomb)) {
+            byte[] zeros = new byte[1 << 20];
+            for (int i = 0; i < 65; i++) {
+                out.write(zeros);
+            }
+        }
+        mockMvc.perform(post("/api/ingest/raw/ndjson")
+                        .session(userSession)
+                        .contentType("application/x-ndjson")
+                        .header("Content-Encoding", "gzip")
+                        .content(ndjsonBomb.toByteArray()))
+                .andExpect(status().isPayloadTooLarge());
+
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Content-Encoding", "br")
+                        .content(event))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+    @Test
+    @DisplayName("같은 requestId로 다시 보내면 새로 저장하지 않고 원래 id를 돌려준다")
+    void requestIdIsIdempotencyKey() throws Exception {
+        MvcResult userLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"user\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession userSession = (MockHttpSession) userLogin.getRequest().getSession(false);
+
+        String key = "order-" + System.nanoTime();
+        String event = "{\"source\":\"mes-client\",\"eventType\":\"ORDER\",\"requestId\":\"" + key
+                + "\",\"payload\":{\"qty\":3}}";
+        MvcResult first = mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(event))
+                .andExpect(status().isOk())
+                .andReturn();
+        long id = Long.parseLong(first.getResponse().getContentAsString().replaceAll("(?s).*\"id\"\\s*:\\s*(\\d+).*", "$1"));
+
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(event))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.duplicate", equalTo(true)))
+                .andExpect(jsonPath("$.id", equalTo((int) id)));
+
+        mockMvc.perform(post("/api/ingest/raw/batch")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + event + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ids[0]", equalTo((int) id)))
+                .andExpect(jsonPath("$.duplicates", equalTo(1)));
+
+        // 컬럼 크기를 넘는 키는 400
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"requestId\":\"" + "k".repeat(129) + "\",\"payload\":{}}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Base64 텍스트(v1) 행도 조회되고, 마이그레이션 후 바이너리(v2) 행으로 바뀐다")
+    void legacyBase64RowsReadAndMigrate() throws Exception {
+        String payload = "{\"legacy\":true}";
+        CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt(payload, keyRegistry.getActiveKeyId());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        tenantAJdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement("""
+                    INSERT INTO raw_ingest_log (tenant_id, source, event_type, received_at,
+                                                payload_enc, payload_nonce, payload_key_id, payload_alg)
+                    VALUES ('tenant_a', 'legacy', 'LEGACY', NOW(6), ?, ?, ?, 'AES-GCM')
+                    """, Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, enc.cipherTextBase64());
+            ps.setString(2, enc.nonceBase64());
+            ps.setString(3, enc.keyId());
+            return ps;
+        }, keyHolder);
+        long id = keyHolder.getKey().longValue();
+
+        MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"admin\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession adminSession = (MockHttpSession) adminLogin.getRequest().getSession(false);
+
+        mockMvc.perform(get("/api/admin/raw-logs/{id}", id).session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload_storage_version", equalTo(1)))
+                .andExpect(jsonPath("$.decrypted_payload", equalTo(payload)));
+
+        for (int i = 0; i < 1000 && tenantAJdbcTemplate.queryForObject(
+                "SELECT payload_enc_bin IS NULL FROM raw_ingest_log WHERE id = ?", Boolean.class, id); i++) {
+            migrator.migrateBatch();
+        }
+
+        mockMvc.perform(get("/api/admin/raw-logs/{id}", id).session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload_storage_version", equalTo(2)))
+                .andExpect(jsonPath("$.payload_enc", equalTo(enc.cipherTextBase64())))
+                .andExpect(jsonPath("$.decrypted_payload", equalTo(payload)));
+    }
+
+    @Test
+    @DisplayName("활성 키가 아닌 키로 암호화된 행은 재암호화 작업이 활성 키로 옮기고, 진행 상황을 조회할 수 있다")
+    void retiredKeyRowsAreReencrypted() throws Exception {
+        String payload = "{\"rotated\":true}";
+        String activeKeyId = keyRegistry.getActiveKeyId();
+        String retiredKeyId = keyRegistry.getKeyIds().stream().filter(k -> !k.equals(activeKeyId)).findFirst().orElseThrow();
+        CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt(payload, retiredKeyId);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        tenantAJdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement("""
+                    INSERT INTO raw_ingest_log (tenant_id, source, event_type, received_at,
+                                                payload_enc_bin, payload_nonce_bin, payload_key_id, payload_alg)
+                    VALUES ('tenant_a', 'rotation', 'ROTATION', NOW(6), ?, ?, ?, 'AES-GCM')
+                    """, Statement.RETURN_GENERATED_KEYS);
+            ps.setBytes(1, enc.cipherText());
+            ps.setBytes(2, enc.nonce());
+            ps.setString(3, retiredKeyId);
+            return ps;
+        }, keyHolder);
+        long id = keyHolder.getKey().longValue();
+
+        for (int i = 0; i < 600 && !activeKeyId.equals(tenantAJdbcTemplate.queryForObject(
+                "SELECT payload_key_id FROM raw_ingest_log WHERE id = ?", String.class, id)); i++) {
+            reencryptor.reencryptBatch();
+            Thread.sleep(50);
+        }
+
+        MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"admin\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession adminSession = (MockHttpSession) adminLogin.getRequest().getSession(false);
+
+        mockMvc.perform(get("/api/admin/raw-logs/{id}", id).session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload_key_id", equalTo(activeKeyId)))
+                .andExpect(jsonPath("$.decrypted_payload", equalTo(payload)));
+
+        mockMvc.perform(get("/api/admin/key-rotation").session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.active_key_id", equalTo(activeKeyId)))
+                .andExpect(jsonPath("$.tenants[0].tenant", equalTo("tenant_a")))
+                .andExpect(jsonPath("$.tenants[0].target_key_id", equalTo(activeKeyId)))
+                .andExpect(jsonPath("$.tenants[0]", hasKey("eta_seconds")));
+    }
+
+    @Test
+    @DisplayName("목록은 수집 시 저장한 암호화 프리뷰를 쓰고, 프리뷰가 없는 기존 행은 조회 때 채워 저장한다")
+    void listUsesStoredPreviewAndBackfillsLegacyRows() throws Exception {
+        String longValue = "x".repeat(300);
+        MvcResult userLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"user\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession userSession = (MockHttpSession) userLogin.getRequest().getSession(false);
+        MvcResult ingest = mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"source\":\"preview-new\",\"eventType\":\"PREVIEW\",\"payload\":{\"v\":\"" + longValue + "\"}}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        long newId = Long.parseLong(ingest.getResponse().getContentAsString().replaceAll("(?s).*\"id\"\\s*:\\s*(\\d+).*", "$1"));
+        assertTrue(tenantAJdbcTemplate.queryForObject(
+                "SELECT payload_preview_enc IS NOT NULL FROM raw_ingest_log WHERE id = ?", Boolean.class, newId));
+
+        // 이 기능 이전 형식의 행: 본문 암호문만 있고 프리뷰/크기는 없음
+        String legacyPayload = "{\"legacy\":\"" + longValue + "\"}";
+        CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt(legacyPayload, keyRegistry.getActiveKeyId());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        tenantAJdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement("""
+                    INSERT INTO raw_ingest_log (tenant_id, source, event_type, received_at,
+                                                payload_enc_bin, payload_nonce_bin, payload_key_id, payload_alg)
+                    VALUES ('tenant_a', 'preview-legacy', 'PREVIEW', NOW(6), ?, ?, ?, 'AES-GCM')
+                    """, Statement.RETURN_GENERATED_KEYS);
+            ps.setBytes(1, enc.cipherText());
+            ps.setBytes(2, enc.nonce());
+            ps.setString(3, enc.keyId());
+            return ps;
+        }, keyHolder);
+        long legacyId = keyHolder.getKey().longValue();
+
+        MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"admin\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession adminSession = (MockHttpSession) adminLogin.getRequest().getSession(false);
+
+        String newPayload = "{\"v\":\"" + longValue + "\"}";
+        mockMvc.perform(get("/api/admin/raw-logs").session(adminSession).param("source", "preview-new").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].payload_preview", equalTo(newPayload.substring(0, 200))))
+                .andExpect(jsonPath("$.items[0].payload_size", equalTo(newPayload.length())));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/admin/raw-logs").session(adminSession).param("source", "preview-legacy").param("limit", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items[0].id", equalTo((int) legacyId)))
+                    .andExpect(jsonPath("$.items[0].payload_preview", equalTo(legacyPayload.substring(0, 200))))
+                    .andExpect(jsonPath("$.items[0].payload_size", equalTo(legacyPayload.length())));
+        }
+        assertTrue(tenantAJdbcTemplate.queryForObject(
+                "SELECT payload_preview_enc IS NOT NULL AND payload_size = ? FROM raw_ingest_log WHERE id = ?",
+                Boolean.class, legacyPayload.length(), legacyId));
+    }
+
+    @Test
+    @DisplayName("목록 next_cursor로 다음 페이지를 이어 읽고, 같은 시각의 행도 빠짐없이 id 순으로 이어진다")
+    void cursorPaginationSeeksPastLastRow() throws Exception {
+        String source = "cursor-" + System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            // 앞 3건은 같은 시각으로 넣어 (received_at, id) 동률 처리까지 확인합니다.
+            tenantAJdbcTemplate.update("""
+                    INSERT INTO raw_ingest_log (tenant_id, source, event_type, received_at, payload_json)
+                    VALUES ('tenant_a', ?, 'CURSOR', ?, '{}')
+                    """, source, Timestamp.valueOf("2025-01-01 00:00:0" + Math.max(i - 2, 0)));
+        }
+        List<Long> expected = tenantAJdbcTemplate.queryForList(
+                "SELECT id FROM raw_ingest_log WHERE source = ? ORDER BY received_at DESC, id DESC", Long.class, source);
+
+        MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"admin\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession adminSession = (MockHttpSession) adminLogin.getRequest().getSession(false);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        for (int page = 0; page < 5; page++) {
+            var request = get("/api/admin/raw-logs").session(adminSession).param("source", source).param("limit", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            String body = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode result = new ObjectMapper().readTree(body);
+            for (JsonNode item : result.get("items")) {
+                seen.add(item.get("id").asLong());
+            }
+            cursor = result.path("next_cursor").textValue();
+            if (cursor == null) {
+                break;
+            }
+        }
+        assertTrue(expected.equals(seen), "expected=" + expected + ", seen=" + seen);
+
+        mockMvc.perform(get("/api/admin/raw-logs").session(adminSession).param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/admin/raw-logs").session(adminSession)
+                        .param("cursor", new RawLogService.ListCursor(Instant.now(), 1).encode())
+                        .param("offset", "10"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    @DisplayName("NDJSON 스트리밍 수집은 줄 단위로 accepted/rejected를 집계한다")
+    void ndjsonIngestCountsPerLine() throws Exception {
+        MvcResult userLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"user\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession userSession = (MockHttpSession) userLogin.getRequest().getSession(false);
+
+        String ndjson = "{\"source\":\"historian\",\"eventType\":\"TEMP\",\"payload\":{\"v\":1}}\n"
+                + "{not json}\n"
+                + "\n"
+                + "{\"source\":\"historian\",\"eventType\":\"TEMP\",\"payload\":{\"v\":2}}";
+
+        mockMvc.perform(post("/api/ingest/raw/ndjson")
+                        .session(userSession)
+                        .contentType("application/x-ndjson")
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", equalTo(2)))
+                .andExpect(jsonPath("$.rejected", equalTo(1)))
+                .andExpect(jsonPath("$.errors[0].line", equalTo(2)));
+    }
+
     @Test
     @DisplayName("목록 조회 limit이 200 초과면 400")
     void listLimitGuard() throws Exception {
@@ -127,7 +667,7 @@ class RawLogIntegrationTest {
     }
 
     @Test
-    @DisplayName("Export는 7일 초과 범위면 400")
+    @DisplayName("Export는 기간 상한 없이 허용하고, from/to가 역순이면 400")
     void exportRangeGuard() throws Exception {
         MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -136,13 +676,260 @@ class RawLogIntegrationTest {
                 .andReturn();
         MockHttpSession adminSession = (MockHttpSession) adminLogin.getRequest().getSession(false);
 
-        OffsetDateTime from = OffsetDateTime.now(ZoneOffset.UTC).minusDays(10);
+        OffsetDateTime from = OffsetDateTime.now(ZoneOffset.UTC).minusDays(40);
         OffsetDateTime to = OffsetDateTime.now(ZoneOffset.UTC);
 
         mockMvc.perform(get("/api/admin/raw-logs/export")
                         .session(adminSession)
                         .param("from", from.toString())
                         .param("to", to.toString()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=raw_logs.csv"));
+
+        mockMvc.perform(get("/api/admin/raw-logs/export")
+                        .session(adminSession)
+                        .param("from", to.toString())
+                        .param("to", from.toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", equalTo("to must be >= from")));
+    }
+
+    @Test
+    @DisplayName("Export는 복호화 묶음 크기보다 많은 행도 순서대로 모두 쓰고, Accept-Encoding: gzip이면 압축해 보낸다")
+    void exportStreamsAllRowsWithGzip() throws Exception {
+        String source = "export-" + System.nanoTime();
+        int rows = 300;
+        List<Object[]> params = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            CryptoKeyRegistry.EncryptedPayload enc = crypto.encrypt("{\"n\":" + i + "}", keyRegistry.getActiveKeyId());
+            params.add(new Object[]{source, Timestamp.from(Instant.parse("2025-02-01T00:00:00Z").plusSeconds(i)),
+                    enc.cipherText(), enc.nonce(), enc.keyId()});
+        }
+        tenantAJdbcTemplate.batchUpdate("""
+                INSERT INTO raw_ingest_log (tenant_id, source, event_type, received_at,
+                                            payload_enc_bin, payload_nonce_bin, payload_key_id, payload_alg)
+                VALUES ('tenant_a', ?, 'EXPORT', ?, ?, ?, ?, 'AES-GCM')
+                """, params);
+
+        MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"admin\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession adminSession = (MockHttpSession) adminLogin.getRequest().getSession(false);
+
+        MvcResult result = mockMvc.perform(get("/api/admin/raw-logs/export")
+                        .session(adminSession)
+                        .header("Accept-Encoding", "gzip")
+                        .param("from", "2025-01-01T00:00:00Z")
+                        .param("to", "2025-03-01T00:00:00Z")
+                        .param("source", source)
+                        .param("includeDecrypted", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn();
+        byte[] body;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            body = in.readAllBytes();
+        }
+        String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+        assertEquals(rows + 1, lines.length);
+        assertTrue(lines[0].endsWith(",payload_preview,decrypted_payload"));
+        // received_at DESC: 첫 행이 가장 늦게 넣은 행
+        assertTrue(lines[1].endsWith(",\"{\"\"n\"\":299}\",\"{\"\"n\"\":299}\""), lines[1]);
+        assertTrue(lines[rows].endsWith(",\"{\"\"n\"\":0}\""), lines[rows]);
+
+        // includeDecrypted 없이: 암호문 컬럼을 읽지 않고 프리뷰 자리에 [encrypted]만 씁니다.
+        String plain = mockMvc.perform(get("/api/admin/raw-logs/export")
+                        .session(adminSession)
+                        .param("from", "2025-01-01T00:00:00Z")
+                        .param("to", "2025-03-01T00:00:00Z")
+                        .param("source", source))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        String[] plainLines = plain.split("\n");
+        assertEquals(rows + 1, plainLines.length);
+        assertTrue(plainLines[0].endsWith(",payload_preview"), plainLines[0]);
+        assertTrue(plainLines[1].endsWith(",\"[encrypted]\""), plainLines[1]);
+    }
+
+    @Test
+    @DisplayName("Export 작업은 제출 후 상태/행 수를 조회하고, 끝나면 gzip 파일을 Range 요청으로도 내려받는다")
+    void exportJobRunsInBackgroundAndServesRanges() throws Exception {
+        String source = "export-job-" + System.nanoTime();
+        List<Object[]> params = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            params.add(new Object[]{source, Timestamp.from(Instant.parse("2025-02-01T00:00:00Z").plusSeconds(i))});
+        }
+        tenantAJdbcTemplate.batchUpdate("""
+                INSERT INTO raw_ingest_log (tenant_id, source, event_type, received_at, payload_json)
+                VALUES ('tenant_a', ?, 'EXPORT', ?, '{}')
+                """, params);
+
+        MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"admin\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession adminSession = (MockHttpSession) adminLogin.getRequest().getSession(false);
+
+        // 결과 파일이 디스크에 남는 비동기 작업은 복호화 포함을 거절한다
+        mockMvc.perform(post("/api/admin/raw-logs/export-jobs")
+                        .session(adminSession)
+                        .param("from", "2025-01-01T00:00:00Z")
+                        .param("to", "2025-03-01T00:00:00Z")
+                        .param("includeDecrypted", "true"))
+                .andExpect(status().isBadRequest());
+
+        String submitted = mockMvc.perform(post("/api/admin/raw-logs/export-jobs")
+                        .session(adminSession)
+                        .param("from", "2025-01-01T00:00:00Z")
+                        .param("to", "2025-03-01T00:00:00Z")
+                        .param("source", source))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.job_id").exists())
+                .andReturn().getResponse().getContentAsString();
+        String jobId = (String) new ObjectMapper().readValue(submitted, Map.class).get("job_id");
+
+        String state = null;
+        for (int i = 0; i < 200 && !"COMPLETED".equals(state); i++) {
+            String status = mockMvc.perform(get("/api/admin/raw-logs/export-jobs/{jobId}", jobId).session(adminSession))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            state = (String) new ObjectMapper().readValue(status, Map.class).get("state");
+            if (!"COMPLETED".equals(state)) {
+                Thread.sleep(50);
+            }
+        }
+        mockMvc.perform(get("/api/admin/raw-logs/export-jobs/{jobId}", jobId).session(adminSession))
+                .andExpect(jsonPath("$.state", equalTo("COMPLETED")))
+                .andExpect(jsonPath("$.rows_written", equalTo(20)));
+
+        byte[] file = mockMvc.perform(get("/api/admin/raw-logs/export-jobs/{jobId}/download", jobId).session(adminSession))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(file))) {
+            assertEquals(21, new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n").length);
+        }
+
+        byte[] tail = mockMvc.perform(get("/api/admin/raw-logs/export-jobs/{jobId}/download", jobId)
+                        .session(adminSession)
+                        .header("Range", "bytes=10-"))
+                .andExpect(status().isPartialContent())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(file.length - 10, tail.length);
+
+        mockMvc.perform(get("/api/admin/raw-logs/export-jobs/{jobId}", "no-such-job").session(adminSession))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/api/admin/raw-logs/export-jobs/{jobId}", jobId).session(adminSession))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/admin/raw-logs/export-jobs/{jobId}/download", jobId).session(adminSession))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("지원하는 필터 조합은 모두 인덱스를 타고 결과가 헬스 체크에 노출된다")
+    void queryShapesUseIndexes() throws Exception {
+        Map<String, RawLogIndexManager.ShapeCheck> checks = indexManager.verify(tenantAJdbcTemplate, "tenant_a");
+
+        assertEquals(5, checks.size());
+        checks.values().forEach(check -> {
+            assertEquals(null, check.error(), check.shape());
+            assertTrue(check.expectedIndexUsable(), check.shape() + " key=" + check.key());
+            assertTrue(!check.fullScan(), check.shape() + " type=" + check.accessType() + " rows=" + check.estimatedRows());
+        });
+        assertEquals("idx_raw_log_request_id", checks.get("request_id").key());
+
+        // 헬스 항목 상태는 익명에게도 보이지만 실행 계획 상세는 숨김
+        mockMvc.perform(get("/actuator/health/rawLogIndex"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", equalTo("UP")))
+                .andExpect(jsonPath("$.details").doesNotExist());
+
+        mockMvc.perform(get("/api/admin/raw-logs/query-plans"))
+                .andExpect(status().isForbidden());
+        MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"admin\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        mockMvc.perform(get("/api/admin/raw-logs/query-plans")
+                        .session((MockHttpSession) adminLogin.getRequest().getSession(false)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", equalTo("UP")))
+                .andExpect(jsonPath("$.full_scan_shapes", hasSize(0)))
+                .andExpect(jsonPath("$.tenants.tenant_a.time.expected_index_usable", equalTo(true)));
+    }
+
+    @Test
+    @DisplayName("통계는 집계 테이블에서 분/시간 버킷으로 읽고, 멱등 중복은 세지 않으며 원시 로그를 지워도 유지된다")
+    void statsReadRollupsAndSurviveCleanup() throws Exception {
+        String source = "rollup-" + System.nanoTime();
+        String key = "rollup-key-" + System.nanoTime();
+        OffsetDateTime base = OffsetDateTime.parse("2025-03-01T10:00:00Z");
+        RawLogService.RawLogEntry keyed = new RawLogService.RawLogEntry(source, "ALARM",
+                "{\"a\":1}".getBytes(StandardCharsets.UTF_8), "sha", base.plusSeconds(5), key, "user", "USER", key);
+        rawLogService.saveAll("tenant_a", List.of(
+                keyed,
+                new RawLogService.RawLogEntry(source, "ALARM", "{\"b\":22}".getBytes(StandardCharsets.UTF_8), "sha",
+                        base.plusSeconds(30), null, "user", "USER", null),
+                new RawLogService.RawLogEntry(source, "ALARM", "{}".getBytes(StandardCharsets.UTF_8), "sha",
+                        base.plusMinutes(5), null, "user", "USER", null)));
+        // 같은 멱등 키를 DB까지 다시 보내도(배치/단건) 집계는 늘지 않음
+        rawLogService.saveAll("tenant_a", List.of(keyed));
+        rawLogService.save("tenant_a", keyed);
+        rawLogService.save("tenant_a", new RawLogService.RawLogEntry(source, "STATUS",
+                "{\"s\":1}".getBytes(StandardCharsets.UTF_8), "sha", base.plusMinutes(90), null, "user", "USER", null));
+        // 단건 수집 집계는 메모리에 모았다가 주기마다 반영되므로 바로 반영
+        rollupAccumulator.flush();
+
+        MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"admin\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession adminSession = (MockHttpSession) adminLogin.getRequest().getSession(false);
+
+        for (int round = 0; round < 2; round++) {
+            mockMvc.perform(get("/api/admin/raw-logs/stats")
+                            .session(adminSession)
+                            .param("from", "2025-03-01T10:00:30Z")
+                            .param("to", "2025-03-01T12:00:00Z")
+                            .param("source", source))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.granularity", equalTo("minute")))
+                    .andExpect(jsonPath("$.buckets", hasSize(3)))
+                    .andExpect(jsonPath("$.buckets[0].bucket_start", equalTo("2025-03-01T10:00:00Z")))
+                    .andExpect(jsonPath("$.buckets[0].event_count", equalTo(2)))
+                    .andExpect(jsonPath("$.buckets[0].payload_bytes", equalTo(15)))
+                    .andExpect(jsonPath("$.total_events", equalTo(4)));
+            mockMvc.perform(get("/api/admin/raw-logs/stats")
+                            .session(adminSession)
+                            .param("from", "2025-03-01T00:00:00Z")
+                            .param("to", "2025-03-02T00:00:00Z")
+                            .param("granularity", "hour")
+                            .param("source", source)
+                            .param("eventType", "ALARM"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.buckets", hasSize(1)))
+                    .andExpect(jsonPath("$.buckets[0].event_count", equalTo(3)))
+                    .andExpect(jsonPath("$.total_payload_bytes", equalTo(17)));
+
+            // 원시 로그를 지워도(정리 스케줄러와 같은 효과) 통계는 그대로
+            tenantAJdbcTemplate.update("DELETE FROM raw_ingest_log WHERE source = ?", source);
+        }
+
+        mockMvc.perform(get("/api/admin/raw-logs/stats")
+                        .session(adminSession)
+                        .param("from", "2025-03-01T00:00:00Z")
+                        .param("to", "2025-03-04T00:00:00Z"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/admin/raw-logs/stats")
+                        .session(adminSession)
+                        .param("from", "2025-03-01T00:00:00Z")
+                        .param("to", "2025-03-01T01:00:00Z")
+                        .param("granularity", "day"))
                 .andExpect(status().isBadRequest());
     }
 }
@@ -0,0 +1,80 @@
+package kr.co.mes.web;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * 초보자용 상세 주석:
+ * - write-behind 모드를 켠 상태에서 수집 API가 202를 반환하고,
+ *   백그라운드 writer가 실제로 DB에 저장하는지 검증합니다.
+ */
+@SpringBootTest(properties = {
+        "mes.ingest.write-behind.enabled=true",
+        "mes.ingest.write-behind.flush-interval-ms=20"
+})
+@AutoConfigureMockMvc
+class RawLogWriteBehindTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    static {
+        TestCryptoEnv.ensure();
+    }
+
+    @Test
+    @DisplayName("write-behind 모드에서는 202를 반환하고 잠시 후 DB에 저장된다")
+    void acceptedThenPersisted() throws Exception {
+        String requestId = "REQ-WB-" + System.nanoTime();
+        MvcResult userLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"user\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession userSession = (MockHttpSession) userLogin.getRequest().getSession(false);
+
+        mockMvc.perform(post("/api/ingest/raw")
+                        .session(userSession)
+                        .header("X-Request-Id", requestId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"source\":\"test-client\",\"eventType\":\"WB\",\"payload\":{\"n\":1}}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.requestId", equalTo(requestId)));
+
+        MvcResult adminLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"admin\",\"password\":\"pass\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MockHttpSession adminSession = (MockHttpSession) adminLogin.getRequest().getSession(false);
+
+        // 백그라운드 저장을 최대 5초까지 기다립니다.
+        boolean persisted = false;
+        for (int i = 0; i < 50 && !persisted; i++) {
+            String body = mockMvc.perform(get("/api/admin/raw-logs")
+                            .session(adminSession)
+                            .param("requestId", requestId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            persisted = body.contains("\"count\":1");
+            if (!persisted) {
+                Thread.sleep(100);
+            }
+        }
+        assertTrue(persisted, "write-behind 이벤트가 DB에 저장되지 않았습니다.");
+    }
+}